@@ -1,13 +1,22 @@
 package net.fliuxx.marktPlace;
 
 import net.fliuxx.marktPlace.commands.*;
+import net.fliuxx.marktPlace.database.ListingStore;
 import net.fliuxx.marktPlace.database.MongoManager;
+import net.fliuxx.marktPlace.database.PlayerDataCache;
 import net.fliuxx.marktPlace.listeners.InventoryListener;
+import net.fliuxx.marktPlace.listeners.PlayerListener;
 import net.fliuxx.marktPlace.managers.BlackMarketManager;
 import net.fliuxx.marktPlace.managers.EconomyManager;
+import net.fliuxx.marktPlace.managers.ExpiryManager;
 import net.fliuxx.marktPlace.managers.GUIManager;
+import net.fliuxx.marktPlace.managers.MailboxManager;
+import net.fliuxx.marktPlace.managers.OutboxManager;
+import net.fliuxx.marktPlace.managers.PayoutManager;
+import net.fliuxx.marktPlace.managers.PurchaseManager;
 import net.fliuxx.marktPlace.utils.ConfigManager;
 import net.fliuxx.marktPlace.utils.DiscordWebhook;
+import net.fliuxx.marktPlace.utils.MarketConfig;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -19,9 +28,16 @@ public class MarktPlace extends JavaPlugin {
 
     private static MarktPlace instance;
     private MongoManager mongoManager;
+    private ListingStore listingStore;
+    private PlayerDataCache playerDataCache;
     private EconomyManager economyManager;
     private BlackMarketManager blackMarketManager;
     private GUIManager guiManager;
+    private PurchaseManager purchaseManager;
+    private PayoutManager payoutManager;
+    private MailboxManager mailboxManager;
+    private ExpiryManager expiryManager;
+    private OutboxManager outboxManager;
     private ConfigManager configManager;
     private DiscordWebhook discordWebhook;
 
@@ -35,6 +51,7 @@ public class MarktPlace extends JavaPlugin {
         // Save default configuration files
         saveDefaultConfig();
         configManager.saveDefaultConfigs();
+        configManager.loadMarketConfig();
         
         // Initialize economy manager
         economyManager = new EconomyManager(this);
@@ -52,6 +69,19 @@ public class MarktPlace extends JavaPlugin {
             return;
         }
         
+        // Load all listings into memory
+        listingStore = new ListingStore(this);
+        listingStore.load();
+
+        // Keep online players' data in memory and write statistic changes in batches
+        playerDataCache = new PlayerDataCache(this);
+        playerDataCache.start();
+
+        // Re-encode item data saved by older versions in the background
+        if (getConfig().getBoolean("database.item-codec.migrate-legacy", true)) {
+            migrateLegacyItemData();
+        }
+
         // Initialize Discord webhook
         discordWebhook = new DiscordWebhook(this);
         
@@ -61,15 +91,36 @@ public class MarktPlace extends JavaPlugin {
         // Initialize GUI manager
         guiManager = new GUIManager(this);
         
+        // Initialize purchase manager
+        purchaseManager = new PurchaseManager(this);
+        
+        // Initialize payout manager and settle sellers owed money from earlier sales
+        payoutManager = new PayoutManager(this);
+        payoutManager.start();
+        
+        // Initialize mailbox and expiry managers
+        mailboxManager = new MailboxManager(this);
+        expiryManager = new ExpiryManager(this);
+        
+        // Initialize the notification outbox worker
+        outboxManager = new OutboxManager(this);
+        
         // Register commands
         registerCommands();
         
         // Register listeners
         registerListeners();
         
-        // Start black market refresh task
+        // Finish a black market rotation interrupted by a crash, then start the refresh task
+        blackMarketManager.resumeRotation();
         blackMarketManager.startRefreshTask();
         
+        // Return expired listings to their sellers in the background
+        expiryManager.start();
+        
+        // Deliver purchase notifications, including those left over from the last run
+        outboxManager.start();
+        
         getLogger().info("MarketPlace plugin has been enabled!");
     }
 
@@ -80,9 +131,31 @@ public class MarktPlace extends JavaPlugin {
             blackMarketManager.stopRefreshTask();
         }
         
-        // Then disconnect from MongoDB
+        if (expiryManager != null) {
+            expiryManager.stop();
+        }
+        
+        // Write statistic changes still held in memory
+        if (playerDataCache != null) {
+            playerDataCache.shutdown();
+        }
+        
+        // Stop sending Discord notifications, undelivered ones stay in the outbox
+        if (outboxManager != null) {
+            outboxManager.stop();
+        }
+        if (discordWebhook != null) {
+            discordWebhook.shutdown();
+        }
+        
+        // Finish queued economy operations
+        if (economyManager != null) {
+            economyManager.shutdown();
+        }
+        
+        // Then let pending database writes finish and disconnect from MongoDB
         if (mongoManager != null) {
-            mongoManager.disconnect();
+            mongoManager.shutdown();
         }
         
         getLogger().info("MarketPlace plugin has been disabled!");
@@ -116,6 +189,17 @@ public class MarktPlace extends JavaPlugin {
 
     private void registerListeners() {
         getServer().getPluginManager().registerEvents(new InventoryListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
+    }
+
+    private void migrateLegacyItemData() {
+        mongoManager.getExecutor().supply(mongoManager::migrateLegacyItemData).whenComplete((migrated, error) -> {
+            if (error != null) {
+                getLogger().warning("Error migrating legacy item data: " + error.getMessage());
+            } else if (migrated > 0) {
+                getLogger().info("Migrated " + migrated + " items to the binary item format");
+            }
+        });
     }
 
     // Getters for managers
@@ -127,6 +211,14 @@ public class MarktPlace extends JavaPlugin {
         return mongoManager;
     }
 
+    public ListingStore getListingStore() {
+        return listingStore;
+    }
+
+    public PlayerDataCache getPlayerDataCache() {
+        return playerDataCache;
+    }
+
     public EconomyManager getEconomyManager() {
         return economyManager;
     }
@@ -139,10 +231,37 @@ public class MarktPlace extends JavaPlugin {
         return guiManager;
     }
 
+    public PurchaseManager getPurchaseManager() {
+        return purchaseManager;
+    }
+
+    public PayoutManager getPayoutManager() {
+        return payoutManager;
+    }
+
+    public MailboxManager getMailboxManager() {
+        return mailboxManager;
+    }
+
+    public ExpiryManager getExpiryManager() {
+        return expiryManager;
+    }
+
+    public OutboxManager getOutboxManager() {
+        return outboxManager;
+    }
+
     public ConfigManager getConfigManager() {
         return configManager;
     }
 
+    /**
+     * Get the current snapshot of config.yml settings
+     */
+    public MarketConfig getMarketConfig() {
+        return configManager.getMarketConfig();
+    }
+
     public DiscordWebhook getDiscordWebhook() {
         return discordWebhook;
     }
@@ -154,15 +273,25 @@ public class MarktPlace extends JavaPlugin {
         reloadConfig();
         configManager.reloadConfigs();
         discordWebhook.reloadConfig();
+        guiManager.getDisplayCache().clear();
         
         // Reconnect to MongoDB if settings changed
         mongoManager.disconnect();
         if (!mongoManager.connect()) {
             getLogger().severe("Failed to reconnect to MongoDB after config reload!");
+        } else {
+            listingStore.load();
+            playerDataCache.reload();
         }
         
         // Reload black market refresh task to apply new auto-refresh settings
         blackMarketManager.reloadRefreshTask();
         getLogger().info("Black market refresh task reloaded after config reload");
+        
+        // Apply a changed expiry interval or switch
+        expiryManager.reload();
+        
+        // Apply a changed outbox poll interval
+        outboxManager.reload();
     }
 }
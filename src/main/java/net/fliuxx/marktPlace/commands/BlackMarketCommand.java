@@ -1,6 +1,7 @@
 package net.fliuxx.marktPlace.commands;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.MongoManager;
 import net.fliuxx.marktPlace.gui.BlackMarketGUI;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -95,22 +96,27 @@ public class BlackMarketCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            plugin.getBlackMarketManager().forceRefresh();
+        // The refresh runs off the main thread, report once the listings are moved
+        plugin.getBlackMarketManager().forceRefresh().whenComplete((selected, error) -> {
+            if (error != null) {
+                player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+                return;
+            }
+            if (selected < 0) {
+                player.sendMessage(plugin.getConfigManager().getMessage("blackmarket.refreshing"));
+                return;
+            }
+
             player.sendMessage(plugin.getConfigManager().getMessage("blackmarket.refreshed"));
             
             // Show additional info about timer restart
-            long refreshInterval = plugin.getConfig().getLong("blackmarket.refresh-interval", 86400);
+            long refreshInterval = plugin.getMarketConfig().getBlackMarketRefreshInterval();
             String timeUnit = refreshInterval >= 3600 ? (refreshInterval / 3600) + " hours" : (refreshInterval / 60) + " minutes";
             player.sendMessage("§7Automatic timer restarted - next refresh in §e" + timeUnit);
             
             // Log the refresh
             plugin.getLogger().info("Black market manually refreshed by " + player.getName());
-            
-        } catch (Exception e) {
-            player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
-            plugin.getLogger().severe("Error refreshing black market: " + e.getMessage());
-        }
+        });
 
         return true;
     }
@@ -125,8 +131,9 @@ public class BlackMarketCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            var stats = plugin.getBlackMarketManager().getStatistics();
+        // Statistics read every black market listing, so they are gathered off the main thread
+        MongoManager mongoManager = plugin.getMongoManager();
+        mongoManager.thenSync(mongoManager.getExecutor().supply(() -> plugin.getBlackMarketManager().getStatistics()), stats -> {
             String prefix = plugin.getConfigManager().getMessage("prefix");
             
             player.sendMessage(prefix + "§6Black Market Statistics:");
@@ -135,11 +142,10 @@ public class BlackMarketCommand implements CommandExecutor, TabCompleter {
             player.sendMessage("§7Original Value: §6" + plugin.getEconomyManager().formatMoney(stats.getTotalOriginalValue()));
             player.sendMessage("§7Total Savings: §a" + plugin.getEconomyManager().formatMoney(stats.getTotalSavings()));
             player.sendMessage("§7Next Refresh: §e" + plugin.getBlackMarketManager().getFormattedTimeUntilNextRefresh());
-            
-        } catch (Exception e) {
+        }, error -> {
             player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
-            plugin.getLogger().severe("Error getting black market stats: " + e.getMessage());
-        }
+            plugin.getLogger().severe("Error getting black market stats: " + error.getMessage());
+        });
 
         return true;
     }
@@ -164,7 +170,7 @@ public class BlackMarketCommand implements CommandExecutor, TabCompleter {
         player.sendMessage("§7• All items have §c50% §7discount");
         player.sendMessage("§7• Sellers get §a2x §7profit when sold");
         player.sendMessage("§7• Refreshes every §e24 hours");
-        player.sendMessage("§7• Max §e" + plugin.getConfig().getInt("blackmarket.max-items", 27) + " §7items");
+        player.sendMessage("§7• Max §e" + plugin.getMarketConfig().getBlackMarketMaxItems() + " §7items");
 
         return true;
     }
@@ -1,8 +1,14 @@
 package net.fliuxx.marktPlace.commands;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.IndexManager;
+import net.fliuxx.marktPlace.database.PlayerDataCache;
 import net.fliuxx.marktPlace.gui.MarketplaceGUI;
 import net.fliuxx.marktPlace.gui.AdminGUI;
+import net.fliuxx.marktPlace.managers.EconomyManager;
+import net.fliuxx.marktPlace.managers.ExpiryManager;
+import net.fliuxx.marktPlace.managers.OutboxManager;
+import net.fliuxx.marktPlace.utils.WebhookDispatcher;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -11,6 +17,8 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * MarketPlace Command
@@ -47,6 +55,10 @@ public class MarketPlaceCommand implements CommandExecutor, TabCompleter {
                     return handleAdmin(player);
                 case "reload":
                     return handleReload(player);
+                case "indexes":
+                    return handleIndexes(player);
+                case "status":
+                    return handleStatus(player);
                 case "help":
                     return handleHelp(player);
                 default:
@@ -109,6 +121,97 @@ public class MarketPlaceCommand implements CommandExecutor, TabCompleter {
         return true;
     }
 
+    /**
+     * Handle indexes subcommand
+     */
+    private boolean handleIndexes(Player player) {
+        if (!player.hasPermission("marketplace.admin")) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+
+        // Listing indexes and reading their usage are database round trips
+        IndexManager indexManager = plugin.getMongoManager().getIndexManager();
+        CompletableFuture<List<String>> missingFuture = plugin.getMongoManager().getExecutor().supply(indexManager::getMissingIndexes);
+        CompletableFuture<List<String>> unusedFuture = plugin.getMongoManager().getExecutor().supply(indexManager::getUnusedIndexes);
+
+        plugin.getMongoManager().thenSync(CompletableFuture.allOf(missingFuture, unusedFuture), ignored -> {
+            String prefix = plugin.getConfigManager().getMessage("prefix");
+
+            player.sendMessage(prefix + "§6Database Indexes:");
+            player.sendMessage("§7Missing: " + (missingFuture.join().isEmpty() ? "§anone" : "§c" + String.join(", ", missingFuture.join())));
+            player.sendMessage("§7Unused: " + (unusedFuture.join().isEmpty() ? "§anone" : "§e" + String.join(", ", unusedFuture.join())));
+        }, error -> {
+            player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+            plugin.getLogger().severe("Error checking database indexes: " + error.getMessage());
+        });
+
+        return true;
+    }
+
+    /**
+     * Handle status subcommand
+     */
+    private boolean handleStatus(Player player) {
+        if (!player.hasPermission("marketplace.admin")) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+
+        PlayerDataCache playerDataCache = plugin.getPlayerDataCache();
+        String prefix = plugin.getConfigManager().getMessage("prefix");
+
+        player.sendMessage(prefix + "§6MarketPlace Status:");
+        player.sendMessage("§7Player stats: §e" + (playerDataCache.isWriteBehind() ? "write-behind" : "write-through") +
+            " §7with §e" + playerDataCache.getPendingCount() + " §7players pending");
+        if (playerDataCache.getLastFlushTime() > 0) {
+            long ago = (System.currentTimeMillis() - playerDataCache.getLastFlushTime()) / 1000;
+            player.sendMessage("§7Last flush: §e" + playerDataCache.getLastFlushSize() + " §7players in §e" +
+                playerDataCache.getLastFlushDuration() + "ms §7(lag §e" + playerDataCache.getLastFlushLag() + "ms§7, " + ago + "s ago)");
+        } else {
+            player.sendMessage("§7Last flush: §enone");
+        }
+        player.sendMessage("§7Flushed updates: §e" + playerDataCache.getFlushedUpdates() +
+            " §7Failed flushes: " + (playerDataCache.getFailedFlushes() > 0 ? "§c" : "§a") + playerDataCache.getFailedFlushes());
+
+        player.sendMessage("§7Payout ledger: §e" + plugin.getPayoutManager().getOwedSellers() + " §7sellers owed");
+
+        EconomyManager economyManager = plugin.getEconomyManager();
+        player.sendMessage("§7Economy calls: §e" + (economyManager.isAsync() ? "async" : "main thread"));
+        for (Map.Entry<String, EconomyManager.OperationStats> entry : economyManager.getMetrics().entrySet()) {
+            EconomyManager.OperationStats stats = entry.getValue();
+            player.sendMessage("§7 " + entry.getKey() + ": §e" + stats.getCalls() + " §7calls, avg §e" +
+                formatMicros(stats.getAverageNanos()) + " §7max §e" + formatMicros(stats.getMaxNanos()));
+        }
+
+        WebhookDispatcher dispatcher = plugin.getDiscordWebhook().getDispatcher();
+        player.sendMessage("§7Discord webhook: §e" + dispatcher.getQueueDepth() + " §7queued, §e" + dispatcher.getSent() +
+            " §7sent in §e" + dispatcher.getRequests() + " §7requests, §e" + dispatcher.getRateLimited() + " §7rate limited, " +
+            (dispatcher.getDropped() > 0 ? "§c" : "§a") + dispatcher.getDropped() + " §7dropped, " +
+            (dispatcher.getFailed() > 0 ? "§c" : "§a") + dispatcher.getFailed() + " §7failed");
+
+        OutboxManager outboxManager = plugin.getOutboxManager();
+        player.sendMessage("§7Notification outbox: §e" + outboxManager.getInFlight() + " §7in flight, §e" +
+            outboxManager.getDelivered() + " §7delivered, §e" + outboxManager.getRetried() + " §7retried, " +
+            (outboxManager.getAbandoned() > 0 ? "§c" : "§a") + outboxManager.getAbandoned() + " §7abandoned");
+
+        ExpiryManager expiryManager = plugin.getExpiryManager();
+        if (!expiryManager.isRunning()) {
+            player.sendMessage("§7Expiry sweep: §cdisabled");
+        } else if (expiryManager.getLastSweepTime() > 0) {
+            long ago = (System.currentTimeMillis() - expiryManager.getLastSweepTime()) / 1000;
+            player.sendMessage("§7Expiry sweep: §e" + expiryManager.getLastSweepExpired() + " §7listings returned §e" + ago + "s ago");
+        } else {
+            player.sendMessage("§7Expiry sweep: §ewaiting for first run");
+        }
+
+        return true;
+    }
+
+    private String formatMicros(long nanos) {
+        return String.format("%.1fµs", nanos / 1000.0);
+    }
+
     /**
      * Handle help subcommand
      */
@@ -127,6 +230,8 @@ public class MarketPlaceCommand implements CommandExecutor, TabCompleter {
         
         if (player.hasPermission("marketplace.admin")) {
             player.sendMessage("§7/marketplace admin §8- §eOpen admin panel");
+            player.sendMessage("§7/marketplace indexes §8- §eCheck database indexes");
+            player.sendMessage("§7/marketplace status §8- §eShow database write statistics");
         }
         
         if (player.hasPermission("marketplace.admin.reload")) {
@@ -143,6 +248,8 @@ public class MarketPlaceCommand implements CommandExecutor, TabCompleter {
         if (args.length == 1) {
             if (sender.hasPermission("marketplace.admin")) {
                 completions.add("admin");
+                completions.add("indexes");
+                completions.add("status");
             }
             if (sender.hasPermission("marketplace.admin.reload")) {
                 completions.add("reload");
@@ -1,8 +1,11 @@
 package net.fliuxx.marktPlace.commands;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ListingStore;
+import net.fliuxx.marktPlace.database.MongoManager;
+import net.fliuxx.marktPlace.database.models.MailboxItem;
 import net.fliuxx.marktPlace.database.models.MarketItem;
-import net.fliuxx.marktPlace.database.models.PlayerData;
+import net.fliuxx.marktPlace.utils.ItemCodec;
 import net.fliuxx.marktPlace.utils.ItemSerializer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -14,6 +17,7 @@ import org.bukkit.inventory.ItemStack;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Sell Command
@@ -76,8 +80,9 @@ public class SellCommand implements CommandExecutor, TabCompleter {
         }
 
         // Check max listings per player
-        long activeListings = plugin.getMongoManager().getActiveListingsCount(player.getUniqueId());
-        int maxListings = plugin.getConfig().getInt("general.max-listings-per-player", 10);
+        ListingStore listingStore = plugin.getListingStore();
+        int activeListings = listingStore.getActiveListingsCount(player.getUniqueId());
+        int maxListings = plugin.getMarketConfig().getMaxListingsPerPlayer();
         
         if (activeListings >= maxListings) {
             player.sendMessage(plugin.getConfigManager().getMessage("marketplace.max-listings", 
@@ -85,73 +90,113 @@ public class SellCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        try {
-            // Serialize item
-            String itemData = ItemSerializer.serializeItemStack(itemInHand);
-            
-            // Create market item
-            String itemId = UUID.randomUUID().toString();
-            MarketItem marketItem = new MarketItem(
-                itemId,
-                player.getUniqueId(),
-                player.getName(),
-                itemInHand,
-                itemData,
-                price
-            );
-
-            // Check if identical item already exists
-            List<MarketItem> existingItems = plugin.getMongoManager().getMarketItemsBySeller(player.getUniqueId());
-            for (MarketItem existing : existingItems) {
-                try {
-                    ItemStack existingItemStack = ItemSerializer.deserializeItemStack(existing.getItemData());
-                    if (ItemSerializer.areItemsEqual(itemInHand, existingItemStack) && 
-                        existing.getPrice() == price) {
-                        player.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-exists"));
-                        return true;
-                    }
-                } catch (Exception e) {
-                    // Skip corrupted items
-                    continue;
+        // Check if identical item already exists, only listings with the same material and price are decoded
+        for (MarketItem existing : listingStore.getMarketItemsBySeller(player.getUniqueId())) {
+            if (existing.getPrice() != price ||
+                (existing.getMaterial() != null && existing.getMaterial() != itemInHand.getType())) {
+                continue;
+            }
+
+            try {
+                ItemStack existingItemStack = listingStore.getItemCache().getItemStack(existing);
+                if (ItemSerializer.areItemsEqual(itemInHand, existingItemStack)) {
+                    player.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-exists"));
+                    return true;
                 }
+            } catch (Exception e) {
+                // Skip corrupted items
+                continue;
             }
+        }
 
-            // Add to database
-            plugin.getMongoManager().addMarketItem(marketItem);
+        // Take the item into escrow while the listing is written to the database
+        ItemStack listedItem = itemInHand.clone();
+        player.getInventory().setItemInMainHand(null);
 
-            // Remove item from player's inventory
-            player.getInventory().setItemInMainHand(null);
+        byte[] itemData;
+        try {
+            // Encode item
+            itemData = ItemCodec.encode(listedItem);
+        } catch (Exception e) {
+            returnItem(player, listedItem);
+            player.sendMessage(plugin.getConfigManager().getMessage("errors.item-serialize-error"));
+            plugin.getLogger().severe("Error listing item for " + player.getName() + ": " + e.getMessage());
+            return true;
+        }
 
+        // Create market item
+        String itemId = UUID.randomUUID().toString();
+        MarketItem marketItem = new MarketItem(
+            itemId,
+            player.getUniqueId(),
+            player.getName(),
+            listedItem,
+            itemData,
+            price
+        );
+
+        // Add to the listing store, which writes through to the database
+        MongoManager mongoManager = plugin.getMongoManager();
+        UUID playerId = player.getUniqueId();
+        CompletableFuture<Void> listing = listingStore.addMarketItem(marketItem);
+
+        // An item that could not be listed goes to the seller's mailbox straight from the database thread,
+        // so it is kept even if the player logs out or the plugin is disabled before the main thread runs
+        CompletableFuture<Void> returned = listing.exceptionallyCompose(error ->
+            plugin.getMailboxManager().send(marketItem, MailboxItem.Reason.RETURNED));
+        returned.exceptionally(error -> {
+            plugin.getLogger().severe("Could not mail unlisted item " + itemId + " back to " + marketItem.getSellerName() + ": " + error.getMessage());
+            return null;
+        });
+
+        mongoManager.thenSync(listing, ignored -> {
             // Auto-refresh all marketplace GUIs
             plugin.getGUIManager().refreshMarketplaceGUIs();
             plugin.getGUIManager().refreshMyItemsGUIs();
 
-            // Update player data
-            PlayerData playerData = plugin.getMongoManager().getPlayerData(player.getUniqueId());
-            playerData.setPlayerName(player.getName());
-            playerData.updateLastActive();
-            plugin.getMongoManager().savePlayerData(playerData);
-
             // Send success message
-            String itemName = ItemSerializer.getDisplayName(itemInHand);
+            String itemName = ItemSerializer.getDisplayName(listedItem);
             player.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-listed",
                 "item", itemName,
                 "price", plugin.getEconomyManager().formatMoney(price)));
 
             // Log debug info
-            if (plugin.getConfig().getBoolean("debug.log-transactions", true)) {
-                plugin.getLogger().info(player.getName() + " listed " + itemName + " for " + 
+            if (plugin.getMarketConfig().isLogTransactions()) {
+                plugin.getLogger().info(player.getName() + " listed " + itemName + " for " +
                     plugin.getEconomyManager().formatMoney(price));
             }
 
-        } catch (Exception e) {
-            player.sendMessage(plugin.getConfigManager().getMessage("errors.item-serialize-error"));
-            plugin.getLogger().severe("Error listing item for " + player.getName() + ": " + e.getMessage());
-        }
+            // Update player data, listing changes no statistics so this only refreshes name and last active
+            plugin.getPlayerDataCache().record(playerId, player.getName(), 0, 0, 0, 0, true);
+        }, error -> {
+            player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+            plugin.getLogger().severe("Error listing item for " + player.getName() + ": " + error.getMessage());
+
+            // Hand the mailed item over right away, or give it back directly if the mailbox could not take it
+            mongoManager.thenSync(returned, mailed -> {
+                if (player.isOnline()) {
+                    plugin.getMailboxManager().deliver(player);
+                }
+            }, mailError -> returnItem(player, listedItem));
+        });
 
         return true;
     }
 
+    /**
+     * Give an escrowed item back that never reached the database, dropping whatever does not fit
+     */
+    private void returnItem(Player player, ItemStack item) {
+        if (!player.isOnline()) {
+            plugin.getLogger().warning("Could not return " + ItemSerializer.getDisplayName(item) + " to offline player " + player.getName());
+            return;
+        }
+
+        for (ItemStack leftover : player.getInventory().addItem(item).values()) {
+            player.getWorld().dropItem(player.getLocation(), leftover);
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         List<String> completions = new ArrayList<>();
@@ -1,6 +1,8 @@
 package net.fliuxx.marktPlace.commands;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.MongoManager;
+import net.fliuxx.marktPlace.database.models.PlayerData;
 import net.fliuxx.marktPlace.gui.TransactionHistoryGUI;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -12,6 +14,7 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Transactions Command
@@ -91,14 +94,19 @@ public class TransactionsCommand implements CommandExecutor, TabCompleter {
      * Handle stats subcommand
      */
     private boolean handleStats(Player player) {
-        try {
-            var playerData = plugin.getMongoManager().getPlayerData(player.getUniqueId());
-            var transactions = plugin.getMongoManager().getTransactionsByPlayer(player.getUniqueId());
+        MongoManager mongoManager = plugin.getMongoManager();
+        CompletableFuture<PlayerData> playerDataFuture = plugin.getPlayerDataCache().getPlayerDataAsync(player.getUniqueId());
+        CompletableFuture<Long> transactionCountFuture = mongoManager.countTransactionsByPlayerAsync(player.getUniqueId());
+
+        // Both queries run off the main thread, the messages are sent once they are done
+        mongoManager.thenSync(CompletableFuture.allOf(playerDataFuture, transactionCountFuture), ignored -> {
+            PlayerData playerData = playerDataFuture.join();
+            long transactionCount = transactionCountFuture.join();
             
             String prefix = plugin.getConfigManager().getMessage("prefix");
             
             player.sendMessage(prefix + "§9Your Transaction Statistics:");
-            player.sendMessage("§7Total Transactions: §e" + transactions.size());
+            player.sendMessage("§7Total Transactions: §e" + transactionCount);
             player.sendMessage("§7Items Sold: §e" + playerData.getItemsSold());
             player.sendMessage("§7Items Bought: §e" + playerData.getItemsBought());
             player.sendMessage("§7Total Earnings: §6" + plugin.getEconomyManager().formatMoney(playerData.getTotalEarnings()));
@@ -107,11 +115,10 @@ public class TransactionsCommand implements CommandExecutor, TabCompleter {
             double profit = playerData.getTotalEarnings() - playerData.getTotalSpent();
             String profitColor = profit >= 0 ? "§a" : "§c";
             player.sendMessage("§7Net Profit: " + profitColor + plugin.getEconomyManager().formatMoney(profit));
-            
-        } catch (Exception e) {
+        }, error -> {
             player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
-            plugin.getLogger().severe("Error getting transaction stats for " + player.getName() + ": " + e.getMessage());
-        }
+            plugin.getLogger().severe("Error getting transaction stats for " + player.getName() + ": " + error.getMessage());
+        });
 
         return true;
     }
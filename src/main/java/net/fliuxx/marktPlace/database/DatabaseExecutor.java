@@ -0,0 +1,133 @@
+package net.fliuxx.marktPlace.database;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Database Executor
+ * Runs blocking MongoDB calls on a bounded worker pool so the server tick never waits on the database
+ */
+public class DatabaseExecutor {
+
+    private final MarktPlace plugin;
+    private final ThreadPoolExecutor executor;
+    private final Executor mainThreadExecutor;
+
+    public DatabaseExecutor(MarktPlace plugin) {
+        this.plugin = plugin;
+
+        int threads = Math.max(1, plugin.getConfig().getInt("database.async.threads", 4));
+        int queueSize = Math.max(16, plugin.getConfig().getInt("database.async.queue-size", 1000));
+        AtomicInteger threadCounter = new AtomicInteger();
+
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            runnable -> {
+                Thread thread = new Thread(runnable, "MarketPlace-DB-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        // Callbacks are silently dropped once the plugin is disabled, the scheduler would reject them anyway
+        this.mainThreadExecutor = task -> {
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, task);
+            }
+        };
+    }
+
+    /**
+     * Run a database task off the main thread and return its result
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            plugin.getLogger().warning("Database queue is full, rejecting task: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Run a database task off the main thread
+     */
+    public CompletableFuture<Void> run(Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            plugin.getLogger().warning("Database queue is full, rejecting task: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Executor that runs tasks on the Bukkit main thread
+     */
+    public Executor mainThread() {
+        return mainThreadExecutor;
+    }
+
+    /**
+     * Hand the result of a database future back to the main thread
+     */
+    public <T> void thenSync(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((result, error) -> mainThreadExecutor.execute(() -> {
+            if (error != null) {
+                onFailure.accept(unwrap(error));
+            } else {
+                onSuccess.accept(result);
+            }
+        }));
+    }
+
+    /**
+     * Get the number of tasks waiting for a worker
+     */
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stop accepting tasks and wait for pending writes to finish
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Database tasks did not finish in time, " + executor.getQueue().size() + " tasks dropped");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Strip the wrappers CompletableFuture adds around the real failure
+     */
+    private Throwable unwrap(Throwable error) {
+        if ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,166 @@
+package net.fliuxx.marktPlace.database;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import net.fliuxx.marktPlace.MarktPlace;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index Manager
+ * Declares the indexes every query shape needs, creates them idempotently and reports missing or unused ones
+ */
+public class IndexManager {
+
+    private final MarktPlace plugin;
+    private final MongoDatabase database;
+    private final Map<String, List<IndexModel>> indexes = new LinkedHashMap<>();
+
+    public IndexManager(MarktPlace plugin, MongoDatabase database, boolean singleCollection) {
+        this.plugin = plugin;
+        this.database = database;
+
+        if (singleCollection) {
+            // Partial indexes per view, each one only holds the listings of its market.
+            // Key patterns differ from the split mode indexes so both can exist on servers before MongoDB 5.0
+            Bson market = Filters.eq("isBlackMarket", false);
+            Bson blackMarket = Filters.eq("isBlackMarket", true);
+            // getMarketItemsBySeller, getActiveListingsCount, getPlayerMarketItems
+            declare("market_items", "listing_market_seller", Indexes.ascending("sellerId", "listedAt"), market);
+            // findExpiredMarketItems
+            declare("market_items", "listing_market_listed_at", Indexes.ascending("listedAt", "sellerId"), market);
+            // getPlayerBlackMarketItems, clearRotationSelection
+            declare("market_items", "listing_black_market_seller", Indexes.ascending("sellerId", "rotationEpoch"), blackMarket);
+            declare("market_items", "listing_black_market_epoch", Indexes.ascending("rotationEpoch"), blackMarket);
+        } else {
+            // getMarketItemsBySeller, getActiveListingsCount, getPlayerMarketItems
+            declare("market_items", "market_seller", Indexes.ascending("sellerId"));
+            // findExpiredMarketItems
+            declare("market_items", "market_listed_at", Indexes.ascending("listedAt"));
+            // getPlayerBlackMarketItems
+            declare("black_market", "black_market_seller", Indexes.ascending("sellerId"));
+            // moveSelectedListingsBatch
+            declare("black_market", "black_market_epoch", Indexes.ascending("rotationEpoch", "_id"));
+        }
+        // takeMailboxItems
+        declare("mailbox", "mailbox_recipient_created_at", Indexes.ascending("recipientId", "createdAt"));
+        // claimPendingPayouts, getPendingPayoutSellers
+        declare("pending_payouts", "pending_payouts_seller", Indexes.ascending("sellerId", "claimId"));
+        // claimPendingPayouts, markPendingPayoutsSettling, deletePendingPayouts, releasePendingPayouts
+        declare("pending_payouts", "pending_payouts_claim", Indexes.ascending("claimId"), Filters.exists("claimId"));
+        // findDueOutboxEvents
+        declare("outbox", "outbox_next_attempt", Indexes.ascending("nextAttemptAt"));
+        // getTransactionsByPlayer, each $or branch uses its own index and _id keeps equal timestamps in a stable order
+        declare("transactions", "transactions_buyer_timestamp",
+            Indexes.compoundIndex(Indexes.ascending("buyerId"), Indexes.descending("timestamp", "_id")));
+        declare("transactions", "transactions_seller_timestamp",
+            Indexes.compoundIndex(Indexes.ascending("sellerId"), Indexes.descending("timestamp", "_id")));
+    }
+
+    /**
+     * Declare an index for a collection
+     */
+    private void declare(String collection, String name, Bson keys) {
+        indexes.computeIfAbsent(collection, key -> new ArrayList<>())
+            .add(new IndexModel(keys, new IndexOptions().name(name)));
+    }
+
+    /**
+     * Declare a partial index that only covers documents matching the filter
+     */
+    private void declare(String collection, String name, Bson keys, Bson partialFilter) {
+        indexes.computeIfAbsent(collection, key -> new ArrayList<>())
+            .add(new IndexModel(keys, new IndexOptions().name(name).partialFilterExpression(partialFilter)));
+    }
+
+    /**
+     * Create all declared indexes, existing ones with the same definition are left untouched
+     */
+    public void ensureIndexes() {
+        if (plugin.getConfig().getBoolean("database.indexes.auto-create", true)) {
+            for (Map.Entry<String, List<IndexModel>> entry : indexes.entrySet()) {
+                MongoCollection<Document> collection = database.getCollection(entry.getKey());
+
+                // Create one at a time so a conflicting index does not block the others
+                for (IndexModel index : entry.getValue()) {
+                    try {
+                        collection.createIndexes(Collections.singletonList(index));
+                    } catch (MongoException e) {
+                        plugin.getLogger().warning("Could not create index " + index.getOptions().getName() +
+                            " on " + entry.getKey() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        for (String index : getMissingIndexes()) {
+            plugin.getLogger().warning("Missing index " + index + ", queries relying on it will scan the collection");
+        }
+    }
+
+    /**
+     * Get declared indexes that do not exist, as collection.index
+     */
+    public List<String> getMissingIndexes() {
+        List<String> missing = new ArrayList<>();
+
+        for (Map.Entry<String, List<IndexModel>> entry : indexes.entrySet()) {
+            Set<String> existing = new HashSet<>();
+            try {
+                for (Document index : database.getCollection(entry.getKey()).listIndexes()) {
+                    existing.add(index.getString("name"));
+                }
+            } catch (MongoException e) {
+                plugin.getLogger().warning("Could not list indexes of " + entry.getKey() + ": " + e.getMessage());
+            }
+
+            for (IndexModel index : entry.getValue()) {
+                if (!existing.contains(index.getOptions().getName())) {
+                    missing.add(entry.getKey() + "." + index.getOptions().getName());
+                }
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * Get indexes with no recorded accesses since the MongoDB server started, as collection.index.
+     * Reads $indexStats, which needs the indexStats privilege.
+     */
+    public List<String> getUnusedIndexes() {
+        List<String> unused = new ArrayList<>();
+
+        for (String collectionName : indexes.keySet()) {
+            try {
+                MongoCollection<Document> collection = database.getCollection(collectionName);
+                for (Document stats : collection.aggregate(Collections.singletonList(new Document("$indexStats", new Document())))) {
+                    String name = stats.getString("name");
+                    Document accesses = stats.get("accesses", Document.class);
+                    Number ops = accesses != null ? accesses.get("ops", Number.class) : null;
+
+                    if (!"_id_".equals(name) && ops != null && ops.longValue() == 0) {
+                        unused.add(collectionName + "." + name);
+                    }
+                }
+            } catch (MongoException e) {
+                plugin.getLogger().warning("Could not read index usage of " + collectionName + ": " + e.getMessage());
+            }
+        }
+
+        return unused;
+    }
+}
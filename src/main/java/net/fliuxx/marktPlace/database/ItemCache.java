@@ -0,0 +1,101 @@
+package net.fliuxx.marktPlace.database;
+
+import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.utils.ItemCodec;
+import net.fliuxx.marktPlace.utils.ItemSerializer;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Item Cache
+ * Keeps decoded ItemStacks and display names of listings, so each listing is decoded once instead of on every render.
+ * Bounded by entry count, the least recently used listing is evicted first.
+ */
+public class ItemCache {
+
+    private final Map<String, DecodedItem> items;
+
+    public ItemCache(int maxSize) {
+        int limit = Math.max(1, maxSize);
+        this.items = new LinkedHashMap<String, DecodedItem>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DecodedItem> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    /**
+     * Get a copy of the listing's item, callers are free to modify it
+     */
+    public ItemStack getItemStack(MarketItem item) {
+        return get(item).itemStack.clone();
+    }
+
+    /**
+     * Get the display name of the listing's item
+     */
+    public String getDisplayName(MarketItem item) {
+        return get(item).displayName;
+    }
+
+    /**
+     * Drop a listing that is no longer listed
+     */
+    public synchronized void invalidate(String itemId) {
+        items.remove(itemId);
+    }
+
+    /**
+     * Drop every listing not in the given ids, item data never changes for an id so the rest stay valid
+     */
+    public synchronized void retain(Collection<String> itemIds) {
+        items.keySet().retainAll(itemIds);
+    }
+
+    /**
+     * Get the number of cached listings
+     */
+    public synchronized int size() {
+        return items.size();
+    }
+
+    private DecodedItem get(MarketItem item) {
+        DecodedItem decoded;
+        synchronized (this) {
+            decoded = items.get(item.getId());
+        }
+        if (decoded != null) {
+            return decoded;
+        }
+
+        // Decode outside the lock, a concurrent miss on the same listing only costs a second decode
+        ItemStack itemStack = ItemCodec.decode(item.getItemData());
+        if (itemStack == null) {
+            throw new RuntimeException("Error deserializing ItemStack: listing " + item.getId() + " has no item data");
+        }
+        decoded = new DecodedItem(itemStack, ItemSerializer.getDisplayName(itemStack));
+
+        synchronized (this) {
+            items.put(item.getId(), decoded);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decoded item of one listing, the ItemStack never leaves the cache
+     */
+    private static final class DecodedItem {
+
+        private final ItemStack itemStack;
+        private final String displayName;
+
+        DecodedItem(ItemStack itemStack, String displayName) {
+            this.itemStack = itemStack;
+            this.displayName = displayName;
+        }
+    }
+}
@@ -0,0 +1,701 @@
+package net.fliuxx.marktPlace.database;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.models.MailboxItem;
+import net.fliuxx.marktPlace.database.models.MarketItem;
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Listing Store
+ * Keeps all marketplace and black market listings in memory, indexed by id, seller and material.
+ * Changes are written through to MongoDB, which stays the source of truth on startup.
+ */
+public class ListingStore {
+
+    private final MarktPlace plugin;
+    private final ItemCache itemCache;
+    private volatile Book market = new Book();
+    private volatile Book blackMarket = new Book();
+    private final Object locks = new Object(); // Guards everything below
+    private final Map<String, Boolean> settling = new HashMap<>(); // Claims and removals being written, by id, true in the black market
+    private final Map<String, PendingAdd> writingAdds = new HashMap<>(); // Adds whose write has not finished
+    private final Set<String> lockedListings = new HashSet<>(); // Listings a rotation is moving into the black market
+    private boolean marketLocked; // A rotation phase reads or moves the whole market
+    private boolean blackMarketLocked; // A rotation phase moves the whole black market
+    private int loading; // Loads reading the collections, claims and removals are refused meanwhile
+    private final List<PendingAdd> loadAdds = new ArrayList<>(); // Adds written while a load read the collections
+    private final ReentrantLock bulkLock = new ReentrantLock(); // Held by database threads moving many listings at once
+
+    public ListingStore(MarktPlace plugin) {
+        this.plugin = plugin;
+        this.itemCache = new ItemCache(plugin.getConfig().getInt("cache.decoded-items", 2000));
+    }
+
+    /**
+     * Load both collections from MongoDB and replace the current contents.
+     * Claims and removals are refused until the collections are read, adds are written as usual and kept.
+     * Blocks on the database, so only call it on startup or from the database executor.
+     */
+    public void load() {
+        MongoManager mongoManager = plugin.getMongoManager();
+        List<PendingAdd> racing;
+        synchronized (locks) {
+            loading++;
+            // Their writes may land after the collections are read
+            racing = new ArrayList<>(writingAdds.values());
+            try {
+                awaitSettled(isBlackMarket -> true);
+            } catch (RuntimeException e) {
+                endLoad();
+                throw e;
+            }
+        }
+
+        Book loadedMarket;
+        Book loadedBlackMarket;
+        try {
+            loadedMarket = buildBook(mongoManager.getAllMarketItems(), false);
+            loadedBlackMarket = buildBook(mongoManager.getAllBlackMarketItems(), true);
+        } catch (RuntimeException e) {
+            // The listings in memory are unchanged
+            synchronized (locks) {
+                endLoad();
+            }
+            throw e;
+        }
+
+        // An unfinished rotation leaves moved listings in both collections, they belong to the black market
+        for (String itemId : loadedBlackMarket.ids()) {
+            loadedMarket.remove(itemId);
+        }
+
+        synchronized (locks) {
+            racing.addAll(loadAdds);
+            for (PendingAdd add : racing) {
+                if (!add.write.isCompletedExceptionally()) {
+                    (add.blackMarket ? loadedBlackMarket : loadedMarket).add(add.item);
+                }
+            }
+            market = loadedMarket;
+            blackMarket = loadedBlackMarket;
+            endLoad();
+        }
+
+        // Listings moved between markets keep their id, only drop the ones that are gone
+        List<String> listedIds = new ArrayList<>(loadedMarket.ids());
+        listedIds.addAll(loadedBlackMarket.ids());
+        itemCache.retain(listedIds);
+
+        // Prices and markets may have changed under the same ids
+        if (plugin.getGUIManager() != null) {
+            plugin.getGUIManager().getDisplayCache().clear();
+        }
+
+        if (plugin.getMarketConfig().isDebugEnabled()) {
+            plugin.getLogger().info("Loaded " + loadedMarket.size() + " market and " + loadedBlackMarket.size() + " black market listings");
+        }
+    }
+
+    private void endLoad() {
+        if (--loading == 0) {
+            loadAdds.clear();
+        }
+    }
+
+    /**
+     * Reload both collections off the main thread
+     */
+    public CompletableFuture<Void> reloadAsync() {
+        return plugin.getMongoManager().getExecutor().run(this::load);
+    }
+
+    /**
+     * Refuse purchases and removals of market listings while a rotation phase reads the whole market,
+     * returns once the ones already being written have finished. Only call it from the database executor.
+     */
+    public void lockMarket() {
+        synchronized (locks) {
+            marketLocked = true;
+            awaitSettled(isBlackMarket -> !isBlackMarket);
+        }
+    }
+
+    /**
+     * Allow purchases and removals of market listings again
+     */
+    public void unlockMarket() {
+        synchronized (locks) {
+            marketLocked = false;
+        }
+    }
+
+    /**
+     * Refuse purchases and removals of black market listings while a rotation phase moves the whole black market,
+     * returns once the ones already being written have finished. New black market listings go to the market meanwhile.
+     * Only call it from the database executor.
+     */
+    public void lockBlackMarket() {
+        synchronized (locks) {
+            blackMarketLocked = true;
+            awaitSettled(isBlackMarket -> isBlackMarket);
+            while (writingAdds.values().stream().anyMatch(add -> add.blackMarket)) {
+                awaitChange();
+            }
+        }
+    }
+
+    /**
+     * Allow purchases and removals of black market listings again
+     */
+    public void unlockBlackMarket() {
+        synchronized (locks) {
+            blackMarketLocked = false;
+        }
+    }
+
+    /**
+     * Refuse purchases and removals of listings a rotation selected, until they are moved into the black market.
+     * Returns once the ones already being written have finished. Only call it from the database executor.
+     */
+    public void lockListings(Collection<String> itemIds) {
+        synchronized (locks) {
+            lockedListings.addAll(itemIds);
+            while (itemIds.stream().anyMatch(settling::containsKey)) {
+                awaitChange();
+            }
+        }
+    }
+
+    /**
+     * Allow purchases and removals of every listing a rotation selected, used when the selection is dropped
+     */
+    public void unlockListings() {
+        synchronized (locks) {
+            lockedListings.clear();
+        }
+    }
+
+    /**
+     * Check if purchases and removals of a listing are refused because it is being moved or the listings are loaded
+     */
+    public boolean isLocked(MarketItem item) {
+        synchronized (locks) {
+            return isLocked(item.isBlackMarket(), item.getId());
+        }
+    }
+
+    private boolean isLocked(boolean isBlackMarket, String itemId) {
+        return loading > 0 || (isBlackMarket ? blackMarketLocked : marketLocked) || lockedListings.contains(itemId);
+    }
+
+    /**
+     * Wait until no claim or removal of the matching market is being written, only call it holding the locks monitor
+     */
+    private void awaitSettled(Predicate<Boolean> isBlackMarket) {
+        while (settling.values().stream().anyMatch(isBlackMarket)) {
+            awaitChange();
+        }
+    }
+
+    private void awaitChange() {
+        try {
+            locks.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for listing writes", e);
+        }
+    }
+
+    /**
+     * Wait until no other bulk operation moves listings, so a rotation never samples listings an expiry sweep is returning.
+     * Only call it from the database executor.
+     */
+    public void lockBulk() {
+        bulkLock.lock();
+    }
+
+    /**
+     * Start a bulk operation if no other one is running, returns false otherwise
+     */
+    public boolean tryLockBulk() {
+        return bulkLock.tryLock();
+    }
+
+    /**
+     * End a bulk operation started on the same thread
+     */
+    public void unlockBulk() {
+        bulkLock.unlock();
+    }
+
+    /**
+     * Get the cache of decoded listing items
+     */
+    public ItemCache getItemCache() {
+        return itemCache;
+    }
+
+    /**
+     * Get all market items, oldest listing first
+     */
+    public List<MarketItem> getMarketItems() {
+        return market.snapshot();
+    }
+
+    /**
+     * Get all black market items, oldest listing first
+     */
+    public List<MarketItem> getBlackMarketItems() {
+        return blackMarket.snapshot();
+    }
+
+    /**
+     * Get market item by ID
+     */
+    public MarketItem getMarketItem(String itemId) {
+        return market.get(itemId);
+    }
+
+    /**
+     * Get black market item by ID
+     */
+    public MarketItem getBlackMarketItem(String itemId) {
+        return blackMarket.get(itemId);
+    }
+
+    /**
+     * Get market items by seller
+     */
+    public List<MarketItem> getMarketItemsBySeller(UUID sellerId) {
+        return market.bySeller(sellerId);
+    }
+
+    /**
+     * Get black market items by seller
+     */
+    public List<MarketItem> getBlackMarketItemsBySeller(UUID sellerId) {
+        return blackMarket.bySeller(sellerId);
+    }
+
+    /**
+     * Get market items of a material
+     */
+    public List<MarketItem> getMarketItemsByMaterial(Material material) {
+        return market.byMaterial(material);
+    }
+
+    /**
+     * Get black market items of a material
+     */
+    public List<MarketItem> getBlackMarketItemsByMaterial(Material material) {
+        return blackMarket.byMaterial(material);
+    }
+
+    /**
+     * Get count of active market listings by player
+     */
+    public int getActiveListingsCount(UUID sellerId) {
+        return market.countBySeller(sellerId);
+    }
+
+    /**
+     * Add item to marketplace, it is visible immediately and dropped again if the write fails
+     */
+    public CompletableFuture<Void> addMarketItem(MarketItem item) {
+        synchronized (locks) {
+            return write(new PendingAdd(item, false));
+        }
+    }
+
+    /**
+     * Add item to black market, it is visible immediately and dropped again if the write fails.
+     * While a rotation returns the black market it is listed in the market at its original price instead.
+     */
+    public CompletableFuture<Void> addBlackMarketItem(MarketItem item) {
+        synchronized (locks) {
+            if (blackMarketLocked) {
+                return write(new PendingAdd(relist(item, item.getOriginalPrice(), item.getOriginalPrice(), false), false));
+            }
+            item.setBlackMarket(true);
+            return write(new PendingAdd(item, true));
+        }
+    }
+
+    /**
+     * Remove item from marketplace, completes with false if it was already gone.
+     * The in-memory removal is atomic, so only one caller can ever claim a listing. Refused while it is locked.
+     */
+    public CompletableFuture<Boolean> removeMarketItem(String itemId) {
+        MarketItem item = take(false, itemId);
+        if (item == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return remove(false, item, plugin.getMongoManager().removeMarketItemAsync(itemId));
+    }
+
+    /**
+     * Remove item from black market, completes with false if it was already gone.
+     * The in-memory removal is atomic, so only one caller can ever claim a listing. Refused while it is locked.
+     */
+    public CompletableFuture<Boolean> removeBlackMarketItem(String itemId) {
+        MarketItem item = take(true, itemId);
+        if (item == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return remove(true, item, plugin.getMongoManager().removeBlackMarketItemAsync(itemId));
+    }
+
+    /**
+     * Claim a market listing for a purchase, completes with the listing as stored in MongoDB or null if it was already gone.
+     * Both the in-memory removal and the findOneAndDelete are atomic, so a listing can only be sold once.
+     * Refused while it is locked.
+     */
+    public CompletableFuture<MarketItem> claimMarketItem(String itemId) {
+        MarketItem item = take(false, itemId);
+        if (item == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return claim(false, item, plugin.getMongoManager().claimMarketItemAsync(itemId));
+    }
+
+    /**
+     * Claim a black market listing for a purchase, completes with the listing as stored in MongoDB or null if it was already gone.
+     * Both the in-memory removal and the findOneAndDelete are atomic, so a listing can only be sold once.
+     * Refused while it is locked.
+     */
+    public CompletableFuture<MarketItem> claimBlackMarketItem(String itemId) {
+        MarketItem item = take(true, itemId);
+        if (item == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return claim(true, item, plugin.getMongoManager().claimBlackMarketItemAsync(itemId));
+    }
+
+    /**
+     * Return expired market listings to their sellers' mailboxes, returns the listings that were returned.
+     * Listings already claimed in memory or locked by a rotation are skipped, so an item being bought or moved is never
+     * returned as well. Blocks on the database, so only call it from the database executor while holding the bulk lock.
+     */
+    public List<MarketItem> expireMarketItems(List<MarketItem> expired) {
+        List<MarketItem> claimed = new ArrayList<>(expired.size());
+        for (MarketItem item : expired) {
+            MarketItem listed = take(false, item.getId());
+            if (listed != null) {
+                claimed.add(listed);
+            }
+        }
+
+        // Listings no longer in MongoDB were sold or removed elsewhere, they are only dropped from memory
+        List<MarketItem> returned;
+        try {
+            returned = plugin.getMongoManager().returnListingsToMailbox(claimed, MailboxItem.Reason.EXPIRED);
+        } catch (RuntimeException e) {
+            // The listings may still be in MongoDB, make them visible again
+            for (MarketItem item : claimed) {
+                settle(false, item, true);
+            }
+            throw e;
+        }
+
+        for (MarketItem item : claimed) {
+            evict(item.getId());
+            settle(false, item, false);
+        }
+        return returned;
+    }
+
+    /**
+     * Move every black market listing back to the market at its original price, as a rotation just did in MongoDB.
+     * Only call it from the database executor while the black market is locked.
+     */
+    public void returnBlackMarketItems() {
+        Book from = blackMarket;
+        Book to = market;
+        for (MarketItem item : from.snapshot()) {
+            if (from.remove(item.getId()) != null) {
+                to.add(relist(item, item.getOriginalPrice(), item.getOriginalPrice(), false));
+                invalidateDisplay(item.getId());
+            }
+        }
+    }
+
+    /**
+     * Move listings a rotation moved into the black market, discounted the same way MongoDB did, and unlock them.
+     * Only call it from the database executor. Returns the number of ids found in neither market.
+     */
+    public int moveToBlackMarket(List<String> itemIds, double discountPercentage) {
+        double factor = 1 - discountPercentage / 100.0;
+        int missing = 0;
+        synchronized (locks) {
+            lockedListings.removeAll(itemIds);
+        }
+        for (String itemId : itemIds) {
+            MarketItem item = market.remove(itemId);
+            if (item == null) {
+                // A rotation resumed after a restart finds the listings it already moved loaded into the black market
+                if (blackMarket.get(itemId) == null) {
+                    missing++;
+                }
+                continue;
+            }
+            blackMarket.add(relist(item, item.getPrice() * factor, item.getPrice(), true));
+            invalidateDisplay(itemId);
+        }
+        return missing;
+    }
+
+    /**
+     * Copy a listing with a new price and market, the original may still be read by a GUI
+     */
+    private static MarketItem relist(MarketItem item, double price, double originalPrice, boolean isBlackMarket) {
+        MarketItem moved = new MarketItem(item.getId(), item.getSellerId(), item.getSellerName(), item.getItemStack(),
+            item.getItemData(), price, item.getListedAt(), isBlackMarket, originalPrice);
+        moved.setMaterial(item.getMaterial());
+        return moved;
+    }
+
+    /**
+     * Show a listing and write it right away, only call it holding the locks monitor
+     */
+    private CompletableFuture<Void> write(PendingAdd add) {
+        MarketItem item = add.item;
+        (add.blackMarket ? blackMarket : market).add(item);
+        writingAdds.put(item.getId(), add);
+        if (loading > 0) {
+            loadAdds.add(add);
+        }
+
+        add.write = add.blackMarket ?
+            plugin.getMongoManager().addBlackMarketItemAsync(item) :
+            plugin.getMongoManager().addMarketItemAsync(item);
+        add.write.whenComplete((ignored, error) -> {
+            synchronized (locks) {
+                writingAdds.remove(item.getId());
+                if (error != null) {
+                    // A load may have replaced the book it was added to, drop it from the current one
+                    (add.blackMarket ? blackMarket : market).remove(item.getId());
+                }
+                locks.notifyAll();
+            }
+            if (error != null) {
+                add.result.completeExceptionally(error);
+            } else {
+                add.result.complete(null);
+            }
+        });
+        return add.result;
+    }
+
+    /**
+     * Take a listing out of its market for a claim or removal, null if it is gone or locked
+     */
+    private MarketItem take(boolean isBlackMarket, String itemId) {
+        synchronized (locks) {
+            if (isLocked(isBlackMarket, itemId)) {
+                return null;
+            }
+            MarketItem item = (isBlackMarket ? blackMarket : market).remove(itemId);
+            if (item != null) {
+                settling.put(itemId, isBlackMarket);
+            }
+            return item;
+        }
+    }
+
+    /**
+     * Finish a claim or removal, a failed one makes the listing visible again in the current book
+     */
+    private void settle(boolean isBlackMarket, MarketItem item, boolean failed) {
+        synchronized (locks) {
+            if (failed) {
+                (isBlackMarket ? blackMarket : market).add(item);
+            }
+            settling.remove(item.getId());
+            locks.notifyAll();
+        }
+    }
+
+    private CompletableFuture<Boolean> remove(boolean isBlackMarket, MarketItem item, CompletableFuture<Boolean> write) {
+        evict(item.getId());
+        // The listing is still in MongoDB if the write failed
+        return write.whenComplete((removed, error) -> settle(isBlackMarket, item, error != null));
+    }
+
+    private CompletableFuture<MarketItem> claim(boolean isBlackMarket, MarketItem item, CompletableFuture<MarketItem> write) {
+        evict(item.getId());
+        // The write failed, so the listing may still be in MongoDB
+        return write.whenComplete((claimed, error) -> settle(isBlackMarket, item, error != null));
+    }
+
+    /**
+     * Drop the decoded and rendered forms of a listing that is no longer listed
+     */
+    private void evict(String itemId) {
+        itemCache.invalidate(itemId);
+        invalidateDisplay(itemId);
+    }
+
+    /**
+     * Drop the rendered form of a listing whose price or market changed, the decoded item stays valid
+     */
+    private void invalidateDisplay(String itemId) {
+        if (plugin.getGUIManager() != null) {
+            plugin.getGUIManager().getDisplayCache().invalidate(itemId);
+        }
+    }
+
+    /**
+     * Build an index from freshly loaded listings, decoding the material of legacy listings
+     */
+    private Book buildBook(List<MarketItem> items, boolean isBlackMarket) {
+        Book book = new Book();
+        List<MarketItem> resolved = new ArrayList<>();
+
+        for (MarketItem item : items) {
+            item.setBlackMarket(isBlackMarket);
+            if (item.getMaterial() == null && resolveMaterial(item)) {
+                resolved.add(item);
+            }
+            book.add(item);
+        }
+
+        // Persist decoded materials so legacy listings are only decoded once
+        if (!resolved.isEmpty()) {
+            try {
+                plugin.getMongoManager().saveListingMaterials(resolved, isBlackMarket);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error saving listing materials: " + e.getMessage());
+            }
+        }
+
+        return book;
+    }
+
+    private boolean resolveMaterial(MarketItem item) {
+        try {
+            item.setMaterial(itemCache.getItemStack(item).getType());
+            return true;
+        } catch (Exception e) {
+            // Corrupted items are still listed, just not indexed by material
+        }
+        return false;
+    }
+
+    /**
+     * A listing to add and the future completed once its write finished
+     */
+    private static final class PendingAdd {
+
+        private final MarketItem item;
+        private final boolean blackMarket;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private volatile CompletableFuture<Void> write; // Set once the write started
+
+        private PendingAdd(MarketItem item, boolean blackMarket) {
+            this.item = item;
+            this.blackMarket = blackMarket;
+        }
+    }
+
+    /**
+     * Listings of one market with their secondary indexes
+     */
+    private static final class Book {
+
+        private final Map<String, MarketItem> byId = new ConcurrentHashMap<>();
+        private final Map<UUID, Set<String>> bySeller = new ConcurrentHashMap<>();
+        private final Map<Material, Set<String>> byMaterial = new ConcurrentHashMap<>();
+        private List<MarketItem> sorted; // Rebuilt lazily after a change
+
+        MarketItem get(String itemId) {
+            return byId.get(itemId);
+        }
+
+        int size() {
+            return byId.size();
+        }
+
+        Set<String> ids() {
+            return byId.keySet();
+        }
+
+        synchronized void add(MarketItem item) {
+            byId.put(item.getId(), item);
+            bySeller.computeIfAbsent(item.getSellerId(), key -> ConcurrentHashMap.newKeySet()).add(item.getId());
+            if (item.getMaterial() != null) {
+                byMaterial.computeIfAbsent(item.getMaterial(), key -> ConcurrentHashMap.newKeySet()).add(item.getId());
+            }
+            sorted = null;
+        }
+
+        synchronized MarketItem remove(String itemId) {
+            MarketItem item = byId.remove(itemId);
+            if (item != null) {
+                unindex(bySeller, item.getSellerId(), itemId);
+                if (item.getMaterial() != null) {
+                    unindex(byMaterial, item.getMaterial(), itemId);
+                }
+                sorted = null;
+            }
+            return item;
+        }
+
+        synchronized List<MarketItem> snapshot() {
+            if (sorted == null) {
+                List<MarketItem> items = new ArrayList<>(byId.values());
+                items.sort(Comparator.comparingLong(MarketItem::getListedAt));
+                sorted = Collections.unmodifiableList(items);
+            }
+            return sorted;
+        }
+
+        List<MarketItem> bySeller(UUID sellerId) {
+            return resolve(bySeller.get(sellerId));
+        }
+
+        List<MarketItem> byMaterial(Material material) {
+            return resolve(byMaterial.get(material));
+        }
+
+        int countBySeller(UUID sellerId) {
+            Set<String> ids = bySeller.get(sellerId);
+            return ids != null ? ids.size() : 0;
+        }
+
+        private List<MarketItem> resolve(Set<String> ids) {
+            List<MarketItem> items = new ArrayList<>();
+            if (ids != null) {
+                for (String id : ids) {
+                    MarketItem item = byId.get(id);
+                    if (item != null) {
+                        items.add(item);
+                    }
+                }
+            }
+            items.sort(Comparator.comparingLong(MarketItem::getListedAt));
+            return items;
+        }
+
+        private static <K> void unindex(Map<K, Set<String>> index, K key, String itemId) {
+            index.computeIfPresent(key, (ignored, ids) -> {
+                ids.remove(itemId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+}
@@ -1,20 +1,47 @@
 package net.fliuxx.marktPlace.database;
 
 import com.mongodb.client.*;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Field;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.models.MailboxItem;
 import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.database.models.OutboxEvent;
+import net.fliuxx.marktPlace.database.models.PendingPayout;
 import net.fliuxx.marktPlace.database.models.PlayerData;
+import net.fliuxx.marktPlace.database.models.PlayerStatsDelta;
+import net.fliuxx.marktPlace.database.models.RotationState;
 import net.fliuxx.marktPlace.database.models.Transaction;
 import net.fliuxx.marktPlace.database.models.TimerState;
+import net.fliuxx.marktPlace.database.models.TransactionSummary;
+import net.fliuxx.marktPlace.utils.ItemCodec;
+import org.bson.BsonType;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.inventory.ItemStack;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * MongoDB Manager for MarketPlace Plugin
@@ -23,6 +50,7 @@ import java.util.UUID;
 public class MongoManager {
 
     private final MarktPlace plugin;
+    private final DatabaseExecutor executor;
     private MongoClient mongoClient;
     private MongoDatabase database;
     
@@ -32,9 +60,19 @@ public class MongoManager {
     private MongoCollection<Document> transactionsCollection;
     private MongoCollection<Document> blackMarketCollection;
     private MongoCollection<Document> timerStateCollection;
+    private MongoCollection<Document> mailboxCollection;
+    private MongoCollection<Document> pendingPayoutsCollection;
+    private MongoCollection<Document> outboxCollection;
+    private IndexManager indexManager;
+    private boolean transactionsSupported; // Replica set or sharded cluster, detected on connect
+    private boolean singleCollection; // Both markets share market_items and are told apart by isBlackMarket
+    private Bson marketView;
+    private Bson blackMarketView;
+    private static final Bson NOT_RETURNING = Filters.exists("returnReason", false); // Listings no return has marked
 
     public MongoManager(MarktPlace plugin) {
         this.plugin = plugin;
+        this.executor = new DatabaseExecutor(plugin);
     }
 
     /**
@@ -74,12 +112,33 @@ public class MongoManager {
             playersCollection = database.getCollection("players");
             marketItemsCollection = database.getCollection("market_items");
             transactionsCollection = database.getCollection("transactions");
-            blackMarketCollection = database.getCollection("black_market");
             timerStateCollection = database.getCollection("timer_state");
+            mailboxCollection = database.getCollection("mailbox");
+            pendingPayoutsCollection = database.getCollection("pending_payouts");
+            outboxCollection = database.getCollection("outbox");
+
+            // In single mode the black market is a view of market_items
+            singleCollection = "single".equalsIgnoreCase(config.getString("database.storage-mode", "split"));
+            blackMarketCollection = singleCollection ? marketItemsCollection : database.getCollection("black_market");
+            marketView = singleCollection ? Filters.eq("isBlackMarket", false) : new Document();
+            blackMarketView = singleCollection ? Filters.eq("isBlackMarket", true) : new Document();
             
             // Test connection
             database.runCommand(new Document("ping", 1));
             
+            // Multi-document transactions need a replica set or a sharded cluster
+            transactionsSupported = config.getBoolean("database.transactions", true) && detectTransactionSupport();
+            
+            // Move listings stored by the other storage mode
+            migrateStorageMode();
+            
+            // Finish returns to the mailbox that were cut short before their listings were deleted
+            finishMailboxReturns();
+            
+            // Create the indexes our queries rely on
+            indexManager = new IndexManager(plugin, database, singleCollection);
+            indexManager.ensureIndexes();
+            
             plugin.getLogger().info("Successfully connected to MongoDB!");
             return true;
             
@@ -89,6 +148,107 @@ public class MongoManager {
         }
     }
 
+    /**
+     * Check if the server is a replica set member or a mongos router
+     */
+    private boolean detectTransactionSupport() {
+        try {
+            Document hello = database.runCommand(new Document("hello", 1));
+            return hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+        } catch (Exception e) {
+            // Servers older than 4.4 do not know hello and cannot run these transactions anyway
+            return false;
+        }
+    }
+
+    /**
+     * Bring listings into the layout of the configured storage mode, safe to repeat if interrupted
+     */
+    private void migrateStorageMode() {
+        MongoCollection<Document> separateBlackMarket = database.getCollection("black_market");
+
+        if (singleCollection) {
+            // Listings from before the flag was always written belong to the market
+            marketItemsCollection.updateMany(Filters.exists("isBlackMarket", false), Updates.set("isBlackMarket", false));
+
+            if (separateBlackMarket.countDocuments() > 0) {
+                separateBlackMarket.aggregate(Arrays.asList(
+                    Aggregates.set(new Field<>("isBlackMarket", true)),
+                    Aggregates.merge(marketItemsCollection.getNamespace().getCollectionName(), new MergeOptions()
+                        .whenMatched(MergeOptions.WhenMatched.REPLACE)
+                        .whenNotMatched(MergeOptions.WhenNotMatched.INSERT))
+                )).toCollection();
+                long moved = separateBlackMarket.deleteMany(new Document()).getDeletedCount();
+                plugin.getLogger().info("Moved " + moved + " black market listings into market_items for single storage mode");
+            }
+        } else if (marketItemsCollection.countDocuments(Filters.eq("isBlackMarket", true)) > 0) {
+            marketItemsCollection.aggregate(Arrays.asList(
+                Aggregates.match(Filters.eq("isBlackMarket", true)),
+                Aggregates.merge(separateBlackMarket.getNamespace().getCollectionName(), new MergeOptions()
+                    .whenMatched(MergeOptions.WhenMatched.REPLACE)
+                    .whenNotMatched(MergeOptions.WhenNotMatched.INSERT))
+            )).toCollection();
+            long moved = marketItemsCollection.deleteMany(Filters.eq("isBlackMarket", true)).getDeletedCount();
+            plugin.getLogger().info("Moved " + moved + " black market listings into black_market for split storage mode");
+        }
+    }
+
+    /**
+     * Mail listings a return marked before a crash, then delete market listings that already have an entry in the mailbox,
+     * so a returned item cannot also be sold
+     */
+    private void finishMailboxReturns() {
+        List<MailboxItem> interrupted = new ArrayList<>();
+        for (Document doc : marketItemsCollection.find(inMarket(Filters.exists("returnReason")))) {
+            interrupted.add(MailboxItem.fromListing(MarketItem.fromDocument(doc),
+                MailboxItem.Reason.valueOf(doc.getString("returnReason"))));
+        }
+        if (!interrupted.isEmpty()) {
+            mailboxCollection.bulkWrite(mailboxWrites(interrupted), new BulkWriteOptions().ordered(false));
+            plugin.getLogger().info("Returned " + interrupted.size() + " listings whose return was interrupted to the mailbox");
+        }
+
+        List<String> mailed = new ArrayList<>();
+        for (Document doc : mailboxCollection.find().projection(Projections.include("_id"))) {
+            mailed.add(doc.getString("_id"));
+        }
+
+        if (!mailed.isEmpty()) {
+            long removed = marketItemsCollection.deleteMany(inMarket(Filters.in("_id", mailed))).getDeletedCount();
+            if (removed > 0) {
+                plugin.getLogger().info("Removed " + removed + " listings that were already returned to the mailbox");
+            }
+        }
+    }
+
+    /**
+     * Limit a filter to regular market listings
+     */
+    private Bson inMarket(Bson filter) {
+        return singleCollection ? Filters.and(marketView, filter) : filter;
+    }
+
+    /**
+     * Limit a filter to black market listings
+     */
+    private Bson inBlackMarket(Bson filter) {
+        return singleCollection ? Filters.and(blackMarketView, filter) : filter;
+    }
+
+    /**
+     * Check if both markets are stored in one collection
+     */
+    public boolean isSingleCollection() {
+        return singleCollection;
+    }
+
+    /**
+     * Check if purchases are recorded in a multi-document transaction
+     */
+    public boolean isTransactionsSupported() {
+        return transactionsSupported;
+    }
+
     /**
      * Disconnect from MongoDB
      */
@@ -99,20 +259,46 @@ public class MongoManager {
         }
     }
 
+    /**
+     * Finish pending database work and disconnect, used on plugin shutdown
+     */
+    public void shutdown() {
+        executor.shutdown();
+        disconnect();
+    }
+
+    /**
+     * Get the executor used for asynchronous database operations
+     */
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Get the index manager of the current connection
+     */
+    public IndexManager getIndexManager() {
+        return indexManager;
+    }
+
+    /**
+     * Hand the result of an asynchronous operation back to the main thread
+     */
+    public <T> void thenSync(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        executor.thenSync(future, onSuccess, onFailure);
+    }
+
     /**
      * Get or create player data
      */
     public PlayerData getPlayerData(UUID playerId) {
-        Document doc = playersCollection.find(Filters.eq("_id", playerId.toString())).first();
-        
-        if (doc != null) {
-            return PlayerData.fromDocument(doc);
-        } else {
-            // Create new player data
-            PlayerData playerData = new PlayerData(playerId);
-            savePlayerData(playerData);
-            return playerData;
-        }
+        // Create the document on first use in the same round trip as the read
+        Document doc = playersCollection.findOneAndUpdate(
+            Filters.eq("_id", playerId.toString()),
+            playerStatsUpdate(playerId, null, 0, 0, 0, 0, 0).getUpdate(),
+            new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)
+        );
+        return PlayerData.fromDocument(doc);
     }
 
     /**
@@ -136,10 +322,18 @@ public class MongoManager {
     }
 
     /**
-     * Remove item from marketplace
+     * Remove item from marketplace, returns false if it was already gone or it is being returned
      */
-    public void removeMarketItem(String itemId) {
-        marketItemsCollection.deleteOne(Filters.eq("_id", itemId));
+    public boolean removeMarketItem(String itemId) {
+        return marketItemsCollection.deleteOne(inMarket(Filters.and(Filters.eq("_id", itemId), NOT_RETURNING))).getDeletedCount() > 0;
+    }
+
+    /**
+     * Atomically remove a market listing and return it, null if someone else claimed it first or it is being returned
+     */
+    public MarketItem claimMarketItem(String itemId) {
+        Document doc = marketItemsCollection.findOneAndDelete(inMarket(Filters.and(Filters.eq("_id", itemId), NOT_RETURNING)));
+        return doc != null ? MarketItem.fromDocument(doc) : null;
     }
 
     /**
@@ -148,7 +342,7 @@ public class MongoManager {
     public List<MarketItem> getAllMarketItems() {
         List<MarketItem> items = new ArrayList<>();
         
-        for (Document doc : marketItemsCollection.find()) {
+        for (Document doc : marketItemsCollection.find(marketView)) {
             items.add(MarketItem.fromDocument(doc));
         }
         
@@ -161,7 +355,7 @@ public class MongoManager {
     public List<MarketItem> getMarketItemsBySeller(UUID sellerId) {
         List<MarketItem> items = new ArrayList<>();
         
-        for (Document doc : marketItemsCollection.find(Filters.eq("sellerId", sellerId.toString()))) {
+        for (Document doc : marketItemsCollection.find(inMarket(Filters.eq("sellerId", sellerId.toString())))) {
             items.add(MarketItem.fromDocument(doc));
         }
         
@@ -172,7 +366,7 @@ public class MongoManager {
      * Get market item by ID
      */
     public MarketItem getMarketItem(String itemId) {
-        Document doc = marketItemsCollection.find(Filters.eq("_id", itemId)).first();
+        Document doc = marketItemsCollection.find(inMarket(Filters.eq("_id", itemId))).first();
         return doc != null ? MarketItem.fromDocument(doc) : null;
     }
 
@@ -191,8 +385,130 @@ public class MongoManager {
      * Add transaction
      */
     public void addTransaction(Transaction transaction) {
+        addTransaction(transaction, null, null);
+    }
+
+    /**
+     * Add transaction together with the payout owed for it and the notification announcing it, null for none.
+     * Runs as one multi-document transaction when supported, otherwise as ordered writes with the transaction first.
+     */
+    public void addTransaction(Transaction transaction, PendingPayout payout, OutboxEvent event) {
         Document doc = transaction.toDocument();
-        transactionsCollection.insertOne(doc);
+
+        if ((payout != null || event != null) && transactionsSupported) {
+            try (ClientSession session = mongoClient.startSession()) {
+                session.withTransaction(() -> {
+                    transactionsCollection.insertOne(session, doc);
+                    if (payout != null) {
+                        pendingPayoutsCollection.updateOne(session, Filters.eq("_id", payout.getTransactionId()),
+                            Updates.setOnInsert(payout.toDocument()), new UpdateOptions().upsert(true));
+                    }
+                    if (event != null) {
+                        outboxCollection.replaceOne(session, Filters.eq("_id", event.getId()), event.toDocument(),
+                            new ReplaceOptions().upsert(true));
+                    }
+                    return null;
+                });
+            }
+        } else {
+            transactionsCollection.insertOne(doc);
+            if (payout != null) {
+                addPendingPayout(payout);
+            }
+            if (event != null) {
+                addOutboxEvent(event);
+            }
+        }
+    }
+
+    /**
+     * Store a purchase, the payout owed to its seller, the notification announcing it (null for none)
+     * and update buyer and seller statistics.
+     * Runs as one multi-document transaction when the server supports it, otherwise as ordered writes.
+     */
+    public void recordPurchase(Transaction transaction, PendingPayout payout, OutboxEvent event) {
+        Document transactionDoc = transaction.toDocument();
+        List<UpdateOneModel<Document>> stats = new ArrayList<>();
+        stats.add(playerStatsUpdate(transaction.getBuyerId(), transaction.getBuyerName(), 0, 1,
+            0, Math.round(transaction.getPrice() * 100), transaction.getTimestamp())); // Convert to cents
+        stats.add(playerStatsUpdate(transaction.getSellerId(), transaction.getSellerName(), 1, 0,
+            Math.round(payout.getAmount() * 100), 0, 0));
+
+        if (transactionsSupported) {
+            try (ClientSession session = mongoClient.startSession()) {
+                session.withTransaction(() -> {
+                    transactionsCollection.insertOne(session, transactionDoc);
+                    pendingPayoutsCollection.updateOne(session, Filters.eq("_id", payout.getTransactionId()),
+                        Updates.setOnInsert(payout.toDocument()), new UpdateOptions().upsert(true));
+                    playersCollection.bulkWrite(session, stats);
+                    if (event != null) {
+                        outboxCollection.replaceOne(session, Filters.eq("_id", event.getId()), event.toDocument(),
+                            new ReplaceOptions().upsert(true));
+                    }
+                    return null;
+                });
+            }
+        } else {
+            // The money owed is written right after the transaction, statistics and notifications can be redone
+            transactionsCollection.insertOne(transactionDoc);
+            addPendingPayout(payout);
+            if (event != null) {
+                addOutboxEvent(event);
+            }
+            playersCollection.bulkWrite(stats);
+        }
+    }
+
+    /**
+     * Change player statistics on the server in one round trip, creating the player document if needed.
+     * Also refreshes the stored name and last active time of the player.
+     */
+    public void incrementPlayerStats(UUID playerId, String playerName, int soldDelta, int boughtDelta,
+                                     long earnedCents, long spentCents) {
+        UpdateOneModel<Document> update = playerStatsUpdate(playerId, playerName, soldDelta, boughtDelta,
+            earnedCents, spentCents, System.currentTimeMillis());
+        playersCollection.updateOne(update.getFilter(), update.getUpdate(), update.getOptions());
+    }
+
+    /**
+     * Write collected statistic changes of many players in one unordered bulk write
+     */
+    public int flushPlayerStats(Collection<PlayerStatsDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        List<UpdateOneModel<Document>> updates = new ArrayList<>(deltas.size());
+        for (PlayerStatsDelta delta : deltas) {
+            updates.add(playerStatsUpdate(delta.getPlayerId(), delta.getPlayerName(), delta.getItemsSold(),
+                delta.getItemsBought(), delta.getEarnedCents(), delta.getSpentCents(), delta.getLastActive()));
+        }
+        playersCollection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        return updates.size();
+    }
+
+    /**
+     * Build an upsert that changes player statistics on the server, so concurrent updates never overwrite each other
+     */
+    private UpdateOneModel<Document> playerStatsUpdate(UUID playerId, String playerName, int soldDelta, int boughtDelta,
+                                                       long earnedCents, long spentCents, long lastActive) {
+        long now = System.currentTimeMillis();
+        List<Bson> updates = new ArrayList<>();
+        if (playerName != null) {
+            updates.add(Updates.set("playerName", playerName));
+        } else {
+            updates.add(Updates.setOnInsert("playerName", ""));
+        }
+        updates.add(Updates.inc("itemsSold", soldDelta));
+        updates.add(Updates.inc("itemsBought", boughtDelta));
+        updates.add(Updates.inc("totalEarnings", earnedCents));
+        updates.add(Updates.inc("totalSpent", spentCents));
+        updates.add(Updates.setOnInsert("firstJoined", now));
+        // Only the acting player counts as active, the other side just needs the field on insert
+        updates.add(lastActive > 0 ? Updates.max("lastActive", lastActive) : Updates.setOnInsert("lastActive", now));
+
+        return new UpdateOneModel<>(Filters.eq("_id", playerId.toString()), Updates.combine(updates),
+            new UpdateOptions().upsert(true));
     }
 
     /**
@@ -213,6 +529,57 @@ public class MongoManager {
         return transactions;
     }
 
+    /**
+     * Get one page of a player's transactions, newest first.
+     * Pages are keyed on (timestamp, _id) of the last transaction of the previous page, null for the first page.
+     */
+    public TransactionPage getTransactionPage(UUID playerId, TransactionSummary after, int pageSize) {
+        String player = playerId.toString();
+
+        // Every branch matches one of the buyer/seller timestamp indexes, so the page is read straight off the index
+        Bson filter;
+        if (after == null) {
+            filter = Filters.or(
+                Filters.eq("buyerId", player),
+                Filters.eq("sellerId", player)
+            );
+        } else {
+            filter = Filters.or(
+                Filters.and(Filters.eq("buyerId", player), Filters.lt("timestamp", after.getTimestamp())),
+                Filters.and(Filters.eq("buyerId", player), Filters.eq("timestamp", after.getTimestamp()), Filters.lt("_id", after.getId())),
+                Filters.and(Filters.eq("sellerId", player), Filters.lt("timestamp", after.getTimestamp())),
+                Filters.and(Filters.eq("sellerId", player), Filters.eq("timestamp", after.getTimestamp()), Filters.lt("_id", after.getId()))
+            );
+        }
+
+        List<TransactionSummary> transactions = new ArrayList<>();
+
+        // Fetch one extra row to know whether another page follows, the history never needs the serialized item
+        for (Document doc : transactionsCollection.find(filter)
+                .projection(Projections.exclude("itemData"))
+                .sort(Sorts.descending("timestamp", "_id"))
+                .limit(pageSize + 1)) {
+            transactions.add(TransactionSummary.fromDocument(doc));
+        }
+
+        boolean hasMore = transactions.size() > pageSize;
+        if (hasMore) {
+            transactions.remove(pageSize);
+        }
+
+        return new TransactionPage(transactions, hasMore);
+    }
+
+    /**
+     * Count transactions by player
+     */
+    public long countTransactionsByPlayer(UUID playerId) {
+        return transactionsCollection.countDocuments(Filters.or(
+            Filters.eq("buyerId", playerId.toString()),
+            Filters.eq("sellerId", playerId.toString())
+        ));
+    }
+
     /**
      * Get all transactions
      */
@@ -231,14 +598,28 @@ public class MongoManager {
      */
     public void addBlackMarketItem(MarketItem item) {
         Document doc = item.toDocument();
+        doc.put("isBlackMarket", true);
         blackMarketCollection.insertOne(doc);
     }
 
     /**
-     * Remove item from black market
+     * Remove item from black market, returns false if it was already gone
      */
-    public void removeBlackMarketItem(String itemId) {
-        blackMarketCollection.deleteOne(Filters.eq("_id", itemId));
+    public boolean removeBlackMarketItem(String itemId) {
+        return blackMarketCollection.deleteOne(inBlackMarket(Filters.eq("_id", itemId))).getDeletedCount() > 0;
+    }
+
+    /**
+     * Atomically remove a black market listing and return it, null if someone else claimed it first
+     */
+    public MarketItem claimBlackMarketItem(String itemId) {
+        Document doc = blackMarketCollection.findOneAndDelete(inBlackMarket(Filters.eq("_id", itemId)));
+        if (doc == null) {
+            return null;
+        }
+        MarketItem item = MarketItem.fromDocument(doc);
+        item.setBlackMarket(true);
+        return item;
     }
 
     /**
@@ -247,7 +628,7 @@ public class MongoManager {
     public List<MarketItem> getAllBlackMarketItems() {
         List<MarketItem> items = new ArrayList<>();
         
-        for (Document doc : blackMarketCollection.find()) {
+        for (Document doc : blackMarketCollection.find(blackMarketView)) {
             items.add(MarketItem.fromDocument(doc));
         }
         
@@ -276,33 +657,264 @@ public class MongoManager {
      * Clear all black market items
      */
     public void clearBlackMarket() {
-        blackMarketCollection.deleteMany(new Document());
+        blackMarketCollection.deleteMany(blackMarketView);
     }
 
     /**
      * Get black market item by ID
      */
     public MarketItem getBlackMarketItem(String itemId) {
-        Document doc = blackMarketCollection.find(Filters.eq("_id", itemId)).first();
+        Document doc = blackMarketCollection.find(inBlackMarket(Filters.eq("_id", itemId))).first();
         return doc != null ? MarketItem.fromDocument(doc) : null;
     }
 
     /**
-     * Remove expired listings
+     * Get the oldest market listings listed before the cutoff, walking the listedAt index
      */
-    public void removeExpiredListings() {
-        long currentTime = System.currentTimeMillis();
-        long listingDuration = plugin.getConfig().getLong("general.listing-duration", 604800) * 1000;
-        long expirationTime = currentTime - listingDuration;
-        
-        marketItemsCollection.deleteMany(Filters.lt("listedAt", expirationTime));
+    public List<MarketItem> findExpiredMarketItems(long listedBefore, int limit) {
+        List<MarketItem> items = new ArrayList<>();
+        for (Document doc : marketItemsCollection.find(inMarket(Filters.lt("listedAt", listedBefore)))
+                .sort(Sorts.ascending("listedAt")).limit(limit)) {
+            items.add(MarketItem.fromDocument(doc));
+        }
+        return items;
+    }
+
+    /**
+     * Move market listings into their sellers' mailboxes instead of deleting the items, returns the listings moved.
+     * Only listings still listed are mailed, so a listing bought meanwhile is never returned as well.
+     * Runs as one multi-document transaction when supported. Otherwise the listings are marked first, purchases skip
+     * marked listings, and finishMailboxReturns completes a return cut short by a crash on the next connect.
+     */
+    public List<MarketItem> returnListingsToMailbox(List<MarketItem> items, MailboxItem.Reason reason) {
+        if (items.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (transactionsSupported) {
+            try (ClientSession session = mongoClient.startSession()) {
+                return session.withTransaction(() -> {
+                    List<MarketItem> returned = new ArrayList<>(items.size());
+                    List<MailboxItem> mail = new ArrayList<>(items.size());
+                    for (MarketItem item : items) {
+                        if (marketItemsCollection.findOneAndDelete(session, inMarket(Filters.eq("_id", item.getId()))) != null) {
+                            returned.add(item);
+                            mail.add(MailboxItem.fromListing(item, reason));
+                        }
+                    }
+                    if (!mail.isEmpty()) {
+                        mailboxCollection.bulkWrite(session, mailboxWrites(mail), new BulkWriteOptions().ordered(false));
+                    }
+                    return returned;
+                });
+            }
+        }
+
+        List<String> ids = new ArrayList<>(items.size());
+        for (MarketItem item : items) {
+            ids.add(item.getId());
+        }
+        marketItemsCollection.updateMany(inMarket(Filters.and(Filters.in("_id", ids), NOT_RETURNING)),
+            Updates.set("returnReason", reason.name()));
+
+        // Only the listings that were still there are marked
+        List<String> markedIds = new ArrayList<>(ids.size());
+        for (Document doc : marketItemsCollection.find(inMarket(Filters.and(Filters.in("_id", ids), Filters.exists("returnReason"))))
+                .projection(Projections.include("_id"))) {
+            markedIds.add(doc.getString("_id"));
+        }
+
+        List<MarketItem> returned = new ArrayList<>(markedIds.size());
+        List<MailboxItem> mail = new ArrayList<>(markedIds.size());
+        for (MarketItem item : items) {
+            if (markedIds.contains(item.getId())) {
+                returned.add(item);
+                mail.add(MailboxItem.fromListing(item, reason));
+            }
+        }
+        if (!mail.isEmpty()) {
+            mailboxCollection.bulkWrite(mailboxWrites(mail), new BulkWriteOptions().ordered(false));
+            marketItemsCollection.deleteMany(inMarket(Filters.in("_id", markedIds)));
+        }
+        return returned;
+    }
+
+    /**
+     * Put items in the mailbox, an item already in the mailbox under the same id is replaced
+     */
+    public void sendToMailbox(List<MailboxItem> items) {
+        if (!items.isEmpty()) {
+            mailboxCollection.bulkWrite(mailboxWrites(items), new BulkWriteOptions().ordered(false));
+        }
+    }
+
+    /**
+     * Atomically take up to limit items out of a player's mailbox, oldest first.
+     * Each item is removed with findOneAndDelete, so concurrent deliveries never hand out the same item twice.
+     */
+    public List<MailboxItem> takeMailboxItems(UUID playerId, int limit) {
+        List<MailboxItem> items = new ArrayList<>();
+        FindOneAndDeleteOptions oldestFirst = new FindOneAndDeleteOptions().sort(Sorts.ascending("createdAt"));
+
+        while (items.size() < limit) {
+            Document doc = mailboxCollection.findOneAndDelete(Filters.eq("recipientId", playerId.toString()), oldestFirst);
+            if (doc == null) {
+                break;
+            }
+            items.add(MailboxItem.fromDocument(doc));
+        }
+        return items;
+    }
+
+    /**
+     * Store a payout owed to a seller. Keyed by the transaction id and only written on insert,
+     * so repeating it never pays a sale twice or resets a payout that is being settled.
+     */
+    public void addPendingPayout(PendingPayout payout) {
+        pendingPayoutsCollection.updateOne(
+            Filters.eq("_id", payout.getTransactionId()),
+            Updates.setOnInsert(payout.toDocument()),
+            new UpdateOptions().upsert(true)
+        );
+    }
+
+    /**
+     * Claim every unclaimed payout of a seller for one settlement and return them.
+     * Each payout is claimed atomically, so concurrent settlements never pay the same sale twice.
+     */
+    public List<PendingPayout> claimPendingPayouts(UUID sellerId, String claimId, String serverId) {
+        pendingPayoutsCollection.updateMany(
+            Filters.and(Filters.eq("sellerId", sellerId.toString()), Filters.exists("claimId", false)),
+            Updates.combine(Updates.set("claimId", claimId), Updates.set("claimedBy", serverId),
+                Updates.set("claimedAt", System.currentTimeMillis()))
+        );
+
+        List<PendingPayout> payouts = new ArrayList<>();
+        for (Document doc : pendingPayoutsCollection.find(Filters.eq("claimId", claimId))) {
+            payouts.add(PendingPayout.fromDocument(doc));
+        }
+        return payouts;
+    }
+
+    /**
+     * Mark the payouts of a settlement as being deposited, returns the number marked.
+     * Marked payouts are never released or claimed again, so a deposit is never repeated.
+     */
+    public long markPendingPayoutsSettling(String claimId) {
+        return pendingPayoutsCollection.updateMany(Filters.eq("claimId", claimId),
+            Updates.set("settlingAt", System.currentTimeMillis())).getModifiedCount();
+    }
+
+    /**
+     * Delete the payouts of a settlement once the money was deposited
+     */
+    public long deletePendingPayouts(String claimId) {
+        return pendingPayoutsCollection.deleteMany(Filters.eq("claimId", claimId)).getDeletedCount();
+    }
+
+    /**
+     * Give the payouts of a settlement that was not deposited back to the ledger
+     */
+    public long releasePendingPayouts(String claimId) {
+        return pendingPayoutsCollection.updateMany(Filters.eq("claimId", claimId), releasePayoutClaim()).getModifiedCount();
+    }
+
+    /**
+     * Release payouts this server claimed before a cutoff and never started depositing, returns the number released.
+     * Claims of other servers may still be settling and are left alone.
+     */
+    public long releaseStalePayoutClaims(String serverId, long claimedBefore) {
+        return pendingPayoutsCollection.updateMany(
+            Filters.and(Filters.eq("claimedBy", serverId), Filters.lt("claimedAt", claimedBefore),
+                Filters.exists("settlingAt", false)),
+            releasePayoutClaim()
+        ).getModifiedCount();
+    }
+
+    /**
+     * Count payouts this server started depositing before a cutoff and never cleared.
+     * The deposit may have gone through, so they are left for an admin instead of being paid again.
+     */
+    public long countInterruptedPayouts(String serverId, long settlingBefore) {
+        return pendingPayoutsCollection.countDocuments(
+            Filters.and(Filters.eq("claimedBy", serverId), Filters.lt("settlingAt", settlingBefore)));
+    }
+
+    private static Bson releasePayoutClaim() {
+        return Updates.combine(Updates.unset("claimId"), Updates.unset("claimedBy"), Updates.unset("claimedAt"),
+            Updates.unset("settlingAt"));
+    }
+
+    /**
+     * Get the sellers that are owed at least one payout
+     */
+    public List<UUID> getPendingPayoutSellers() {
+        List<UUID> sellers = new ArrayList<>();
+        // Payouts interrupted while depositing are never paid again
+        for (String sellerId : pendingPayoutsCollection.distinct("sellerId", Filters.exists("settlingAt", false), String.class)) {
+            sellers.add(UUID.fromString(sellerId));
+        }
+        return sellers;
+    }
+
+    /**
+     * Store a notification to deliver. Keyed by its id, so repeating it never announces a purchase twice.
+     */
+    public void addOutboxEvent(OutboxEvent event) {
+        outboxCollection.replaceOne(Filters.eq("_id", event.getId()), event.toDocument(), new ReplaceOptions().upsert(true));
+    }
+
+    /**
+     * Get up to limit notifications whose next attempt is due, oldest first
+     */
+    public List<OutboxEvent> findDueOutboxEvents(long now, int limit) {
+        List<OutboxEvent> events = new ArrayList<>();
+        for (Document doc : outboxCollection.find(Filters.lte("nextAttemptAt", now))
+                .sort(Sorts.ascending("nextAttemptAt")).limit(limit)) {
+            events.add(OutboxEvent.fromDocument(doc));
+        }
+        return events;
+    }
+
+    /**
+     * Delete a notification once it was delivered or given up on
+     */
+    public void deleteOutboxEvent(String eventId) {
+        outboxCollection.deleteOne(Filters.eq("_id", eventId));
+    }
+
+    /**
+     * Record a failed delivery and when to try again
+     */
+    public void rescheduleOutboxEvent(String eventId, int attempts, long nextAttemptAt) {
+        outboxCollection.updateOne(Filters.eq("_id", eventId),
+            Updates.combine(Updates.set("attempts", attempts), Updates.set("nextAttemptAt", nextAttemptAt)));
+    }
+
+    /**
+     * Count the notifications waiting to be delivered
+     */
+    public long countOutboxEvents() {
+        return outboxCollection.countDocuments();
+    }
+
+    /**
+     * Build idempotent upserts for mailbox items, so a repeated return never fails on a duplicate id
+     */
+    private List<ReplaceOneModel<Document>> mailboxWrites(List<MailboxItem> items) {
+        List<ReplaceOneModel<Document>> writes = new ArrayList<>(items.size());
+        for (MailboxItem item : items) {
+            writes.add(new ReplaceOneModel<>(Filters.eq("_id", item.getId()), item.toDocument(),
+                new ReplaceOptions().upsert(true)));
+        }
+        return writes;
     }
 
     /**
      * Get count of active listings by player
      */
     public long getActiveListingsCount(UUID playerId) {
-        return marketItemsCollection.countDocuments(Filters.eq("sellerId", playerId.toString()));
+        return marketItemsCollection.countDocuments(inMarket(Filters.eq("sellerId", playerId.toString())));
     }
 
     /**
@@ -311,7 +923,7 @@ public class MongoManager {
     public List<MarketItem> getPlayerMarketItems(UUID playerId) {
         List<MarketItem> items = new ArrayList<>();
         try {
-            FindIterable<Document> docs = marketItemsCollection.find(Filters.eq("sellerId", playerId.toString()));
+            FindIterable<Document> docs = marketItemsCollection.find(inMarket(Filters.eq("sellerId", playerId.toString())));
             for (Document doc : docs) {
                 items.add(MarketItem.fromDocument(doc));
             }
@@ -327,7 +939,7 @@ public class MongoManager {
     public List<MarketItem> getPlayerBlackMarketItems(UUID playerId) {
         List<MarketItem> items = new ArrayList<>();
         try {
-            FindIterable<Document> docs = blackMarketCollection.find(Filters.eq("sellerId", playerId.toString()));
+            FindIterable<Document> docs = blackMarketCollection.find(inBlackMarket(Filters.eq("sellerId", playerId.toString())));
             for (Document doc : docs) {
                 items.add(MarketItem.fromDocument(doc));
             }
@@ -338,29 +950,444 @@ public class MongoManager {
     }
 
     /**
-     * Move items from black market back to regular market
+     * Move items from black market back to regular market at their original price, tagged with the rotation epoch.
+     * In split mode this copies with one $merge aggregation and clears the black market, in single mode it is one
+     * pipeline updateMany of the flag and price. Safe to repeat after a crash. Returns the number moved.
+     * Callers must keep purchases, removals and new listings out of the black market while it runs.
      */
-    public void moveBlackMarketItemsToMarket() {
-        try {
-            // Get all black market items
-            FindIterable<Document> docs = blackMarketCollection.find();
-            
-            for (Document doc : docs) {
-                // Convert back to regular market item
-                MarketItem item = MarketItem.fromDocument(doc);
-                item.setBlackMarket(false);
-                item.setPrice(item.getOriginalPrice()); // Reset to original price
-                
-                // Add to regular market
-                marketItemsCollection.insertOne(item.toDocument());
+    public long moveBlackMarketItemsToMarket(long epoch) {
+        Bson returnToMarket = Aggregates.set(
+            new Field<>("price", new Document("$ifNull", Arrays.asList("$originalPrice", "$price"))),
+            new Field<>("isBlackMarket", false),
+            new Field<>("rotationEpoch", epoch)
+        );
+
+        if (singleCollection) {
+            return marketItemsCollection.updateMany(blackMarketView, Collections.singletonList(returnToMarket)).getModifiedCount();
+        }
+
+        blackMarketCollection.aggregate(Arrays.asList(
+            returnToMarket,
+            Aggregates.merge(marketItemsCollection.getNamespace().getCollectionName(), new MergeOptions()
+                .whenMatched(MergeOptions.WhenMatched.REPLACE)
+                .whenNotMatched(MergeOptions.WhenNotMatched.INSERT))
+        )).toCollection();
+
+        return blackMarketCollection.deleteMany(new Document()).getDeletedCount();
+    }
+
+    /**
+     * Move a random sample of market listings into the black market at a discount, tagged with the rotation epoch.
+     * Runs server side with $sample and $merge. In split mode the copies are still listed in the market until moved,
+     * in single mode the sampled listings are flagged in place. Returns the black market size.
+     * Callers must keep purchases and removals of market listings out while it runs.
+     */
+    public long sampleMarketItemsIntoBlackMarket(int count, double discountPercentage, long epoch) {
+        if (count <= 0) {
+            return 0;
+        }
+
+        marketItemsCollection.aggregate(Arrays.asList(
+            // Listings marked by an unfinished return go to the mailbox, not the black market
+            Aggregates.match(Filters.and(marketView, NOT_RETURNING)),
+            Aggregates.sample(count),
+            Aggregates.set(
+                new Field<>("originalPrice", "$price"),
+                new Field<>("price", new Document("$multiply", Arrays.asList("$price", 1 - discountPercentage / 100.0))),
+                new Field<>("isBlackMarket", true),
+                new Field<>("rotationEpoch", epoch)
+            ),
+            Aggregates.merge(blackMarketCollection.getNamespace().getCollectionName(), new MergeOptions()
+                .whenMatched(MergeOptions.WhenMatched.REPLACE)
+                // A listing bought while the sample ran must not come back
+                .whenNotMatched(singleCollection ? MergeOptions.WhenNotMatched.DISCARD : MergeOptions.WhenNotMatched.INSERT))
+        )).allowDiskUse(true).toCollection();
+
+        if (!singleCollection) {
+            // Copies land in an empty collection, so drop the ones whose listing was bought while the sample ran
+            List<String> orphaned = new ArrayList<>();
+            for (Document doc : blackMarketCollection.aggregate(Arrays.asList(
+                    Aggregates.match(Filters.eq("rotationEpoch", epoch)),
+                    Aggregates.lookup(marketItemsCollection.getNamespace().getCollectionName(), "_id", "_id", "original"),
+                    Aggregates.match(Filters.size("original", 0)),
+                    Aggregates.project(Projections.include("_id"))
+            ))) {
+                orphaned.add(doc.getString("_id"));
             }
-            
-            // Clear black market
-            blackMarketCollection.deleteMany(new Document());
-            
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error moving black market items to market: " + e.getMessage());
+            if (!orphaned.isEmpty()) {
+                blackMarketCollection.deleteMany(Filters.in("_id", orphaned));
+            }
+        }
+
+        return blackMarketCollection.countDocuments(blackMarketView);
+    }
+
+    /**
+     * Get the ids of the listings a rotation epoch selected that are not moved yet, in the order they are moved
+     */
+    public List<String> getRotationSelection(long epoch, String afterId) {
+        Bson filter = afterId != null
+            ? Filters.and(Filters.eq("rotationEpoch", epoch), Filters.gt("_id", afterId))
+            : Filters.eq("rotationEpoch", epoch);
+
+        List<String> ids = new ArrayList<>();
+        for (Document doc : blackMarketCollection.find(inBlackMarket(filter)).projection(Projections.include("_id"))
+                .sort(Sorts.ascending("_id"))) {
+            ids.add(doc.getString("_id"));
+        }
+        return ids;
+    }
+
+    /**
+     * Undo the black market selection of a rotation epoch, the listings are still in the market
+     */
+    public long clearRotationSelection(long epoch) {
+        Bson selection = inBlackMarket(Filters.eq("rotationEpoch", epoch));
+        if (singleCollection) {
+            return marketItemsCollection.updateMany(selection, Collections.singletonList(Aggregates.set(
+                new Field<>("price", new Document("$ifNull", Arrays.asList("$originalPrice", "$price"))),
+                new Field<>("isBlackMarket", false)
+            ))).getModifiedCount();
+        }
+        return blackMarketCollection.deleteMany(selection).getDeletedCount();
+    }
+
+    /**
+     * Delete the next batch of market listings that a rotation epoch copied into the black market.
+     * Batches follow the id order after the cursor, so a crash resumes where it stopped.
+     * In single mode the selected listings were flagged in place, the batch is only read so the listing store can follow.
+     * Returns the ids of the batch, empty when every selected listing has been moved or nothing was copied.
+     */
+    public List<String> moveSelectedListingsBatch(long epoch, String afterId, int batchSize) {
+        Bson filter = afterId != null
+            ? Filters.and(Filters.eq("rotationEpoch", epoch), Filters.gt("_id", afterId))
+            : Filters.eq("rotationEpoch", epoch);
+
+        List<String> ids = new ArrayList<>(batchSize);
+        for (Document doc : blackMarketCollection.find(inBlackMarket(filter)).projection(Projections.include("_id"))
+                .sort(Sorts.ascending("_id")).limit(batchSize)) {
+            ids.add(doc.getString("_id"));
+        }
+
+        if (!ids.isEmpty() && !singleCollection) {
+            marketItemsCollection.deleteMany(Filters.in("_id", ids));
+        }
+        return ids;
+    }
+
+    /**
+     * Count the listings in the regular market
+     */
+    public long countMarketItems() {
+        return marketItemsCollection.countDocuments(marketView);
+    }
+
+    /**
+     * Store the material of listings that were saved before the field existed
+     */
+    public void saveListingMaterials(List<MarketItem> items, boolean blackMarket) {
+        if (items.isEmpty()) {
+            return;
         }
+
+        List<UpdateOneModel<Document>> updates = new ArrayList<>();
+        for (MarketItem item : items) {
+            updates.add(new UpdateOneModel<>(
+                Filters.eq("_id", item.getId()),
+                Updates.set("material", item.getMaterial().name())
+            ));
+        }
+
+        MongoCollection<Document> collection = blackMarket ? blackMarketCollection : marketItemsCollection;
+        collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    }
+
+    /**
+     * Re-encode itemData stored as legacy Base64 strings into the binary ItemCodec format.
+     * Blocks on the database, run it from the database executor.
+     */
+    public long migrateLegacyItemData() {
+        long migrated = 0;
+        migrated += migrateLegacyItemData(marketItemsCollection);
+        if (!singleCollection) {
+            migrated += migrateLegacyItemData(blackMarketCollection);
+        }
+        migrated += migrateLegacyItemData(transactionsCollection);
+        return migrated;
+    }
+
+    private long migrateLegacyItemData(MongoCollection<Document> collection) {
+        int batchSize = plugin.getConfig().getInt("database.item-codec.migration-batch-size", 500);
+        Bson legacy = Filters.type("itemData", BsonType.STRING);
+        List<UpdateOneModel<Document>> updates = new ArrayList<>();
+        long migrated = 0;
+
+        for (Document doc : collection.find(legacy).projection(Projections.include("itemData")).batchSize(batchSize)) {
+            try {
+                ItemStack itemStack = ItemCodec.decode(ItemCodec.fromStoredValue(doc.get("itemData")));
+                // Match the string again so a listing bought meanwhile is not touched
+                updates.add(new UpdateOneModel<>(
+                    Filters.and(Filters.eq("_id", doc.get("_id")), legacy),
+                    Updates.set("itemData", ItemCodec.toStoredValue(ItemCodec.encode(itemStack)))
+                ));
+            } catch (Exception e) {
+                plugin.getLogger().warning("Could not migrate item data of " + collection.getNamespace().getCollectionName() +
+                    " " + doc.get("_id") + ": " + e.getMessage());
+            }
+
+            if (updates.size() >= batchSize) {
+                migrated += collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                updates.clear();
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            migrated += collection.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        }
+
+        return migrated;
+    }
+
+    // Asynchronous API - every method runs on the database executor and never blocks the caller
+
+    /**
+     * Get or create player data asynchronously
+     */
+    public CompletableFuture<PlayerData> getPlayerDataAsync(UUID playerId) {
+        return executor.supply(() -> getPlayerData(playerId));
+    }
+
+    /**
+     * Change player statistics asynchronously
+     */
+    public CompletableFuture<Void> incrementPlayerStatsAsync(UUID playerId, String playerName, int soldDelta,
+                                                             int boughtDelta, long earnedCents, long spentCents) {
+        return executor.run(() -> incrementPlayerStats(playerId, playerName, soldDelta, boughtDelta,
+            earnedCents, spentCents));
+    }
+
+    /**
+     * Save player data asynchronously
+     */
+    public CompletableFuture<Void> savePlayerDataAsync(PlayerData playerData) {
+        return executor.run(() -> savePlayerData(playerData));
+    }
+
+    /**
+     * Add item to marketplace asynchronously
+     */
+    public CompletableFuture<Void> addMarketItemAsync(MarketItem item) {
+        return executor.run(() -> addMarketItem(item));
+    }
+
+    /**
+     * Remove item from marketplace asynchronously
+     */
+    public CompletableFuture<Boolean> removeMarketItemAsync(String itemId) {
+        return executor.supply(() -> removeMarketItem(itemId));
+    }
+
+    /**
+     * Get all market items asynchronously
+     */
+    public CompletableFuture<List<MarketItem>> getAllMarketItemsAsync() {
+        return executor.supply(this::getAllMarketItems);
+    }
+
+    /**
+     * Get market items by seller asynchronously
+     */
+    public CompletableFuture<List<MarketItem>> getMarketItemsBySellerAsync(UUID sellerId) {
+        return executor.supply(() -> getMarketItemsBySeller(sellerId));
+    }
+
+    /**
+     * Get market item by ID asynchronously
+     */
+    public CompletableFuture<MarketItem> getMarketItemAsync(String itemId) {
+        return executor.supply(() -> getMarketItem(itemId));
+    }
+
+    /**
+     * Claim a market listing asynchronously
+     */
+    public CompletableFuture<MarketItem> claimMarketItemAsync(String itemId) {
+        return executor.supply(() -> claimMarketItem(itemId));
+    }
+
+    /**
+     * Claim a black market listing asynchronously
+     */
+    public CompletableFuture<MarketItem> claimBlackMarketItemAsync(String itemId) {
+        return executor.supply(() -> claimBlackMarketItem(itemId));
+    }
+
+    /**
+     * Record a purchase and its notification asynchronously
+     */
+    public CompletableFuture<Void> recordPurchaseAsync(Transaction transaction, PendingPayout payout, OutboxEvent event) {
+        return executor.run(() -> recordPurchase(transaction, payout, event));
+    }
+
+    /**
+     * Add transaction asynchronously
+     */
+    public CompletableFuture<Void> addTransactionAsync(Transaction transaction) {
+        return executor.run(() -> addTransaction(transaction));
+    }
+
+    /**
+     * Add transaction with its payout and notification asynchronously
+     */
+    public CompletableFuture<Void> addTransactionAsync(Transaction transaction, PendingPayout payout, OutboxEvent event) {
+        return executor.run(() -> addTransaction(transaction, payout, event));
+    }
+
+    /**
+     * Get transactions by player asynchronously
+     */
+    public CompletableFuture<List<Transaction>> getTransactionsByPlayerAsync(UUID playerId) {
+        return executor.supply(() -> getTransactionsByPlayer(playerId));
+    }
+
+    /**
+     * Get one page of a player's transactions asynchronously
+     */
+    public CompletableFuture<TransactionPage> getTransactionPageAsync(UUID playerId, TransactionSummary after, int pageSize) {
+        return executor.supply(() -> getTransactionPage(playerId, after, pageSize));
+    }
+
+    /**
+     * Count transactions by player asynchronously
+     */
+    public CompletableFuture<Long> countTransactionsByPlayerAsync(UUID playerId) {
+        return executor.supply(() -> countTransactionsByPlayer(playerId));
+    }
+
+    /**
+     * Add item to black market asynchronously
+     */
+    public CompletableFuture<Void> addBlackMarketItemAsync(MarketItem item) {
+        return executor.run(() -> addBlackMarketItem(item));
+    }
+
+    /**
+     * Remove item from black market asynchronously
+     */
+    public CompletableFuture<Boolean> removeBlackMarketItemAsync(String itemId) {
+        return executor.supply(() -> removeBlackMarketItem(itemId));
+    }
+
+    /**
+     * Get all black market items asynchronously
+     */
+    public CompletableFuture<List<MarketItem>> getAllBlackMarketItemsAsync() {
+        return executor.supply(this::getAllBlackMarketItems);
+    }
+
+    /**
+     * Get black market item by ID asynchronously
+     */
+    public CompletableFuture<MarketItem> getBlackMarketItemAsync(String itemId) {
+        return executor.supply(() -> getBlackMarketItem(itemId));
+    }
+
+    /**
+     * Put items in the mailbox asynchronously
+     */
+    public CompletableFuture<Void> sendToMailboxAsync(List<MailboxItem> items) {
+        return executor.run(() -> sendToMailbox(items));
+    }
+
+    /**
+     * Take items out of a player's mailbox asynchronously
+     */
+    public CompletableFuture<List<MailboxItem>> takeMailboxItemsAsync(UUID playerId, int limit) {
+        return executor.supply(() -> takeMailboxItems(playerId, limit));
+    }
+
+    /**
+     * Store a payout owed to a seller asynchronously
+     */
+    public CompletableFuture<Void> addPendingPayoutAsync(PendingPayout payout) {
+        return executor.run(() -> addPendingPayout(payout));
+    }
+
+    /**
+     * Claim the unclaimed payouts of a seller asynchronously
+     */
+    public CompletableFuture<List<PendingPayout>> claimPendingPayoutsAsync(UUID sellerId, String claimId, String serverId) {
+        return executor.supply(() -> claimPendingPayouts(sellerId, claimId, serverId));
+    }
+
+    /**
+     * Mark the payouts of a settlement as being deposited asynchronously
+     */
+    public CompletableFuture<Long> markPendingPayoutsSettlingAsync(String claimId) {
+        return executor.supply(() -> markPendingPayoutsSettling(claimId));
+    }
+
+    /**
+     * Delete the payouts of a settlement asynchronously
+     */
+    public CompletableFuture<Long> deletePendingPayoutsAsync(String claimId) {
+        return executor.supply(() -> deletePendingPayouts(claimId));
+    }
+
+    /**
+     * Release the payouts of a settlement asynchronously
+     */
+    public CompletableFuture<Long> releasePendingPayoutsAsync(String claimId) {
+        return executor.supply(() -> releasePendingPayouts(claimId));
+    }
+
+    /**
+     * Get due notifications asynchronously
+     */
+    public CompletableFuture<List<OutboxEvent>> findDueOutboxEventsAsync(long now, int limit) {
+        return executor.supply(() -> findDueOutboxEvents(now, limit));
+    }
+
+    /**
+     * Delete a notification asynchronously
+     */
+    public CompletableFuture<Void> deleteOutboxEventAsync(String eventId) {
+        return executor.run(() -> deleteOutboxEvent(eventId));
+    }
+
+    /**
+     * Reschedule a notification asynchronously
+     */
+    public CompletableFuture<Void> rescheduleOutboxEventAsync(String eventId, int attempts, long nextAttemptAt) {
+        return executor.run(() -> rescheduleOutboxEvent(eventId, attempts, nextAttemptAt));
+    }
+
+    /**
+     * Count waiting notifications asynchronously
+     */
+    public CompletableFuture<Long> countOutboxEventsAsync() {
+        return executor.supply(() -> countOutboxEvents());
+    }
+
+    /**
+     * Get count of active listings by player asynchronously
+     */
+    public CompletableFuture<Long> getActiveListingsCountAsync(UUID playerId) {
+        return executor.supply(() -> getActiveListingsCount(playerId));
+    }
+
+    /**
+     * Get all market items by player asynchronously
+     */
+    public CompletableFuture<List<MarketItem>> getPlayerMarketItemsAsync(UUID playerId) {
+        return executor.supply(() -> getPlayerMarketItems(playerId));
+    }
+
+    /**
+     * Get all black market items by player asynchronously
+     */
+    public CompletableFuture<List<MarketItem>> getPlayerBlackMarketItemsAsync(UUID playerId) {
+        return executor.supply(() -> getPlayerBlackMarketItems(playerId));
     }
 
     /**
@@ -414,4 +1441,30 @@ public class MongoManager {
         // Only log the first time a new timer state is created
         return new TimerState();
     }
+
+    /**
+     * Save the progress of a black market rotation, failures are thrown so the rotation stops
+     */
+    public void saveRotationState(RotationState rotationState) {
+        timerStateCollection.replaceOne(
+            Filters.eq("_id", rotationState.getId()),
+            rotationState.toDocument(),
+            new com.mongodb.client.model.ReplaceOptions().upsert(true)
+        );
+    }
+
+    /**
+     * Load the progress of a black market rotation
+     */
+    public RotationState loadRotationState(String rotationId) {
+        try {
+            Document doc = timerStateCollection.find(Filters.eq("_id", rotationId)).first();
+            if (doc != null) {
+                return RotationState.fromDocument(doc);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error loading rotation state: " + e.getMessage());
+        }
+        return new RotationState(rotationId);
+    }
 }
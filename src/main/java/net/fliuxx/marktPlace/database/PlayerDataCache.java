@@ -0,0 +1,474 @@
+package net.fliuxx.marktPlace.database;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.models.PlayerData;
+import net.fliuxx.marktPlace.database.models.PlayerStatsDelta;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Player Data Cache
+ * Keeps the data of online players in memory and collects statistic changes as deltas,
+ * which are written to MongoDB in one bulk write per flush interval.
+ * Every change is appended to a local journal first, so deltas of a crash are replayed on the next start.
+ * The journal is written on its own thread, so recording a change never touches the disk on the main thread.
+ */
+public class PlayerDataCache {
+
+    private static final String JOURNAL_FILE = "player-stats.journal";
+
+    private final MarktPlace plugin;
+    private final File journalFile;
+    private final Map<UUID, PlayerData> online = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private Map<UUID, PlayerStatsDelta> pending = new HashMap<>();
+    private Map<UUID, PlayerStatsDelta> inFlight = Collections.emptyMap();
+    private final ExecutorService journalWriter; // Journal file I/O, queued under the lock so it runs in the order of the changes
+    private BufferedWriter journal; // Only touched by journal tasks
+    private BukkitTask flushTask;
+    private boolean writeBehind;
+    private volatile boolean stopped;
+
+    // Flush metrics
+    private volatile int lastFlushSize;
+    private volatile long lastFlushDuration;
+    private volatile long lastFlushLag;
+    private volatile long lastFlushTime;
+    private final AtomicLong flushedUpdates = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    public PlayerDataCache(MarktPlace plugin) {
+        this.plugin = plugin;
+        this.journalFile = new File(plugin.getDataFolder(), JOURNAL_FILE);
+        this.journalWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MarketPlace-Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Replay the journal of the last run, load online players and start the flush task
+     */
+    public void start() {
+        writeBehind = plugin.getConfig().getBoolean("cache.player-data.write-behind", true);
+
+        synchronized (lock) {
+            replayJournal();
+            writeJournal(this::openJournal);
+        }
+
+        // Deltas left by a crash are written right away
+        if (!pending.isEmpty()) {
+            flushAsync();
+        }
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            load(player);
+        }
+
+        startFlushTask();
+    }
+
+    /**
+     * Write everything still pending and close the journal, called on disable
+     */
+    public void shutdown() {
+        stopFlushTask();
+        flush();
+
+        synchronized (lock) {
+            stopped = true;
+            writeJournal(this::closeJournal);
+        }
+
+        // Let queued journal writes reach the disk, later ones run on the calling thread
+        journalWriter.shutdown();
+        try {
+            journalWriter.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        online.clear();
+    }
+
+    /**
+     * Apply a changed flush interval or write-behind setting after a config reload
+     */
+    public void reload() {
+        stopFlushTask();
+        flushAsync();
+        writeBehind = plugin.getConfig().getBoolean("cache.player-data.write-behind", true);
+        startFlushTask();
+    }
+
+    /**
+     * Check if statistic changes are collected and written in batches
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Load the data of a player who joined
+     */
+    public void load(Player player) {
+        UUID playerId = player.getUniqueId();
+        plugin.getMongoManager().thenSync(plugin.getMongoManager().getPlayerDataAsync(playerId), playerData -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            applyUnwritten(playerData);
+            online.put(playerId, playerData);
+        }, error -> plugin.getLogger().warning("Error loading player data for " + player.getName() + ": " + error.getMessage()));
+    }
+
+    /**
+     * Drop the data of a player who left, unwritten changes stay pending until the next flush
+     */
+    public void unload(UUID playerId) {
+        online.remove(playerId);
+    }
+
+    /**
+     * Get the data of a player, from memory while online and from MongoDB otherwise
+     */
+    public CompletableFuture<PlayerData> getPlayerDataAsync(UUID playerId) {
+        PlayerData cached = online.get(playerId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return plugin.getMongoManager().getPlayerDataAsync(playerId).thenApply(playerData -> {
+            applyUnwritten(playerData);
+            return playerData;
+        });
+    }
+
+    /**
+     * Record a statistic change of a player.
+     * An active player also gets their last active time updated, the other side of a purchase does not.
+     */
+    public void record(UUID playerId, String playerName, int soldDelta, int boughtDelta,
+                       long earnedCents, long spentCents, boolean active) {
+        long now = System.currentTimeMillis();
+        PlayerStatsDelta change = new PlayerStatsDelta(playerId, now);
+        change.add(playerName, soldDelta, boughtDelta, earnedCents, spentCents, active ? now : 0);
+
+        PlayerData cached = online.get(playerId);
+        if (cached != null) {
+            change.applyTo(cached);
+        }
+
+        if (!writeBehind) {
+            // Write straight through, still as a single upsert
+            plugin.getMongoManager().getExecutor().run(() -> plugin.getMongoManager().flushPlayerStats(Collections.singletonList(change)))
+                .exceptionally(error -> {
+                    plugin.getLogger().warning("Error updating player data for " + playerName + ": " + error.getMessage());
+                    return null;
+                });
+            return;
+        }
+
+        synchronized (lock) {
+            pending.computeIfAbsent(playerId, id -> new PlayerStatsDelta(id, now)).merge(change);
+            String line = journalLine(change);
+            writeJournal(() -> appendJournal(line));
+        }
+    }
+
+    /**
+     * Write pending changes off the main thread, skipped while the previous flush is still running
+     */
+    public void flushAsync() {
+        Map<UUID, PlayerStatsDelta> batch;
+        synchronized (lock) {
+            if (!inFlight.isEmpty() || pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            inFlight = batch;
+            pending = new HashMap<>();
+        }
+
+        long started = System.currentTimeMillis();
+        plugin.getMongoManager().getExecutor().supply(() -> plugin.getMongoManager().flushPlayerStats(batch.values()))
+            .whenComplete((written, error) -> {
+                synchronized (lock) {
+                    inFlight = Collections.emptyMap();
+                    completeFlush(batch, started, error);
+                }
+            });
+    }
+
+    /**
+     * Write pending changes and wait for the write, only for shutdown and reload
+     */
+    public void flush() {
+        Map<UUID, PlayerStatsDelta> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        }
+
+        long started = System.currentTimeMillis();
+        Throwable failure = null;
+        try {
+            plugin.getMongoManager().flushPlayerStats(batch.values());
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        synchronized (lock) {
+            completeFlush(batch, started, failure);
+        }
+    }
+
+    /**
+     * Get the number of players with unwritten changes
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size() + inFlight.size();
+        }
+    }
+
+    public int getLastFlushSize() {
+        return lastFlushSize;
+    }
+
+    public long getLastFlushDuration() {
+        return lastFlushDuration;
+    }
+
+    /**
+     * Get the age of the oldest change in the last flush when it was written
+     */
+    public long getLastFlushLag() {
+        return lastFlushLag;
+    }
+
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    public long getFlushedUpdates() {
+        return flushedUpdates.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    private void startFlushTask() {
+        long interval = Math.max(1, plugin.getConfig().getLong("cache.player-data.flush-interval", 10)) * 20L;
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flushAsync, interval, interval);
+    }
+
+    private void stopFlushTask() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+    }
+
+    /**
+     * Add changes that are not in MongoDB yet to freshly read player data
+     */
+    private void applyUnwritten(PlayerData playerData) {
+        synchronized (lock) {
+            PlayerStatsDelta writing = inFlight.get(playerData.getPlayerId());
+            if (writing != null) {
+                writing.applyTo(playerData);
+            }
+            PlayerStatsDelta waiting = pending.get(playerData.getPlayerId());
+            if (waiting != null) {
+                waiting.applyTo(playerData);
+            }
+        }
+    }
+
+    /**
+     * Update metrics and the journal after a flush, a failed batch goes back to pending. Caller holds the lock.
+     */
+    private void completeFlush(Map<UUID, PlayerStatsDelta> batch, long started, Throwable error) {
+        long now = System.currentTimeMillis();
+
+        if (error != null) {
+            // Keep the older batch first so its creation time still drives the lag
+            for (PlayerStatsDelta newer : pending.values()) {
+                batch.computeIfAbsent(newer.getPlayerId(), id -> new PlayerStatsDelta(id, newer.getCreatedAt())).merge(newer);
+            }
+            pending = batch;
+            failedFlushes.incrementAndGet();
+            plugin.getLogger().warning("Error writing statistics of " + batch.size() + " players, retrying next flush: " + error.getMessage());
+            return;
+        }
+
+        long oldest = now;
+        for (PlayerStatsDelta delta : batch.values()) {
+            oldest = Math.min(oldest, delta.getCreatedAt());
+        }
+        lastFlushSize = batch.size();
+        lastFlushDuration = now - started;
+        lastFlushLag = now - oldest;
+        lastFlushTime = now;
+        flushedUpdates.addAndGet(batch.size());
+
+        // The journal only has to hold what is still unwritten
+        List<String> lines = new ArrayList<>(inFlight.size() + pending.size());
+        for (PlayerStatsDelta delta : inFlight.values()) {
+            lines.add(journalLine(delta));
+        }
+        for (PlayerStatsDelta delta : pending.values()) {
+            lines.add(journalLine(delta));
+        }
+        writeJournal(() -> rewriteJournal(lines));
+
+        if (plugin.getMarketConfig().isLogDatabaseQueries()) {
+            plugin.getLogger().info("Flushed statistics of " + lastFlushSize + " players in " + lastFlushDuration + "ms (lag " + lastFlushLag + "ms)");
+        }
+    }
+
+    /**
+     * Queue journal file I/O, only call it holding the lock so appends and rewrites keep the order of the changes.
+     * Once the journal thread is shut down the task runs on the calling thread.
+     */
+    private void writeJournal(Runnable task) {
+        try {
+            journalWriter.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private void openJournal() {
+        try {
+            journal = new BufferedWriter(new FileWriter(journalFile, true));
+        } catch (IOException e) {
+            journal = null;
+            plugin.getLogger().warning("Could not open player stats journal, unwritten statistics are lost on a crash: " + e.getMessage());
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Error closing player stats journal: " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    private void appendJournal(String line) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(line);
+            journal.newLine();
+            journal.flush();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Error writing player stats journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the journal with one line per player that still has unwritten changes
+     */
+    private void rewriteJournal(List<String> lines) {
+        closeJournal();
+        try {
+            journal = new BufferedWriter(new FileWriter(journalFile, false));
+            for (String line : lines) {
+                journal.write(line);
+                journal.newLine();
+            }
+            journal.flush();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Error rewriting player stats journal: " + e.getMessage());
+        }
+
+        // A flush that was still running on disable must not leave the file open
+        if (stopped) {
+            closeJournal();
+        }
+    }
+
+    private static String journalLine(PlayerStatsDelta delta) {
+        return delta.getPlayerId() + "\t" + (delta.getPlayerName() != null ? delta.getPlayerName() : "") + "\t" +
+            delta.getItemsSold() + "\t" + delta.getItemsBought() + "\t" + delta.getEarnedCents() + "\t" +
+            delta.getSpentCents() + "\t" + delta.getLastActive();
+    }
+
+    /**
+     * Read the journal of the last run into pending, a clean shutdown leaves it empty
+     */
+    private void replayJournal() {
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 7) {
+                    skipped++;
+                    continue;
+                }
+                try {
+                    UUID playerId = UUID.fromString(parts[0]);
+                    pending.computeIfAbsent(playerId, id -> new PlayerStatsDelta(id, now)).add(
+                        parts[1].isEmpty() ? null : parts[1],
+                        Integer.parseInt(parts[2]),
+                        Integer.parseInt(parts[3]),
+                        Long.parseLong(parts[4]),
+                        Long.parseLong(parts[5]),
+                        Long.parseLong(parts[6]));
+                } catch (IllegalArgumentException e) {
+                    // A line cut off by the crash
+                    skipped++;
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Error reading player stats journal: " + e.getMessage());
+        }
+
+        if (!pending.isEmpty()) {
+            plugin.getLogger().info("Recovered unwritten statistics of " + pending.size() + " players from the journal");
+        }
+        if (skipped > 0) {
+            plugin.getLogger().warning("Skipped " + skipped + " unreadable lines in the player stats journal");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package net.fliuxx.marktPlace.database;
+
+import net.fliuxx.marktPlace.database.models.TransactionSummary;
+
+import java.util.List;
+
+/**
+ * Transaction Page
+ * One page of a player's transaction history, newest first
+ */
+public final class TransactionPage {
+
+    private final List<TransactionSummary> transactions;
+    private final boolean hasMore;
+
+    public TransactionPage(List<TransactionSummary> transactions, boolean hasMore) {
+        this.transactions = transactions;
+        this.hasMore = hasMore;
+    }
+
+    public List<TransactionSummary> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Check if older transactions follow this page
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Get the last transaction of the page, the cursor for the next one
+     */
+    public TransactionSummary getLast() {
+        return transactions.isEmpty() ? null : transactions.get(transactions.size() - 1);
+    }
+}
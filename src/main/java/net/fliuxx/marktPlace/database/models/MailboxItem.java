@@ -0,0 +1,99 @@
+package net.fliuxx.marktPlace.database.models;
+
+import net.fliuxx.marktPlace.utils.ItemCodec;
+import org.bson.Document;
+
+import java.util.UUID;
+
+/**
+ * Mailbox Item Model
+ * An item waiting to be handed back to a player, keyed by the id of the listing it came from
+ */
+public class MailboxItem {
+
+    /**
+     * Why the item left the marketplace
+     */
+    public enum Reason {
+        EXPIRED,   // The listing ran past the listing duration
+        RETURNED   // An admin returned the listing to its seller
+    }
+
+    private String id;
+    private UUID recipientId;
+    private String recipientName;
+    private byte[] itemData; // Encoded with ItemCodec, copied from the listing
+    private Reason reason;
+    private long createdAt;
+
+    public MailboxItem(String id, UUID recipientId, String recipientName, byte[] itemData, Reason reason, long createdAt) {
+        this.id = id;
+        this.recipientId = recipientId;
+        this.recipientName = recipientName;
+        this.itemData = itemData;
+        this.reason = reason;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Create the mailbox entry that returns a listing to its seller
+     */
+    public static MailboxItem fromListing(MarketItem item, Reason reason) {
+        return new MailboxItem(item.getId(), item.getSellerId(), item.getSellerName(), item.getItemData(),
+            reason, System.currentTimeMillis());
+    }
+
+    /**
+     * Convert to MongoDB Document
+     */
+    public Document toDocument() {
+        Document doc = new Document();
+        doc.append("_id", id);
+        doc.append("recipientId", recipientId.toString());
+        doc.append("recipientName", recipientName);
+        doc.append("itemData", ItemCodec.toStoredValue(itemData));
+        doc.append("reason", reason.name());
+        doc.append("createdAt", createdAt);
+        return doc;
+    }
+
+    /**
+     * Create from MongoDB Document
+     */
+    public static MailboxItem fromDocument(Document doc) {
+        String reason = doc.getString("reason");
+        return new MailboxItem(
+            doc.getString("_id"),
+            UUID.fromString(doc.getString("recipientId")),
+            doc.getString("recipientName"),
+            ItemCodec.fromStoredValue(doc.get("itemData")),
+            reason != null ? Reason.valueOf(reason) : Reason.EXPIRED,
+            doc.getLong("createdAt") != null ? doc.getLong("createdAt") : 0
+        );
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public UUID getRecipientId() {
+        return recipientId;
+    }
+
+    public String getRecipientName() {
+        return recipientName;
+    }
+
+    public byte[] getItemData() {
+        return itemData;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -1,6 +1,8 @@
 package net.fliuxx.marktPlace.database.models;
 
+import net.fliuxx.marktPlace.utils.ItemCodec;
 import org.bson.Document;
+import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
 
 import java.util.UUID;
@@ -15,14 +17,15 @@ public class MarketItem {
     private UUID sellerId;
     private String sellerName;
     private ItemStack itemStack;
-    private String itemData; // Serialized item data
+    private byte[] itemData; // Encoded with ItemCodec, legacy listings hold a Java serialization stream
     private double price;
     private long listedAt;
     private boolean isBlackMarket;
     private double originalPrice; // For black market items
+    private Material material; // Indexed by the listing store, null for legacy listings until decoded
 
     public MarketItem(String id, UUID sellerId, String sellerName, ItemStack itemStack, 
-                     String itemData, double price) {
+                     byte[] itemData, double price) {
         this.id = id;
         this.sellerId = sellerId;
         this.sellerName = sellerName;
@@ -32,10 +35,11 @@ public class MarketItem {
         this.listedAt = System.currentTimeMillis();
         this.isBlackMarket = false;
         this.originalPrice = price;
+        this.material = itemStack != null ? itemStack.getType() : null;
     }
 
     public MarketItem(String id, UUID sellerId, String sellerName, ItemStack itemStack, 
-                     String itemData, double price, long listedAt, boolean isBlackMarket, 
+                     byte[] itemData, double price, long listedAt, boolean isBlackMarket, 
                      double originalPrice) {
         this.id = id;
         this.sellerId = sellerId;
@@ -46,6 +50,7 @@ public class MarketItem {
         this.listedAt = listedAt;
         this.isBlackMarket = isBlackMarket;
         this.originalPrice = originalPrice;
+        this.material = itemStack != null ? itemStack.getType() : null;
     }
 
     /**
@@ -56,11 +61,14 @@ public class MarketItem {
         doc.append("_id", id);
         doc.append("sellerId", sellerId.toString());
         doc.append("sellerName", sellerName);
-        doc.append("itemData", itemData);
+        doc.append("itemData", ItemCodec.toStoredValue(itemData));
         doc.append("price", price);
         doc.append("listedAt", listedAt);
         doc.append("isBlackMarket", isBlackMarket);
         doc.append("originalPrice", originalPrice);
+        if (material != null) {
+            doc.append("material", material.name());
+        }
         return doc;
     }
 
@@ -71,14 +79,22 @@ public class MarketItem {
         String id = doc.getString("_id");
         UUID sellerId = UUID.fromString(doc.getString("sellerId"));
         String sellerName = doc.getString("sellerName");
-        String itemData = doc.getString("itemData");
+        byte[] itemData = ItemCodec.fromStoredValue(doc.get("itemData"));
         double price = doc.getDouble("price");
         long listedAt = doc.getLong("listedAt");
         boolean isBlackMarket = doc.getBoolean("isBlackMarket", false);
         double originalPrice = doc.getDouble("originalPrice") != null ? doc.getDouble("originalPrice") : price;
 
-        return new MarketItem(id, sellerId, sellerName, null, itemData, price, 
+        MarketItem item = new MarketItem(id, sellerId, sellerName, null, itemData, price, 
                             listedAt, isBlackMarket, originalPrice);
+
+        // Listings created before the material field existed leave it null
+        String material = doc.getString("material");
+        if (material != null) {
+            item.setMaterial(Material.matchMaterial(material));
+        }
+
+        return item;
     }
 
     /**
@@ -142,11 +158,11 @@ public class MarketItem {
         this.itemStack = itemStack;
     }
 
-    public String getItemData() {
+    public byte[] getItemData() {
         return itemData;
     }
 
-    public void setItemData(String itemData) {
+    public void setItemData(byte[] itemData) {
         this.itemData = itemData;
     }
 
@@ -182,5 +198,13 @@ public class MarketItem {
         this.originalPrice = originalPrice;
     }
 
+    public Material getMaterial() {
+        return material;
+    }
+
+    public void setMaterial(Material material) {
+        this.material = material;
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package net.fliuxx.marktPlace.database.models;
+
+import org.bson.Document;
+
+/**
+ * Outbox Event Model
+ * A notification waiting to be delivered, written together with the transaction it announces
+ * and keyed by the transaction id so a purchase is never announced twice
+ */
+public class OutboxEvent {
+
+    /**
+     * What the notification announces
+     */
+    public enum Type {
+        PURCHASE,              // A regular marketplace purchase
+        BLACK_MARKET_PURCHASE  // A black market purchase
+    }
+
+    private String id;
+    private Type type;
+    private String buyerName;
+    private String sellerName;
+    private String itemName;
+    private double price;
+    private long createdAt;
+    private int attempts;
+    private long nextAttemptAt;
+
+    public OutboxEvent(String id, Type type, String buyerName, String sellerName, String itemName, double price,
+                       long createdAt, int attempts, long nextAttemptAt) {
+        this.id = id;
+        this.type = type;
+        this.buyerName = buyerName;
+        this.sellerName = sellerName;
+        this.itemName = itemName;
+        this.price = price;
+        this.createdAt = createdAt;
+        this.attempts = attempts;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    /**
+     * Create the notification announcing a transaction, due right away
+     */
+    public static OutboxEvent fromTransaction(Transaction transaction) {
+        Type type = transaction.getType() == Transaction.TransactionType.BLACK_MARKET ? Type.BLACK_MARKET_PURCHASE : Type.PURCHASE;
+        return new OutboxEvent(transaction.getId(), type, transaction.getBuyerName(), transaction.getSellerName(),
+            transaction.getItemName(), transaction.getPrice(), transaction.getTimestamp(), 0, transaction.getTimestamp());
+    }
+
+    /**
+     * Convert to MongoDB Document
+     */
+    public Document toDocument() {
+        Document doc = new Document();
+        doc.append("_id", id);
+        doc.append("type", type.name());
+        doc.append("buyerName", buyerName);
+        doc.append("sellerName", sellerName);
+        doc.append("itemName", itemName);
+        doc.append("price", price);
+        doc.append("createdAt", createdAt);
+        doc.append("attempts", attempts);
+        doc.append("nextAttemptAt", nextAttemptAt);
+        return doc;
+    }
+
+    /**
+     * Create from MongoDB Document
+     */
+    public static OutboxEvent fromDocument(Document doc) {
+        String type = doc.getString("type");
+        return new OutboxEvent(
+            doc.getString("_id"),
+            type != null ? Type.valueOf(type) : Type.PURCHASE,
+            doc.getString("buyerName"),
+            doc.getString("sellerName"),
+            doc.getString("itemName"),
+            doc.getDouble("price"),
+            doc.getLong("createdAt") != null ? doc.getLong("createdAt") : 0,
+            doc.getInteger("attempts", 0),
+            doc.getLong("nextAttemptAt") != null ? doc.getLong("nextAttemptAt") : 0
+        );
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getBuyerName() {
+        return buyerName;
+    }
+
+    public String getSellerName() {
+        return sellerName;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+}
@@ -0,0 +1,98 @@
+package net.fliuxx.marktPlace.database.models;
+
+import org.bson.Document;
+
+import java.util.UUID;
+
+/**
+ * Pending Payout Model
+ * Money owed to a seller for one sale, keyed by the transaction id so a sale is never paid twice
+ */
+public class PendingPayout {
+
+    private String transactionId;
+    private UUID sellerId;
+    private String sellerName;
+    private String buyerName;
+    private String itemName;
+    private double amount;
+    private long createdAt;
+
+    public PendingPayout(String transactionId, UUID sellerId, String sellerName, String buyerName,
+                         String itemName, double amount, long createdAt) {
+        this.transactionId = transactionId;
+        this.sellerId = sellerId;
+        this.sellerName = sellerName;
+        this.buyerName = buyerName;
+        this.itemName = itemName;
+        this.amount = amount;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Create the payout owed to the seller of a transaction
+     */
+    public static PendingPayout fromTransaction(Transaction transaction, double sellerPayment) {
+        return new PendingPayout(transaction.getId(), transaction.getSellerId(), transaction.getSellerName(),
+            transaction.getBuyerName(), transaction.getItemName(), sellerPayment, transaction.getTimestamp());
+    }
+
+    /**
+     * Convert to MongoDB Document
+     */
+    public Document toDocument() {
+        Document doc = new Document();
+        doc.append("_id", transactionId);
+        doc.append("sellerId", sellerId.toString());
+        doc.append("sellerName", sellerName);
+        doc.append("buyerName", buyerName);
+        doc.append("itemName", itemName);
+        doc.append("amount", amount);
+        doc.append("createdAt", createdAt);
+        return doc;
+    }
+
+    /**
+     * Create from MongoDB Document
+     */
+    public static PendingPayout fromDocument(Document doc) {
+        return new PendingPayout(
+            doc.getString("_id"),
+            UUID.fromString(doc.getString("sellerId")),
+            doc.getString("sellerName"),
+            doc.getString("buyerName"),
+            doc.getString("itemName"),
+            doc.getDouble("amount"),
+            doc.getLong("createdAt") != null ? doc.getLong("createdAt") : 0
+        );
+    }
+
+    // Getters
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public UUID getSellerId() {
+        return sellerId;
+    }
+
+    public String getSellerName() {
+        return sellerName;
+    }
+
+    public String getBuyerName() {
+        return buyerName;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -64,17 +64,25 @@ public class PlayerData {
     public static PlayerData fromDocument(Document doc) {
         UUID playerId = UUID.fromString(doc.getString("_id"));
         String playerName = doc.getString("playerName");
-        long totalEarnings = doc.getLong("totalEarnings");
-        long totalSpent = doc.getLong("totalSpent");
-        int itemsSold = doc.getInteger("itemsSold");
-        int itemsBought = doc.getInteger("itemsBought");
-        long lastActive = doc.getLong("lastActive");
-        long firstJoined = doc.getLong("firstJoined");
+        long totalEarnings = getNumber(doc, "totalEarnings").longValue();
+        long totalSpent = getNumber(doc, "totalSpent").longValue();
+        int itemsSold = getNumber(doc, "itemsSold").intValue();
+        int itemsBought = getNumber(doc, "itemsBought").intValue();
+        long lastActive = getNumber(doc, "lastActive").longValue();
+        long firstJoined = getNumber(doc, "firstJoined").longValue();
         
-        return new PlayerData(playerId, playerName, totalEarnings, totalSpent, 
+        return new PlayerData(playerId, playerName != null ? playerName : "", totalEarnings, totalSpent, 
                             itemsSold, itemsBought, lastActive, firstJoined);
     }
 
+    /**
+     * Read a numeric field, $inc keeps int32 and int64 values as they were written and missing fields count as zero
+     */
+    private static Number getNumber(Document doc, String key) {
+        Object value = doc.get(key);
+        return value instanceof Number ? (Number) value : 0;
+    }
+
     // Getters and Setters
     public UUID getPlayerId() {
         return playerId;
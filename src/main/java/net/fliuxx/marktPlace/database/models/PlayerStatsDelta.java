@@ -0,0 +1,93 @@
+package net.fliuxx.marktPlace.database.models;
+
+import java.util.UUID;
+
+/**
+ * Player Stats Delta
+ * Statistic changes of one player that have not been written to MongoDB yet
+ */
+public class PlayerStatsDelta {
+
+    private final UUID playerId;
+    private String playerName;
+    private int itemsSold;
+    private int itemsBought;
+    private long earnedCents;
+    private long spentCents;
+    private long lastActive; // 0 while only the other side of a purchase
+    private final long createdAt;
+
+    public PlayerStatsDelta(UUID playerId, long createdAt) {
+        this.playerId = playerId;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Add a change to this delta, a null name keeps the previous one
+     */
+    public void add(String playerName, int soldDelta, int boughtDelta, long earnedCents, long spentCents, long lastActive) {
+        if (playerName != null) {
+            this.playerName = playerName;
+        }
+        this.itemsSold += soldDelta;
+        this.itemsBought += boughtDelta;
+        this.earnedCents += earnedCents;
+        this.spentCents += spentCents;
+        this.lastActive = Math.max(this.lastActive, lastActive);
+    }
+
+    /**
+     * Add another delta of the same player, used when a failed flush is put back
+     */
+    public void merge(PlayerStatsDelta other) {
+        add(other.playerName, other.itemsSold, other.itemsBought, other.earnedCents, other.spentCents, other.lastActive);
+    }
+
+    /**
+     * Apply this delta to loaded player data
+     */
+    public void applyTo(PlayerData playerData) {
+        if (playerName != null) {
+            playerData.setPlayerName(playerName);
+        }
+        playerData.setItemsSold(playerData.getItemsSold() + itemsSold);
+        playerData.setItemsBought(playerData.getItemsBought() + itemsBought);
+        playerData.addEarnings(earnedCents);
+        playerData.addSpent(spentCents);
+        if (lastActive > playerData.getLastActive()) {
+            playerData.setLastActive(lastActive);
+        }
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public int getItemsSold() {
+        return itemsSold;
+    }
+
+    public int getItemsBought() {
+        return itemsBought;
+    }
+
+    public long getEarnedCents() {
+        return earnedCents;
+    }
+
+    public long getSpentCents() {
+        return spentCents;
+    }
+
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
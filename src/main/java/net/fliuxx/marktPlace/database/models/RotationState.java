@@ -0,0 +1,132 @@
+package net.fliuxx.marktPlace.database.models;
+
+import org.bson.Document;
+
+/**
+ * Rotation State Model
+ * Progress of a black market rotation, stored next to the timer state so a rotation interrupted by a crash can be resumed
+ */
+public class RotationState {
+
+    /**
+     * Steps of a rotation, each one can be repeated safely after a crash
+     */
+    public enum Phase {
+        IDLE,       // No rotation in progress
+        RETURNING,  // Black market listings are copied back to the market, then the black market is cleared
+        SELECTING,  // A sample of the market is copied into the black market, redone from scratch when resumed
+        MOVING      // Selected listings are deleted from the market in batches, resumed after the cursor
+    }
+
+    private String id;
+    private long epoch;
+    private Phase phase;
+    private String cursor;
+    private long selected;
+    private long moved;
+    private double discountPercentage;
+    private long startedAt;
+
+    public RotationState(String id) {
+        this.id = id;
+        this.epoch = 0;
+        this.phase = Phase.IDLE;
+    }
+
+    /**
+     * Convert to MongoDB Document
+     */
+    public Document toDocument() {
+        Document doc = new Document();
+        doc.append("_id", id);
+        doc.append("epoch", epoch);
+        doc.append("phase", phase.name());
+        doc.append("cursor", cursor);
+        doc.append("selected", selected);
+        doc.append("moved", moved);
+        doc.append("discountPercentage", discountPercentage);
+        doc.append("startedAt", startedAt);
+        return doc;
+    }
+
+    /**
+     * Create from MongoDB Document
+     */
+    public static RotationState fromDocument(Document doc) {
+        RotationState state = new RotationState(doc.getString("_id"));
+        state.epoch = doc.getLong("epoch") != null ? doc.getLong("epoch") : 0;
+        state.phase = doc.getString("phase") != null ? Phase.valueOf(doc.getString("phase")) : Phase.IDLE;
+        state.cursor = doc.getString("cursor");
+        state.selected = doc.getLong("selected") != null ? doc.getLong("selected") : 0;
+        state.moved = doc.getLong("moved") != null ? doc.getLong("moved") : 0;
+        state.discountPercentage = doc.getDouble("discountPercentage") != null ? doc.getDouble("discountPercentage") : 0;
+        state.startedAt = doc.getLong("startedAt") != null ? doc.getLong("startedAt") : 0;
+        return state;
+    }
+
+    /**
+     * Start the next rotation epoch
+     */
+    public void begin(double discountPercentage) {
+        this.epoch++;
+        this.phase = Phase.RETURNING;
+        this.cursor = null;
+        this.selected = 0;
+        this.moved = 0;
+        this.discountPercentage = discountPercentage;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    public boolean isIdle() {
+        return phase == Phase.IDLE;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public long getSelected() {
+        return selected;
+    }
+
+    public void setSelected(long selected) {
+        this.selected = selected;
+    }
+
+    public long getMoved() {
+        return moved;
+    }
+
+    public void setMoved(long moved) {
+        this.moved = moved;
+    }
+
+    public double getDiscountPercentage() {
+        return discountPercentage;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+}
@@ -1,5 +1,6 @@
 package net.fliuxx.marktPlace.database.models;
 
+import net.fliuxx.marktPlace.utils.ItemCodec;
 import org.bson.Document;
 
 import java.util.UUID;
@@ -16,7 +17,7 @@ public class Transaction {
     private UUID sellerId;
     private String sellerName;
     private String itemName;
-    private String itemData; // Serialized item data
+    private byte[] itemData; // Encoded with ItemCodec, legacy records hold a Java serialization stream
     private double price;
     private long timestamp;
     private TransactionType type;
@@ -27,7 +28,7 @@ public class Transaction {
     }
 
     public Transaction(String id, UUID buyerId, String buyerName, UUID sellerId, String sellerName,
-                      String itemName, String itemData, double price, TransactionType type) {
+                      String itemName, byte[] itemData, double price, TransactionType type) {
         this.id = id;
         this.buyerId = buyerId;
         this.buyerName = buyerName;
@@ -41,7 +42,7 @@ public class Transaction {
     }
 
     public Transaction(String id, UUID buyerId, String buyerName, UUID sellerId, String sellerName,
-                      String itemName, String itemData, double price, long timestamp, TransactionType type) {
+                      String itemName, byte[] itemData, double price, long timestamp, TransactionType type) {
         this.id = id;
         this.buyerId = buyerId;
         this.buyerName = buyerName;
@@ -65,7 +66,7 @@ public class Transaction {
         doc.append("sellerId", sellerId.toString());
         doc.append("sellerName", sellerName);
         doc.append("itemName", itemName);
-        doc.append("itemData", itemData);
+        doc.append("itemData", ItemCodec.toStoredValue(itemData));
         doc.append("price", price);
         doc.append("timestamp", timestamp);
         doc.append("type", type.name());
@@ -82,7 +83,7 @@ public class Transaction {
         UUID sellerId = UUID.fromString(doc.getString("sellerId"));
         String sellerName = doc.getString("sellerName");
         String itemName = doc.getString("itemName");
-        String itemData = doc.getString("itemData");
+        byte[] itemData = ItemCodec.fromStoredValue(doc.get("itemData"));
         double price = doc.getDouble("price");
         long timestamp = doc.getLong("timestamp");
         TransactionType type = TransactionType.valueOf(doc.getString("type") != null ? doc.getString("type") : "NORMAL");
@@ -168,11 +169,11 @@ public class Transaction {
         this.itemName = itemName;
     }
 
-    public String getItemData() {
+    public byte[] getItemData() {
         return itemData;
     }
 
-    public void setItemData(String itemData) {
+    public void setItemData(byte[] itemData) {
         this.itemData = itemData;
     }
 
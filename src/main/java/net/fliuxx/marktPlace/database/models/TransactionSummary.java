@@ -0,0 +1,118 @@
+package net.fliuxx.marktPlace.database.models;
+
+import org.bson.Document;
+
+import java.util.UUID;
+
+/**
+ * Transaction Summary Model
+ * A transaction without its serialized item, for history views that never rebuild the ItemStack
+ */
+public final class TransactionSummary {
+
+    private final String id;
+    private final UUID buyerId;
+    private final String buyerName;
+    private final UUID sellerId;
+    private final String sellerName;
+    private final String itemName;
+    private final double price;
+    private final long timestamp;
+    private final Transaction.TransactionType type;
+
+    public TransactionSummary(String id, UUID buyerId, String buyerName, UUID sellerId, String sellerName,
+                              String itemName, double price, long timestamp, Transaction.TransactionType type) {
+        this.id = id;
+        this.buyerId = buyerId;
+        this.buyerName = buyerName;
+        this.sellerId = sellerId;
+        this.sellerName = sellerName;
+        this.itemName = itemName;
+        this.price = price;
+        this.timestamp = timestamp;
+        this.type = type;
+    }
+
+    /**
+     * Create from a MongoDB Document, itemData may be projected away
+     */
+    public static TransactionSummary fromDocument(Document doc) {
+        String type = doc.getString("type");
+
+        return new TransactionSummary(
+            doc.getString("_id"),
+            UUID.fromString(doc.getString("buyerId")),
+            doc.getString("buyerName"),
+            UUID.fromString(doc.getString("sellerId")),
+            doc.getString("sellerName"),
+            doc.getString("itemName"),
+            doc.getDouble("price"),
+            doc.getLong("timestamp"),
+            Transaction.TransactionType.valueOf(type != null ? type : "NORMAL")
+        );
+    }
+
+    /**
+     * Get formatted timestamp
+     */
+    public String getFormattedTimestamp() {
+        return new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date(timestamp));
+    }
+
+    /**
+     * Get time since transaction
+     */
+    public String getTimeSince() {
+        long timeDiff = System.currentTimeMillis() - timestamp;
+        long seconds = timeDiff / 1000;
+        long minutes = seconds / 60;
+        long hours = minutes / 60;
+        long days = hours / 24;
+
+        if (days > 0) {
+            return days + "d ago";
+        } else if (hours > 0) {
+            return hours + "h ago";
+        } else if (minutes > 0) {
+            return minutes + "m ago";
+        } else {
+            return seconds + "s ago";
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public UUID getBuyerId() {
+        return buyerId;
+    }
+
+    public String getBuyerName() {
+        return buyerName;
+    }
+
+    public UUID getSellerId() {
+        return sellerId;
+    }
+
+    public String getSellerName() {
+        return sellerName;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Transaction.TransactionType getType() {
+        return type;
+    }
+}
@@ -1,14 +1,17 @@
 package net.fliuxx.marktPlace.gui;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ListingStore;
+import net.fliuxx.marktPlace.database.models.MailboxItem;
 import net.fliuxx.marktPlace.database.models.MarketItem;
-import net.fliuxx.marktPlace.utils.ItemSerializer;
+import net.fliuxx.marktPlace.utils.ItemCodec;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -18,12 +21,13 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Admin GUI
  * Handles the admin marketplace management interface
  */
-public class AdminGUI {
+public class AdminGUI implements MarketGui {
 
     private final MarktPlace plugin;
     private final Player player;
@@ -35,13 +39,25 @@ public class AdminGUI {
     public AdminGUI(MarktPlace plugin, Player player) {
         this.plugin = plugin;
         this.player = player;
-        this.items = plugin.getMongoManager().getAllMarketItems();
+        this.items = new ArrayList<>(plugin.getListingStore().getMarketItems());
         this.itemsPerPage = 45; // 9x5 grid for items
         this.currentPage = 0;
         
         createInventory();
     }
 
+    /**
+     * Claim a listing for an admin action, only returns the item if this call removed it
+     */
+    private CompletableFuture<MarketItem> claimItem(String itemId) {
+        ListingStore listingStore = plugin.getListingStore();
+        MarketItem item = listingStore.getMarketItem(itemId);
+        if (item == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return listingStore.removeMarketItem(itemId).thenApply(removed -> removed ? item : null);
+    }
+
     /**
      * Create the inventory
      */
@@ -54,7 +70,7 @@ public class AdminGUI {
         
         int rows = guiConfig.getInt("rows", 6);
         
-        inventory = Bukkit.createInventory(null, rows * 9, title);
+        inventory = Bukkit.createInventory(this, rows * 9, title);
         
         populateInventory();
     }
@@ -140,7 +156,9 @@ public class AdminGUI {
         
         for (int i = start; i < end; i++) {
             MarketItem item = items.get(i);
-            ItemStack displayItem = createMarketItemDisplay(item, guiConfig);
+            // Rendered once per listing and shared with every admin viewer
+            ItemStack displayItem = plugin.getGUIManager().getDisplayCache().getDisplayItem(DisplayItemCache.View.ADMIN, item,
+                listing -> createMarketItemDisplay(listing, guiConfig));
             
             // Find next available slot (skipping navigation slots)
             int slot = findNextAvailableSlot(i - start);
@@ -154,12 +172,13 @@ public class AdminGUI {
      * Create a market item display
      */
     private ItemStack createMarketItemDisplay(MarketItem marketItem, ConfigurationSection guiConfig) {
-        ItemStack originalItem = ItemSerializer.deserializeItemStack(marketItem.getItemData());
-        if (originalItem == null) {
-            originalItem = new ItemStack(Material.BARRIER);
+        ItemStack displayItem;
+        try {
+            displayItem = plugin.getListingStore().getItemCache().getItemStack(marketItem);
+        } catch (Exception e) {
+            displayItem = new ItemStack(Material.BARRIER);
         }
         
-        ItemStack displayItem = originalItem.clone();
         ItemMeta meta = displayItem.getItemMeta();
         
         if (meta != null) {
@@ -168,7 +187,7 @@ public class AdminGUI {
             
             // Set custom name
             String name = displayConfig.getString("name", "&e{item-name}");
-            name = name.replace("{item-name}", originalItem.getType().name());
+            name = name.replace("{item-name}", displayItem.getType().name());
             name = name.replace('&', '§');
             meta.setDisplayName(name);
             
@@ -301,13 +320,86 @@ public class AdminGUI {
         return item;
     }
 
+    /**
+     * Get the kind of GUI
+     */
+    @Override
+    public GuiType getType() {
+        return GuiType.ADMIN;
+    }
+
+    /**
+     * Reload the listings from the listing store and repaint the current page
+     */
+    @Override
+    public void refresh() {
+        items.clear();
+        items.addAll(plugin.getListingStore().getMarketItems());
+
+        int totalPages = (int) Math.ceil((double) items.size() / itemsPerPage);
+        if (currentPage >= totalPages && totalPages > 0) {
+            currentPage = totalPages - 1;
+        }
+        populateInventory();
+    }
+
+    /**
+     * Handle a click on a button, left click returns a listing to its seller and right click confiscates it
+     */
+    @Override
+    public void handleClick(InventoryClickEvent event) {
+        int slot = event.getSlot();
+
+        // Check if this is a GUI button using NBT
+        String buttonType = getButtonType(slot);
+        if (buttonType != null) {
+            switch (buttonType) {
+                case "next-page":
+                    nextPage();
+                    break;
+                case "previous-page":
+                    previousPage();
+                    break;
+                case "close":
+                    player.closeInventory();
+                    break;
+                case "page-info":
+                    // Do nothing for page info button
+                    break;
+            }
+        } else {
+            // Handle market item clicks
+            String itemId = getMarketItemId(slot);
+            if (itemId != null) {
+                ClickType clickType = event.getClick();
+                
+                if (clickType == ClickType.LEFT) {
+                    // Left click: Return item to seller
+                    returnItem(itemId);
+                } else if (clickType == ClickType.RIGHT) {
+                    // Right click: Confiscate item
+                    confiscateItem(itemId);
+                }
+            }
+        }
+    }
+
     /**
      * Open the GUI
      */
+    @Override
     public void open() {
         player.openInventory(inventory);
     }
 
+    /**
+     * Get the inventory
+     */
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+
     /**
      * Handle page navigation
      */
@@ -331,18 +423,18 @@ public class AdminGUI {
      * Handle item confiscation (right click)
      */
     public void confiscateItem(String itemId) {
-        try {
-            MarketItem item = plugin.getMongoManager().getMarketItem(itemId);
-            if (item != null) {
-                // Remove from marketplace
-                plugin.getMongoManager().removeMarketItem(itemId);
-                
+        // Remove from marketplace
+        plugin.getMongoManager().thenSync(claimItem(itemId), item -> {
+            if (item == null) {
+                return;
+            }
+
+            try {
                 // Log the action
                 plugin.getLogger().info("Admin " + player.getName() + " confiscated item " + itemId + " from " + item.getSellerName());
                 
-                // Send message to admin - use itemData instead of getItemStack()
-                ItemStack originalItem = ItemSerializer.deserializeItemStack(item.getItemData());
-                String itemName = originalItem != null ? originalItem.getType().name() : "Unknown Item";
+                // Send message to admin - the listing is gone from the item cache, the stored material avoids decoding it again
+                String itemName = item.getMaterial() != null ? item.getMaterial().name() : "Unknown Item";
                 String message = plugin.getConfigManager().getMessage("admin.item-confiscated", 
                     "item", itemName,
                     "seller", item.getSellerName());
@@ -352,51 +444,56 @@ public class AdminGUI {
                 items.removeIf(i -> i.getId().equals(itemId));
                 createInventory();
                 player.openInventory(inventory);
+            } catch (Exception e) {
+                player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+                plugin.getLogger().severe("Error confiscating item " + itemId + ": " + e.getMessage());
             }
-        } catch (Exception e) {
+        }, error -> {
             player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
-            plugin.getLogger().severe("Error confiscating item " + itemId + ": " + e.getMessage());
-        }
+            plugin.getLogger().severe("Error confiscating item " + itemId + ": " + error.getMessage());
+        });
     }
 
     /**
      * Handle item return (left click)
      */
     public void returnItem(String itemId) {
-        try {
-            MarketItem item = plugin.getMongoManager().getMarketItem(itemId);
-            if (item != null) {
-                // Get the seller player
-                OfflinePlayer seller = Bukkit.getOfflinePlayer(item.getSellerId());
-                
-                // Remove from marketplace
-                plugin.getMongoManager().removeMarketItem(itemId);
+        // Remove from marketplace
+        plugin.getMongoManager().thenSync(claimItem(itemId), item -> {
+            if (item == null) {
+                return;
+            }
+
+            try {
+                // Get the seller player, null when offline
+                Player onlineSeller = Bukkit.getPlayer(item.getSellerId());
                 
-                // If seller is online, give item directly, otherwise log for manual handling
-                if (seller.isOnline()) {
-                    Player onlineSeller = seller.getPlayer();
-                    ItemStack originalItem = ItemSerializer.deserializeItemStack(item.getItemData());
-                    
-                    if (originalItem != null && onlineSeller.getInventory().firstEmpty() != -1) {
-                        onlineSeller.getInventory().addItem(originalItem);
-                        onlineSeller.sendMessage(plugin.getConfigManager().getMessage("admin.item-returned-to-you"));
-                    } else {
-                        // Inventory full or item error - log for manual handling
-                        plugin.getLogger().warning("Could not return item " + itemId + " to " + seller.getName() + " - inventory full or item error");
-                        player.sendMessage("§cCould not return item to " + seller.getName() + " - check console for details");
-                        return;
+                // If seller is online, give item directly, otherwise it waits in their mailbox
+                ItemStack originalItem = null;
+                if (onlineSeller != null) {
+                    try {
+                        originalItem = ItemCodec.decode(item.getItemData());
+                    } catch (Exception e) {
+                        plugin.getLogger().warning("Could not decode returned item " + itemId + ", keeping it in the mailbox: " + e.getMessage());
                     }
+                }
+                
+                if (originalItem != null && onlineSeller.getInventory().firstEmpty() != -1) {
+                    onlineSeller.getInventory().addItem(originalItem);
+                    onlineSeller.sendMessage(plugin.getConfigManager().getMessage("admin.item-returned-to-you"));
                 } else {
-                    // Player offline - log for manual handling
-                    plugin.getLogger().info("Item " + itemId + " from offline player " + seller.getName() + " was returned by admin " + player.getName() + " - manual intervention may be required");
+                    // Seller offline, inventory full or item error - the listing is already claimed, so keep the item in the mailbox
+                    plugin.getMailboxManager().send(item, MailboxItem.Reason.RETURNED).exceptionally(error -> {
+                        plugin.getLogger().severe("Could not mail returned item " + itemId + " to " + item.getSellerName() + ": " + error.getMessage());
+                        return null;
+                    });
                 }
                 
                 // Log the action
                 plugin.getLogger().info("Admin " + player.getName() + " returned item " + itemId + " to " + item.getSellerName());
                 
-                // Send message to admin - use itemData instead of getItemStack()
-                ItemStack originalItem = ItemSerializer.deserializeItemStack(item.getItemData());
-                String itemName = originalItem != null ? originalItem.getType().name() : "Unknown Item";
+                // Send message to admin - the listing is gone from the item cache, the stored material avoids decoding it again
+                String itemName = item.getMaterial() != null ? item.getMaterial().name() : "Unknown Item";
                 String message = plugin.getConfigManager().getMessage("admin.item-returned", 
                     "item", itemName,
                     "seller", item.getSellerName());
@@ -406,11 +503,14 @@ public class AdminGUI {
                 items.removeIf(i -> i.getId().equals(itemId));
                 createInventory();
                 player.openInventory(inventory);
+            } catch (Exception e) {
+                player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+                plugin.getLogger().severe("Error returning item " + itemId + ": " + e.getMessage());
             }
-        } catch (Exception e) {
+        }, error -> {
             player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
-            plugin.getLogger().severe("Error returning item " + itemId + ": " + e.getMessage());
-        }
+            plugin.getLogger().severe("Error returning item " + itemId + ": " + error.getMessage());
+        });
     }
 
     /**
@@ -1,12 +1,16 @@
 package net.fliuxx.marktPlace.gui;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ItemCache;
 import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.utils.ConfigManager;
 import net.fliuxx.marktPlace.utils.ItemSerializer;
+import net.fliuxx.marktPlace.utils.MessageTemplate;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -22,19 +26,20 @@ import java.util.Set;
  * Black Market GUI
  * Handles the black market interface
  */
-public class BlackMarketGUI {
+public class BlackMarketGUI implements MarketGui {
 
     private final MarktPlace plugin;
     private final Player player;
-    private final List<MarketItem> items;
+    private List<MarketItem> items; // Shared listing snapshot, never modified
     private final int itemsPerPage;
     private int currentPage;
     private Inventory inventory;
+    private SlotRenderer renderer; // Writes only the slots that changed since the last render
 
     public BlackMarketGUI(MarktPlace plugin, Player player) {
         this.plugin = plugin;
         this.player = player;
-        this.items = plugin.getMongoManager().getAllBlackMarketItems();
+        this.items = plugin.getListingStore().getBlackMarketItems();
         this.itemsPerPage = 45; // 9x5 grid for items
         this.currentPage = 0;
         
@@ -53,17 +58,16 @@ public class BlackMarketGUI {
         
         int rows = guiConfig.getInt("rows", 6);
         
-        inventory = Bukkit.createInventory(null, rows * 9, title);
+        inventory = Bukkit.createInventory(this, rows * 9, title);
+        renderer = new SlotRenderer(inventory);
         
         populateInventory();
     }
 
     /**
-     * Populate the inventory with items
+     * Populate the inventory with items, unchanged slots are left alone
      */
     private void populateInventory() {
-        inventory.clear();
-        
         ConfigurationSection guiConfig = plugin.getConfigManager().getGuiConfig().getConfigurationSection("blackmarket");
         
         // Add navigation items
@@ -80,6 +84,9 @@ public class BlackMarketGUI {
         
         // Add info item
         addInfoItem(guiConfig);
+
+        // Send only the slots that differ from what the viewer already sees
+        renderer.commit();
     }
 
     /**
@@ -93,7 +100,7 @@ public class BlackMarketGUI {
                 int slot = nextPageConfig.getInt("slot", 53);
                 ItemStack nextPage = createGuiItem(nextPageConfig);
                 nextPage = addGuiButtonIdentifier(nextPage, "next-page", slot);
-                inventory.setItem(slot, nextPage);
+                renderer.set(slot, nextPage);
             }
         }
         
@@ -104,7 +111,7 @@ public class BlackMarketGUI {
                 int slot = prevPageConfig.getInt("slot", 45);
                 ItemStack prevPage = createGuiItem(prevPageConfig);
                 prevPage = addGuiButtonIdentifier(prevPage, "previous-page", slot);
-                inventory.setItem(slot, prevPage);
+                renderer.set(slot, prevPage);
             }
         }
         
@@ -114,7 +121,7 @@ public class BlackMarketGUI {
             int slot = closeConfig.getInt("slot", 49);
             ItemStack close = createGuiItem(closeConfig);
             close = addGuiButtonIdentifier(close, "close", slot);
-            inventory.setItem(slot, close);
+            renderer.set(slot, close);
         }
         
         // My Items button
@@ -123,7 +130,7 @@ public class BlackMarketGUI {
             int slot = myItemsConfig.getInt("slot", 47);
             ItemStack myItems = createGuiItem(myItemsConfig);
             myItems = addGuiButtonIdentifier(myItems, "my-items", slot);
-            inventory.setItem(slot, myItems);
+            renderer.set(slot, myItems);
         }
     }
 
@@ -137,7 +144,7 @@ public class BlackMarketGUI {
             ItemStack filler = createGuiItem(fillerConfig);
             
             for (int slot : slots) {
-                inventory.setItem(slot, filler);
+                renderer.set(slot, filler);
             }
         }
     }
@@ -160,12 +167,11 @@ public class BlackMarketGUI {
             if (availableSlot == -1) break; // No more available slots
             
             MarketItem item = items.get(i);
-            ItemStack displayItem = createMarketItemDisplay(item, guiConfig);
-            
-            // Add NBT identifier for market items
-            displayItem = addMarketItemIdentifier(displayItem, item.getId());
+            // Rendered once per listing and shared with every viewer of this GUI type
+            ItemStack displayItem = plugin.getGUIManager().getDisplayCache().getDisplayItem(DisplayItemCache.View.BLACK_MARKET, item,
+                listing -> addMarketItemIdentifier(createMarketItemDisplay(listing, guiConfig), listing.getId()));
             
-            inventory.setItem(availableSlot, displayItem);
+            renderer.set(availableSlot, displayItem);
             currentSlot = availableSlot + 1;
         }
     }
@@ -196,7 +202,7 @@ public class BlackMarketGUI {
             
             int slot = pageInfoConfig.getInt("slot", 51);
             pageInfo = addGuiButtonIdentifier(pageInfo, "page-info", slot);
-            inventory.setItem(slot, pageInfo);
+            renderer.set(slot, pageInfo);
         }
     }
 
@@ -225,7 +231,7 @@ public class BlackMarketGUI {
             
             int slot = infoConfig.getInt("slot", 46);
             info = addGuiButtonIdentifier(info, "info", slot);
-            inventory.setItem(slot, info);
+            renderer.set(slot, info);
         }
     }
 
@@ -233,39 +239,38 @@ public class BlackMarketGUI {
      * Create a market item display
      */
     private ItemStack createMarketItemDisplay(MarketItem item, ConfigurationSection guiConfig) {
-        ItemStack itemStack;
+        ItemStack displayItem;
+        String itemName;
         
         try {
-            itemStack = ItemSerializer.deserializeItemStack(item.getItemData());
+            // Decoded once per listing and shared by every viewer
+            ItemCache itemCache = plugin.getListingStore().getItemCache();
+            displayItem = itemCache.getItemStack(item);
+            itemName = itemCache.getDisplayName(item);
         } catch (Exception e) {
-            itemStack = new ItemStack(Material.BARRIER);
+            displayItem = new ItemStack(Material.BARRIER);
+            itemName = ItemSerializer.getDisplayName(displayItem);
         }
         
-        ItemStack displayItem = itemStack.clone();
         ItemMeta meta = displayItem.getItemMeta();
         
         if (meta != null) {
             ConfigurationSection displayConfig = guiConfig.getConfigurationSection("item-display");
             if (displayConfig != null) {
                 // Set name with dynamic discount percentage
-                double discountPercentage = plugin.getConfig().getDouble("blackmarket.discount-percentage", 30.0);
-                String name = displayConfig.getString("name", "&e{item-name} &c({discount}% OFF!)");
-                name = name.replace("{item-name}", ItemSerializer.getDisplayName(itemStack));
-                name = name.replace("{discount}", String.valueOf((int) discountPercentage));
-                name = name.replace('&', '§');
-                meta.setDisplayName(name);
+                double discountPercentage = plugin.getMarketConfig().getBlackMarketDiscountPercentage();
+                ConfigManager configManager = plugin.getConfigManager();
+                meta.setDisplayName(configManager.getGuiTemplate(displayConfig, "name", "&e{item-name} &c({discount}% OFF!)")
+                    .render("item-name", itemName, "discount", String.valueOf((int) discountPercentage)));
                 
                 // Set lore
-                List<String> lore = displayConfig.getStringList("lore");
+                String originalPrice = plugin.getEconomyManager().formatMoney(item.getOriginalPrice());
+                String price = plugin.getEconomyManager().formatMoney(item.getPrice());
                 List<String> newLore = new ArrayList<>();
                 
-                for (String line : lore) {
-                    line = line.replace("{original-price}", plugin.getEconomyManager().formatMoney(item.getOriginalPrice()));
-                    line = line.replace("{price}", plugin.getEconomyManager().formatMoney(item.getPrice()));
-                    line = line.replace("{seller}", item.getSellerName());
-                    line = line.replace("{time-ago}", item.getTimeSinceListing());
-                    line = line.replace('&', '§');
-                    newLore.add(line);
+                for (MessageTemplate line : configManager.getLoreTemplates(displayConfig, "lore")) {
+                    // {time-ago} is left in place, the display cache patches it per render
+                    newLore.add(line.render("original-price", originalPrice, "price", price, "seller", item.getSellerName()));
                 }
                 
                 meta.setLore(newLore);
@@ -377,9 +382,16 @@ public class BlackMarketGUI {
     /**
      * Refresh the GUI
      */
+    @Override
     public void refresh() {
-        items.clear();
-        items.addAll(plugin.getMongoManager().getAllBlackMarketItems());
+        refresh(plugin.getListingStore().getBlackMarketItems());
+    }
+
+    /**
+     * Refresh the GUI from a listing snapshot, only the slots that changed are sent to the viewer
+     */
+    public void refresh(List<MarketItem> snapshot) {
+        items = snapshot;
         
         // Adjust current page if necessary
         int totalPages = getTotalPages();
@@ -387,19 +399,67 @@ public class BlackMarketGUI {
             currentPage = totalPages - 1;
         }
         
+        // Rebuilt every time so listing ages stay current
         populateInventory();
     }
 
+    /**
+     * Get the kind of GUI
+     */
+    @Override
+    public GuiType getType() {
+        return GuiType.BLACK_MARKET;
+    }
+
+    /**
+     * Handle a click on a button or a listing
+     */
+    @Override
+    public void handleClick(InventoryClickEvent event) {
+        int slot = event.getSlot();
+
+        // Check if this is a GUI button using NBT
+        String buttonType = getButtonType(slot);
+        if (buttonType != null) {
+            switch (buttonType) {
+                case "next-page":
+                    nextPage();
+                    break;
+                case "previous-page":
+                    previousPage();
+                    break;
+                case "close":
+                    player.closeInventory();
+                    break;
+                case "my-items":
+                    // Close current inventory and open My Items
+                    plugin.getGUIManager().openLater(player, () -> new MyItemsGUI(plugin, player), 1L);
+                    break;
+                case "info":
+                case "page-info":
+                    // Do nothing for info buttons
+                    break;
+            }
+        } else {
+            // Handle market item clicks
+            MarketItem item = getMarketItemAtSlot(slot);
+            if (item != null) {
+                plugin.getPurchaseManager().requestPurchase(player, item, true);
+            }
+        }
+    }
+
     /**
      * Open the GUI for the player
      */
+    @Override
     public void open() {
         try {
             // Ensure GUI is properly registered before opening
             plugin.getGUIManager().registerGUI(player.getUniqueId(), this);
             
             // Add debug logging
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("Opening Black Market GUI for player " + player.getName() + " - Items: " + items.size());
             }
             
@@ -413,6 +473,7 @@ public class BlackMarketGUI {
     /**
      * Get the inventory
      */
+    @Override
     public Inventory getInventory() {
         return inventory;
     }
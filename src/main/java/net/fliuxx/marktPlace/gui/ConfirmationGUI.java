@@ -3,11 +3,11 @@ package net.fliuxx.marktPlace.gui;
 
 import net.fliuxx.marktPlace.MarktPlace;
 import net.fliuxx.marktPlace.database.models.MarketItem;
-import net.fliuxx.marktPlace.utils.ItemSerializer;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -18,7 +18,7 @@ import java.util.List;
 /**
  * Confirmation GUI for purchase confirmation
  */
-public class ConfirmationGUI {
+public class ConfirmationGUI implements MarketGui {
     
     private final MarktPlace plugin;
     private final Player player;
@@ -37,7 +37,7 @@ public class ConfirmationGUI {
         title = title.replace('&', '§');
         
         int rows = guiConfig != null ? guiConfig.getInt("rows", 3) : 3;
-        this.inventory = Bukkit.createInventory(null, rows * 9, title);
+        this.inventory = Bukkit.createInventory(this, rows * 9, title);
         
         setupGUI();
     }
@@ -96,7 +96,7 @@ public class ConfirmationGUI {
         // Item info (slot 13)
         ItemStack itemInfo;
         try {
-            itemInfo = ItemSerializer.deserializeItemStack(item.getItemData());
+            itemInfo = plugin.getListingStore().getItemCache().getItemStack(item);
         } catch (Exception e) {
             itemInfo = new ItemStack(Material.BARRIER);
         }
@@ -160,7 +160,7 @@ public class ConfirmationGUI {
         if (itemConfig != null) {
             ItemStack itemInfo;
             try {
-                itemInfo = ItemSerializer.deserializeItemStack(item.getItemData());
+                itemInfo = plugin.getListingStore().getItemCache().getItemStack(item);
             } catch (Exception e) {
                 itemInfo = new ItemStack(Material.BARRIER);
             }
@@ -197,7 +197,7 @@ public class ConfirmationGUI {
     private String replacePlaceholders(String text) {
         String itemName = "Unknown Item";
         try {
-            ItemStack itemStack = ItemSerializer.deserializeItemStack(item.getItemData());
+            ItemStack itemStack = plugin.getListingStore().getItemCache().getItemStack(item);
             if (itemStack != null && itemStack.hasItemMeta() && itemStack.getItemMeta().hasDisplayName()) {
                 itemName = itemStack.getItemMeta().getDisplayName();
             } else if (itemStack != null) {
@@ -275,16 +275,76 @@ public class ConfirmationGUI {
         return item;
     }
 
+    /**
+     * Get the kind of GUI
+     */
+    @Override
+    public GuiType getType() {
+        return GuiType.CONFIRMATION;
+    }
+
+    /**
+     * Nothing to refresh, the listing being confirmed is fixed
+     */
+    @Override
+    public void refresh() {
+    }
+
+    /**
+     * Handle a click on the confirm or cancel button
+     */
+    @Override
+    public void handleClick(InventoryClickEvent event) {
+        int slot = event.getSlot();
+
+        // Add debug logging
+        if (plugin.getMarketConfig().isGuiDebugging()) {
+            plugin.getLogger().info("Confirmation click for player " + player.getName() + " - slot: " + slot + " - title: " + event.getView().getTitle());
+        }
+
+        // Get confirm and cancel slots from config
+        int confirmSlot = 11; // default
+        int cancelSlot = 15; // default
+        
+        try {
+            ConfigurationSection guiConfig = plugin.getConfigManager().getGuiConfig().getConfigurationSection("confirmation");
+            if (guiConfig != null) {
+                confirmSlot = guiConfig.getInt("items.confirm.slot", 11);
+                cancelSlot = guiConfig.getInt("items.cancel.slot", 15);
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error reading confirmation GUI config: " + e.getMessage());
+        }
+
+        // Check by slot instead of display name to avoid issues with color codes and translations
+        if (slot == confirmSlot) { // Confirm button slot
+            // Unregister the confirmation GUI first to prevent conflicts
+            plugin.getGUIManager().unregisterGUI(player.getUniqueId());
+            player.closeInventory();
+            
+            // Process purchase after a small delay to ensure inventory is closed
+            Bukkit.getScheduler().runTaskLater(plugin, () -> {
+                plugin.getPurchaseManager().purchase(player, item, isBlackMarket);
+            }, 1L);
+
+        } else if (slot == cancelSlot) { // Cancel button slot
+            // Unregister the confirmation GUI
+            plugin.getGUIManager().unregisterGUI(player.getUniqueId());
+            player.closeInventory();
+        }
+    }
+
     /**
      * Open the GUI for the player
      */
+    @Override
     public void open() {
         try {
             // Ensure GUI is properly registered before opening
             plugin.getGUIManager().registerGUI(player.getUniqueId(), this);
             
             // Add debug logging
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("Opening Confirmation GUI for player " + player.getName() + " - Item: " + item.getId());
             }
             
@@ -312,6 +372,7 @@ public class ConfirmationGUI {
     /**
      * Get the inventory
      */
+    @Override
     public Inventory getInventory() {
         return inventory;
     }
@@ -0,0 +1,116 @@
+package net.fliuxx.marktPlace.gui;
+
+import net.fliuxx.marktPlace.database.models.MarketItem;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Display Item Cache
+ * Shares the finished display item of a listing between every viewer of a GUI type.
+ * Renderers leave {time-ago} in the lore, it is the only placeholder patched in per render.
+ */
+public class DisplayItemCache {
+
+    public static final String TIME_AGO = "{time-ago}";
+
+    /**
+     * GUI types with their own display of a listing
+     */
+    public enum View {
+        MARKETPLACE,
+        BLACK_MARKET,
+        MY_ITEMS,
+        ADMIN
+    }
+
+    private final Map<View, Map<String, RenderedItem>> views = new EnumMap<>(View.class);
+
+    public DisplayItemCache() {
+        for (View view : View.values()) {
+            views.put(view, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Get the display item of a listing, rendering it on first use.
+     * The returned item is shared, callers may place it in an inventory but must not modify it.
+     */
+    public ItemStack getDisplayItem(View view, MarketItem item, Function<MarketItem, ItemStack> renderer) {
+        RenderedItem rendered = views.get(view).computeIfAbsent(item.getId(), id -> new RenderedItem(renderer.apply(item)));
+        return rendered.get(item);
+    }
+
+    /**
+     * Drop a listing from every view
+     */
+    public void invalidate(String itemId) {
+        for (Map<String, RenderedItem> items : views.values()) {
+            items.remove(itemId);
+        }
+    }
+
+    /**
+     * Drop everything, used when listings are reloaded or the GUI configuration changes
+     */
+    public void clear() {
+        for (Map<String, RenderedItem> items : views.values()) {
+            items.clear();
+        }
+    }
+
+    /**
+     * Rendered listing with the lines that still need the listing age
+     */
+    private static final class RenderedItem {
+
+        private final ItemStack template;
+        private final boolean timeDependent;
+        private String timeAgo; // Age the patched item was built for
+        private ItemStack patched;
+
+        RenderedItem(ItemStack template) {
+            this.template = template;
+            ItemMeta meta = template.getItemMeta();
+            this.timeDependent = meta != null && meta.hasLore() && containsTimeAgo(meta.getLore());
+        }
+
+        synchronized ItemStack get(MarketItem item) {
+            if (!timeDependent) {
+                return template;
+            }
+
+            // Viewers rendering within the same second share one patched item
+            String current = item.getTimeSinceListing();
+            if (!current.equals(timeAgo)) {
+                ItemStack copy = template.clone();
+                ItemMeta meta = copy.getItemMeta();
+                List<String> lore = new ArrayList<>();
+                for (String line : meta.getLore()) {
+                    lore.add(line.replace(TIME_AGO, current));
+                }
+                meta.setLore(lore);
+                copy.setItemMeta(meta);
+
+                patched = copy;
+                timeAgo = current;
+            }
+            return patched;
+        }
+
+        private static boolean containsTimeAgo(List<String> lore) {
+            for (String line : lore) {
+                if (line.contains(TIME_AGO)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
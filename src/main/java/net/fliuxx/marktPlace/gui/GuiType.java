@@ -0,0 +1,14 @@
+package net.fliuxx.marktPlace.gui;
+
+/**
+ * GUI Type
+ * The kinds of marketplace GUIs, each kept in its own registry so refreshes only visit the affected kind
+ */
+public enum GuiType {
+    MARKETPLACE,
+    BLACK_MARKET,
+    MY_ITEMS,
+    TRANSACTION_HISTORY,
+    ADMIN,
+    CONFIRMATION
+}
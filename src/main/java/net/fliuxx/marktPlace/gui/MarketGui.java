@@ -0,0 +1,33 @@
+package net.fliuxx.marktPlace.gui;
+
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.InventoryHolder;
+
+/**
+ * Market GUI
+ * Implemented by every marketplace GUI. Its inventories are held by the GUI itself,
+ * so listeners recognise them with one instanceof check and hand clicks straight to it.
+ */
+public interface MarketGui extends InventoryHolder {
+
+    /**
+     * Get the kind of GUI, used to find its registry in the GUI manager
+     */
+    GuiType getType();
+
+    /**
+     * Open the GUI for its player
+     */
+    void open();
+
+    /**
+     * Bring the GUI up to date, only repainting what changed.
+     * Called by the GUI manager when data shown by this kind of GUI was marked dirty.
+     */
+    void refresh();
+
+    /**
+     * Handle a click in the GUI, the event is already cancelled and the clicked item is not empty
+     */
+    void handleClick(InventoryClickEvent event);
+}
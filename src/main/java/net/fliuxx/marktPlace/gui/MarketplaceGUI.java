@@ -1,13 +1,17 @@
 package net.fliuxx.marktPlace.gui;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ItemCache;
 import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.utils.ConfigManager;
 import net.fliuxx.marktPlace.utils.ItemSerializer;
+import net.fliuxx.marktPlace.utils.MessageTemplate;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -22,19 +26,20 @@ import java.util.Set;
  * Marketplace GUI
  * Handles the main marketplace interface
  */
-public class MarketplaceGUI {
+public class MarketplaceGUI implements MarketGui {
 
     private final MarktPlace plugin;
     private final Player player;
-    private final List<MarketItem> items;
+    private List<MarketItem> items; // Shared listing snapshot, never modified
     private final int itemsPerPage;
     private int currentPage;
     private Inventory inventory;
+    private SlotRenderer renderer; // Writes only the slots that changed since the last render
 
     public MarketplaceGUI(MarktPlace plugin, Player player) {
         this.plugin = plugin;
         this.player = player;
-        this.items = plugin.getMongoManager().getAllMarketItems();
+        this.items = plugin.getListingStore().getMarketItems();
         this.itemsPerPage = 45; // 9x5 grid for items
         this.currentPage = 0;
         
@@ -53,17 +58,16 @@ public class MarketplaceGUI {
         
         int rows = guiConfig.getInt("rows", 6);
         
-        inventory = Bukkit.createInventory(null, rows * 9, title);
+        inventory = Bukkit.createInventory(this, rows * 9, title);
+        renderer = new SlotRenderer(inventory);
         
         populateInventory();
     }
 
     /**
-     * Populate the inventory with items
+     * Populate the inventory with items, unchanged slots are left alone
      */
     private void populateInventory() {
-        inventory.clear();
-        
         ConfigurationSection guiConfig = plugin.getConfigManager().getGuiConfig().getConfigurationSection("marketplace");
         
         // Add navigation items
@@ -77,6 +81,9 @@ public class MarketplaceGUI {
         
         // Add page info
         addPageInfo(guiConfig);
+
+        // Send only the slots that differ from what the viewer already sees
+        renderer.commit();
     }
 
     /**
@@ -90,7 +97,7 @@ public class MarketplaceGUI {
                 int slot = nextPageConfig.getInt("slot", 53);
                 ItemStack nextPage = createGuiItem(nextPageConfig);
                 nextPage = addGuiButtonIdentifier(nextPage, "next-page", slot);
-                inventory.setItem(slot, nextPage);
+                renderer.set(slot, nextPage);
             }
         }
         
@@ -101,7 +108,7 @@ public class MarketplaceGUI {
                 int slot = prevPageConfig.getInt("slot", 45);
                 ItemStack prevPage = createGuiItem(prevPageConfig);
                 prevPage = addGuiButtonIdentifier(prevPage, "previous-page", slot);
-                inventory.setItem(slot, prevPage);
+                renderer.set(slot, prevPage);
             }
         }
         
@@ -111,7 +118,7 @@ public class MarketplaceGUI {
             int slot = closeConfig.getInt("slot", 49);
             ItemStack close = createGuiItem(closeConfig);
             close = addGuiButtonIdentifier(close, "close", slot);
-            inventory.setItem(slot, close);
+            renderer.set(slot, close);
         }
         
         // My Items button
@@ -120,7 +127,7 @@ public class MarketplaceGUI {
             int slot = myItemsConfig.getInt("slot", 47);
             ItemStack myItems = createGuiItem(myItemsConfig);
             myItems = addGuiButtonIdentifier(myItems, "my-items", slot);
-            inventory.setItem(slot, myItems);
+            renderer.set(slot, myItems);
         }
     }
 
@@ -134,7 +141,7 @@ public class MarketplaceGUI {
             ItemStack filler = createGuiItem(fillerConfig);
             
             for (int slot : slots) {
-                inventory.setItem(slot, filler);
+                renderer.set(slot, filler);
             }
         }
     }
@@ -157,12 +164,11 @@ public class MarketplaceGUI {
             if (availableSlot == -1) break; // No more available slots
             
             MarketItem item = items.get(i);
-            ItemStack displayItem = createMarketItemDisplay(item, guiConfig);
-            
-            // Add NBT identifier for market items
-            displayItem = addMarketItemIdentifier(displayItem, item.getId());
+            // Rendered once per listing and shared with every viewer of this GUI type
+            ItemStack displayItem = plugin.getGUIManager().getDisplayCache().getDisplayItem(DisplayItemCache.View.MARKETPLACE, item,
+                listing -> addMarketItemIdentifier(createMarketItemDisplay(listing, guiConfig), listing.getId()));
             
-            inventory.setItem(availableSlot, displayItem);
+            renderer.set(availableSlot, displayItem);
             currentSlot = availableSlot + 1;
         }
     }
@@ -206,7 +212,7 @@ public class MarketplaceGUI {
             }
             
             pageInfo = addGuiButtonIdentifier(pageInfo, "page-info", slot);
-            inventory.setItem(slot, pageInfo);
+            renderer.set(slot, pageInfo);
         }
     }
 
@@ -214,36 +220,35 @@ public class MarketplaceGUI {
      * Create a market item display
      */
     private ItemStack createMarketItemDisplay(MarketItem item, ConfigurationSection guiConfig) {
-        ItemStack itemStack;
+        ItemStack displayItem;
+        String itemName;
         
         try {
-            itemStack = ItemSerializer.deserializeItemStack(item.getItemData());
+            // Decoded once per listing and shared by every viewer
+            ItemCache itemCache = plugin.getListingStore().getItemCache();
+            displayItem = itemCache.getItemStack(item);
+            itemName = itemCache.getDisplayName(item);
         } catch (Exception e) {
-            itemStack = new ItemStack(Material.BARRIER);
+            displayItem = new ItemStack(Material.BARRIER);
+            itemName = ItemSerializer.getDisplayName(displayItem);
         }
         
-        ItemStack displayItem = itemStack.clone();
         ItemMeta meta = displayItem.getItemMeta();
         
         if (meta != null) {
             ConfigurationSection displayConfig = guiConfig.getConfigurationSection("item-display");
             if (displayConfig != null) {
                 // Set name
-                String name = displayConfig.getString("name", "&e{item-name}");
-                name = name.replace("{item-name}", ItemSerializer.getDisplayName(itemStack));
-                name = name.replace('&', '§');
-                meta.setDisplayName(name);
+                ConfigManager configManager = plugin.getConfigManager();
+                meta.setDisplayName(configManager.getGuiTemplate(displayConfig, "name", "&e{item-name}").render("item-name", itemName));
                 
                 // Set lore
-                List<String> lore = displayConfig.getStringList("lore");
+                String price = plugin.getEconomyManager().formatMoney(item.getPrice());
                 List<String> newLore = new ArrayList<>();
                 
-                for (String line : lore) {
-                    line = line.replace("{price}", plugin.getEconomyManager().formatMoney(item.getPrice()));
-                    line = line.replace("{seller}", item.getSellerName());
-                    line = line.replace("{time-ago}", item.getTimeSinceListing());
-                    line = line.replace('&', '§');
-                    newLore.add(line);
+                for (MessageTemplate line : configManager.getLoreTemplates(displayConfig, "lore")) {
+                    // {time-ago} is left in place, the display cache patches it per render
+                    newLore.add(line.render("price", price, "seller", item.getSellerName()));
                 }
                 
                 meta.setLore(newLore);
@@ -412,9 +417,16 @@ public class MarketplaceGUI {
     /**
      * Refresh the GUI
      */
+    @Override
     public void refresh() {
-        items.clear();
-        items.addAll(plugin.getMongoManager().getAllMarketItems());
+        refresh(plugin.getListingStore().getMarketItems());
+    }
+
+    /**
+     * Refresh the GUI from a listing snapshot, only the slots that changed are sent to the viewer
+     */
+    public void refresh(List<MarketItem> snapshot) {
+        items = snapshot;
         
         // Adjust current page if necessary
         int totalPages = getTotalPages();
@@ -422,12 +434,59 @@ public class MarketplaceGUI {
             currentPage = totalPages - 1;
         }
         
+        // Rebuilt every time so listing ages stay current
         populateInventory();
     }
 
+    /**
+     * Get the kind of GUI
+     */
+    @Override
+    public GuiType getType() {
+        return GuiType.MARKETPLACE;
+    }
+
+    /**
+     * Handle a click on a button or a listing
+     */
+    @Override
+    public void handleClick(InventoryClickEvent event) {
+        int slot = event.getSlot();
+
+        // Check if this is a GUI button using NBT
+        String buttonType = getButtonType(slot);
+        if (buttonType != null) {
+            switch (buttonType) {
+                case "next-page":
+                    nextPage();
+                    break;
+                case "previous-page":
+                    previousPage();
+                    break;
+                case "close":
+                    player.closeInventory();
+                    break;
+                case "my-items":
+                    // Close current inventory and open My Items
+                    plugin.getGUIManager().openLater(player, () -> new MyItemsGUI(plugin, player), 1L);
+                    break;
+                case "page-info":
+                    // Do nothing for page info button
+                    break;
+            }
+        } else {
+            // Handle market item clicks
+            MarketItem item = getMarketItemAtSlot(slot);
+            if (item != null) {
+                plugin.getPurchaseManager().requestPurchase(player, item, false);
+            }
+        }
+    }
+
     /**
      * Open the GUI for the player
      */
+    @Override
     public void open() {
         player.openInventory(inventory);
     }
@@ -435,6 +494,7 @@ public class MarketplaceGUI {
     /**
      * Get the inventory
      */
+    @Override
     public Inventory getInventory() {
         return inventory;
     }
@@ -1,11 +1,17 @@
 package net.fliuxx.marktPlace.gui;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ItemCache;
+import net.fliuxx.marktPlace.database.ListingStore;
 import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.utils.ConfigManager;
+import net.fliuxx.marktPlace.utils.ItemCodec;
 import net.fliuxx.marktPlace.utils.ItemSerializer;
+import net.fliuxx.marktPlace.utils.MessageTemplate;
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -14,16 +20,18 @@ import org.bukkit.persistence.PersistentDataType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * My Items GUI
  * Shows player's items currently for sale in both regular market and black market
  */
-public class MyItemsGUI {
+public class MyItemsGUI implements MarketGui {
 
     private final MarktPlace plugin;
     private final Player player;
     private final Inventory inventory;
+    private final SlotRenderer renderer; // Writes only the slots that changed since the last render
     private final List<MarketItem> myItems;
     private final List<MarketItem> myBlackMarketItems;
     private int currentPage = 0;
@@ -33,34 +41,31 @@ public class MyItemsGUI {
         this.plugin = plugin;
         this.player = player;
 
-        // Load items from database
-        this.myItems = plugin.getMongoManager().getPlayerMarketItems(player.getUniqueId());
-        this.myBlackMarketItems = plugin.getMongoManager().getPlayerBlackMarketItems(player.getUniqueId());
+        // Items are loaded from the listing store by refresh()
+        this.myItems = new ArrayList<>();
+        this.myBlackMarketItems = new ArrayList<>();
 
         // Create inventory
         ConfigurationSection guiConfig = plugin.getConfigManager().getGuiConfig().getConfigurationSection("my-items");
         String title = guiConfig.getString("title", "&6My Items").replace('&', '§');
-        this.inventory = plugin.getServer().createInventory(null, 54, title);
+        this.inventory = plugin.getServer().createInventory(this, 54, title);
+        this.renderer = new SlotRenderer(inventory);
 
         refresh();
     }
 
     /**
-     * Refresh the GUI
+     * Refresh the GUI, the inventory is only repainted if the visible page changed
      */
+    @Override
     public void refresh() {
-        inventory.clear();
-
-        // Reload items from database
+        // Reload items from the listing store
+        ListingStore listingStore = plugin.getListingStore();
         myItems.clear();
-        myItems.addAll(plugin.getMongoManager().getPlayerMarketItems(player.getUniqueId()));
+        myItems.addAll(listingStore.getMarketItemsBySeller(player.getUniqueId()));
         myBlackMarketItems.clear();
-        myBlackMarketItems.addAll(plugin.getMongoManager().getPlayerBlackMarketItems(player.getUniqueId()));
+        myBlackMarketItems.addAll(listingStore.getBlackMarketItemsBySeller(player.getUniqueId()));
 
-        // Ensure black market flag is set correctly for black market items
-        for (MarketItem item : myBlackMarketItems) {
-            item.setBlackMarket(true);
-        }
 
         // Combine all items
         List<MarketItem> allItems = new ArrayList<>();
@@ -77,53 +82,55 @@ public class MyItemsGUI {
             MarketItem item = allItems.get(i);
             int slot = i - startIndex;
 
-            ItemStack displayItem = createMyItemDisplay(item, guiConfig);
+            // Rendered once per listing and shared with every viewer of this GUI type
+            ItemStack displayItem = plugin.getGUIManager().getDisplayCache().getDisplayItem(DisplayItemCache.View.MY_ITEMS, item,
+                listing -> addMarketItemIdentifier(createMyItemDisplay(listing, guiConfig), listing.getId()));
             
-            // Add NBT identifier for market items
-            displayItem = addMarketItemIdentifier(displayItem, item.getId());
-            
-            inventory.setItem(slot, displayItem);
+            renderer.set(slot, displayItem);
         }
 
         // Add navigation and control buttons
         addNavigationButtons(guiConfig);
         addFillerItems(guiConfig);
+
+        // Send only the slots that differ from what the viewer already sees
+        renderer.commit();
     }
 
     /**
      * Create display item for player's own items
      */
     private ItemStack createMyItemDisplay(MarketItem item, ConfigurationSection guiConfig) {
-        ItemStack itemStack;
+        ItemStack displayItem;
+        String itemName;
 
         try {
-            itemStack = ItemSerializer.deserializeItemStack(item.getItemData());
+            // Decoded once per listing and shared by every viewer
+            ItemCache itemCache = plugin.getListingStore().getItemCache();
+            displayItem = itemCache.getItemStack(item);
+            itemName = itemCache.getDisplayName(item);
         } catch (Exception e) {
-            itemStack = new ItemStack(Material.BARRIER);
+            displayItem = new ItemStack(Material.BARRIER);
+            itemName = ItemSerializer.getDisplayName(displayItem);
         }
 
-        ItemStack displayItem = itemStack.clone();
         ItemMeta meta = displayItem.getItemMeta();
 
         if (meta != null) {
             ConfigurationSection displayConfig = guiConfig.getConfigurationSection("item-display");
             if (displayConfig != null) {
                 // Set name
-                String name = displayConfig.getString("name", "&e{item-name}");
-                name = name.replace("{item-name}", ItemSerializer.getDisplayName(itemStack));
-                name = name.replace('&', '§');
-                meta.setDisplayName(name);
+                ConfigManager configManager = plugin.getConfigManager();
+                meta.setDisplayName(configManager.getGuiTemplate(displayConfig, "name", "&e{item-name}").render("item-name", itemName));
 
                 // Set lore
-                List<String> lore = displayConfig.getStringList("lore");
+                String price = plugin.getEconomyManager().formatMoney(item.getPrice());
+                String marketType = item.isBlackMarket() ? "Black Market" : "Market";
                 List<String> newLore = new ArrayList<>();
 
-                for (String line : lore) {
-                    line = line.replace("{price}", plugin.getEconomyManager().formatMoney(item.getPrice()));
-                    line = line.replace("{market-type}", item.isBlackMarket() ? "Black Market" : "Market");
-                    line = line.replace("{time-ago}", item.getTimeSinceListing());
-                    line = line.replace('&', '§');
-                    newLore.add(line);
+                for (MessageTemplate line : configManager.getLoreTemplates(displayConfig, "lore")) {
+                    // {time-ago} is left in place, the display cache patches it per render
+                    newLore.add(line.render("price", price, "market-type", marketType));
                 }
 
                 // Note: removal instructions are already in guis.yml configuration
@@ -154,7 +161,7 @@ public class MyItemsGUI {
                 int slot = prevConfig.getInt("slot", 45);
                 ItemStack prevButton = createGuiItem(prevConfig);
                 prevButton = addGuiButtonIdentifier(prevButton, "previous-page", slot);
-                inventory.setItem(slot, prevButton);
+                renderer.set(slot, prevButton);
             }
         }
 
@@ -165,7 +172,7 @@ public class MyItemsGUI {
                 int slot = nextConfig.getInt("slot", 53);
                 ItemStack nextButton = createGuiItem(nextConfig);
                 nextButton = addGuiButtonIdentifier(nextButton, "next-page", slot);
-                inventory.setItem(slot, nextButton);
+                renderer.set(slot, nextButton);
             }
         }
 
@@ -175,7 +182,7 @@ public class MyItemsGUI {
             int slot = backConfig.getInt("slot", 49);
             ItemStack backButton = createGuiItem(backConfig);
             backButton = addGuiButtonIdentifier(backButton, "back", slot);
-            inventory.setItem(slot, backButton);
+            renderer.set(slot, backButton);
         }
 
         // Close button
@@ -184,7 +191,7 @@ public class MyItemsGUI {
             int slot = closeConfig.getInt("slot", 48);
             ItemStack closeButton = createGuiItem(closeConfig);
             closeButton = addGuiButtonIdentifier(closeButton, "close", slot);
-            inventory.setItem(slot, closeButton);
+            renderer.set(slot, closeButton);
         }
 
         // Page info
@@ -221,7 +228,7 @@ public class MyItemsGUI {
 
             int slot = pageInfoConfig.getInt("slot", 50);
             pageInfo = addGuiButtonIdentifier(pageInfo, "page-info", slot);
-            inventory.setItem(slot, pageInfo);
+            renderer.set(slot, pageInfo);
         }
     }
 
@@ -236,7 +243,7 @@ public class MyItemsGUI {
 
             for (int slot : slots) {
                 if (inventory.getItem(slot) == null) {
-                    inventory.setItem(slot, filler);
+                    renderer.set(slot, filler);
                 }
             }
         }
@@ -291,24 +298,28 @@ public class MyItemsGUI {
      * Remove item from marketplace
      */
     public void removeItem(MarketItem item) {
-        try {
-            // Remove from database first
-            boolean removed = false;
-            if (item.isBlackMarket()) {
-                plugin.getMongoManager().removeBlackMarketItem(item.getId());
-                removed = true;
-            } else {
-                plugin.getMongoManager().removeMarketItem(item.getId());
-                removed = true;
+        ListingStore listingStore = plugin.getListingStore();
+
+        // Remove from the store first, only the caller whose removal succeeds gets the item back
+        CompletableFuture<Boolean> removal = item.isBlackMarket()
+            ? listingStore.removeBlackMarketItem(item.getId())
+            : listingStore.removeMarketItem(item.getId());
+
+        plugin.getMongoManager().thenSync(removal, removed -> {
+            if (!removed) {
+                // Already sold or removed in the meantime
+                player.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-not-found"));
+                refresh();
+                return;
             }
 
-            if (removed) {
+            try {
                 // Remove from local lists immediately to prevent duplication
                 myItems.removeIf(marketItem -> marketItem.getId().equals(item.getId()));
                 myBlackMarketItems.removeIf(marketItem -> marketItem.getId().equals(item.getId()));
 
                 // Give item back to player
-                ItemStack itemStack = ItemSerializer.deserializeItemStack(item.getItemData());
+                ItemStack itemStack = ItemCodec.decode(item.getItemData());
 
                 // Check if player has space
                 if (player.getInventory().firstEmpty() == -1) {
@@ -319,23 +330,25 @@ public class MyItemsGUI {
                     player.getInventory().addItem(itemStack);
                     player.sendMessage(plugin.getConfigManager().getMessage("my-items.item-removed"));
                 }
+            } catch (Exception e) {
+                player.sendMessage(plugin.getConfigManager().getMessage("errors.invalid-item"));
+                plugin.getLogger().severe("Error returning removed item " + item.getId() + " to " + player.getName() + ": " + e.getMessage());
+            }
 
-                // Refresh GUI after local list update
-                refresh();
-
-                // Re-register this GUI to ensure it doesn't get lost
-                plugin.getGUIManager().registerGUI(player.getUniqueId(), this);
+            // Refresh GUI after local list update
+            refresh();
 
-                // Auto-refresh all marketplace GUIs
-                plugin.getGUIManager().refreshMarketplaceGUIs();
-                plugin.getGUIManager().refreshBlackMarketGUIs();
-                plugin.getGUIManager().refreshMyItemsGUIs();
-            }
+            // Re-register this GUI to ensure it doesn't get lost
+            plugin.getGUIManager().registerGUI(player.getUniqueId(), this);
 
-        } catch (Exception e) {
+            // Auto-refresh all marketplace GUIs
+            plugin.getGUIManager().refreshMarketplaceGUIs();
+            plugin.getGUIManager().refreshBlackMarketGUIs();
+            plugin.getGUIManager().refreshMyItemsGUIs();
+        }, error -> {
             player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
-            plugin.getLogger().warning("Error removing item from marketplace: " + e.getMessage());
-        }
+            plugin.getLogger().warning("Error removing item from marketplace: " + error.getMessage());
+        });
     }
 
     /**
@@ -394,16 +407,62 @@ public class MyItemsGUI {
         }
     }
 
+    /**
+     * Get the kind of GUI
+     */
+    @Override
+    public GuiType getType() {
+        return GuiType.MY_ITEMS;
+    }
+
+    /**
+     * Handle a click on a button or one of the player's listings
+     */
+    @Override
+    public void handleClick(InventoryClickEvent event) {
+        int slot = event.getSlot();
+
+        // Check if this is a GUI button using NBT
+        String buttonType = getButtonType(slot);
+        if (buttonType != null) {
+            switch (buttonType) {
+                case "next-page":
+                    nextPage();
+                    break;
+                case "previous-page":
+                    previousPage();
+                    break;
+                case "close":
+                    player.closeInventory();
+                    break;
+                case "back":
+                    // Close current inventory and return to the marketplace
+                    plugin.getGUIManager().openLater(player, () -> new MarketplaceGUI(plugin, player), 1L);
+                    break;
+                case "page-info":
+                    // Do nothing for page info button
+                    break;
+            }
+        } else {
+            // Handle item removal
+            MarketItem item = getMarketItemAtSlot(slot);
+            if (item != null) {
+                removeItem(item); // removeItem already sends the message
+            }
+        }
+    }
+
     /**
      * Open the GUI for the player
      */
+    @Override
     public void open() {
         try {
             // Ensure GUI is properly registered before opening
             plugin.getGUIManager().registerGUI(player.getUniqueId(), this);
 
             // Add debug logging
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("Opening My Items GUI for player " + player.getName() + " - Items: " + (myItems.size() + myBlackMarketItems.size()));
             }
 
@@ -417,6 +476,7 @@ public class MyItemsGUI {
     /**
      * Get the inventory
      */
+    @Override
     public Inventory getInventory() {
         return inventory;
     }
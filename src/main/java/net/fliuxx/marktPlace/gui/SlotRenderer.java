@@ -0,0 +1,58 @@
+package net.fliuxx.marktPlace.gui;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+
+/**
+ * Slot Renderer
+ * Collects a full frame of slot contents and only writes the slots that differ from what the inventory holds,
+ * so a refresh where one listing changed sends one slot update instead of the whole window.
+ * Slots are compared with the inventory itself, so a slot changed from outside the GUI is repainted as well.
+ */
+public class SlotRenderer {
+
+    private final Inventory inventory;
+    private final ItemStack[] frame;
+
+    public SlotRenderer(Inventory inventory) {
+        this.inventory = inventory;
+        this.frame = new ItemStack[inventory.getSize()];
+    }
+
+    /**
+     * Set a slot of the frame being built, later calls for the same slot win
+     */
+    public void set(int slot, ItemStack item) {
+        if (slot >= 0 && slot < frame.length) {
+            frame[slot] = item;
+        }
+    }
+
+    /**
+     * Write the changed slots to the inventory and start a new empty frame
+     */
+    public void commit() {
+        for (int slot = 0; slot < frame.length; slot++) {
+            ItemStack item = frame[slot];
+            if (!sameContents(item, inventory.getItem(slot))) {
+                inventory.setItem(slot, item);
+            }
+        }
+        Arrays.fill(frame, null);
+    }
+
+    /**
+     * Compare a frame slot with an inventory slot, an empty slot may be null or air
+     */
+    private static boolean sameContents(ItemStack item, ItemStack current) {
+        boolean empty = item == null || item.getType() == Material.AIR;
+        boolean currentEmpty = current == null || current.getType() == Material.AIR;
+        if (empty || currentEmpty) {
+            return empty == currentEmpty;
+        }
+        return item.equals(current);
+    }
+}
@@ -1,12 +1,16 @@
 package net.fliuxx.marktPlace.gui;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.MongoManager;
+import net.fliuxx.marktPlace.database.TransactionPage;
 import net.fliuxx.marktPlace.database.models.Transaction;
+import net.fliuxx.marktPlace.database.models.TransactionSummary;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
@@ -15,41 +19,56 @@ import org.bukkit.persistence.PersistentDataType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Transaction History GUI
  * Handles the transaction history interface
  */
-public class TransactionHistoryGUI {
+public class TransactionHistoryGUI implements MarketGui {
 
     private final MarktPlace plugin;
     private final Player player;
     private final OfflinePlayer targetPlayer;
-    private final List<Transaction> transactions;
+    private final List<TransactionSummary> transactions; // Only the current page
+    private final List<TransactionSummary> pageCursors; // Last transaction before each visited page, null for the first page
     private final int itemsPerPage;
     private int currentPage;
+    private long totalTransactions;
+    private boolean hasMore;
+    private int refreshSequence;
+    private CompletableFuture<TransactionPage> prefetchedPage;
+    private int prefetchedPageNumber = -1;
     private Inventory inventory;
 
     public TransactionHistoryGUI(MarktPlace plugin, Player player) {
         this.plugin = plugin;
         this.player = player;
         this.targetPlayer = player; // Viewing own transactions
-        this.transactions = plugin.getMongoManager().getTransactionsByPlayer(player.getUniqueId());
+        this.transactions = new ArrayList<>();
+        this.pageCursors = new ArrayList<>();
+        this.pageCursors.add(null);
         this.itemsPerPage = 45; // 9x5 grid for items
         this.currentPage = 0;
         
+        // Transactions are loaded off the main thread and painted once they arrive
         createInventory();
+        refresh();
     }
 
     public TransactionHistoryGUI(MarktPlace plugin, Player player, OfflinePlayer targetPlayer) {
         this.plugin = plugin;
         this.player = player;
         this.targetPlayer = targetPlayer;
-        this.transactions = plugin.getMongoManager().getTransactionsByPlayer(targetPlayer.getUniqueId());
+        this.transactions = new ArrayList<>();
+        this.pageCursors = new ArrayList<>();
+        this.pageCursors.add(null);
         this.itemsPerPage = 45; // 9x5 grid for items
         this.currentPage = 0;
         
+        // Transactions are loaded off the main thread and painted once they arrive
         createInventory();
+        refresh();
     }
 
     /**
@@ -72,7 +91,7 @@ public class TransactionHistoryGUI {
         int rows = guiConfig.getInt("rows", 6);
 
         // Always create a new inventory with the updated title
-        inventory = Bukkit.createInventory(null, rows * 9, title);
+        inventory = Bukkit.createInventory(this, rows * 9, title);
 
         populateInventory();
     }
@@ -153,14 +172,15 @@ public class TransactionHistoryGUI {
      * Add transaction items to inventory
      */
     private void addTransactionItems(ConfigurationSection guiConfig) {
-        int startIndex = currentPage * itemsPerPage;
-        int endIndex = Math.min(startIndex + itemsPerPage, transactions.size());
+        // Only the current page is loaded
+        int startIndex = 0;
+        int endIndex = Math.min(itemsPerPage, transactions.size());
 
         // Debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+        if (plugin.getMarketConfig().isGuiDebugging()) {
             plugin.getLogger().info("TransactionHistory addTransactionItems() - Player: " + player.getName() +
                     ", Page: " + currentPage + ", StartIndex: " + startIndex +
-                    ", EndIndex: " + endIndex + ", Total transactions: " + transactions.size());
+                    ", EndIndex: " + endIndex + ", Total transactions: " + totalTransactions);
         }
 
         int slot = 0;
@@ -172,7 +192,7 @@ public class TransactionHistoryGUI {
 
             if (slot >= 45) break; // Don't go beyond item area
 
-            Transaction transaction = transactions.get(i);
+            TransactionSummary transaction = transactions.get(i);
             ItemStack displayItem = createTransactionDisplay(transaction, guiConfig);
 
             inventory.setItem(slot, displayItem);
@@ -180,7 +200,7 @@ public class TransactionHistoryGUI {
         }
 
         // Debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+        if (plugin.getMarketConfig().isGuiDebugging()) {
             plugin.getLogger().info("TransactionHistory - Added " + (endIndex - startIndex) + " items to page " + currentPage);
         }
     }
@@ -216,7 +236,7 @@ public class TransactionHistoryGUI {
     /**
      * Create a transaction display item
      */
-    private ItemStack createTransactionDisplay(Transaction transaction, ConfigurationSection guiConfig) {
+    private ItemStack createTransactionDisplay(TransactionSummary transaction, ConfigurationSection guiConfig) {
         ConfigurationSection displayConfig = guiConfig.getConfigurationSection("transaction-display");
         if (displayConfig == null) {
             return new ItemStack(Material.PAPER);
@@ -326,13 +346,13 @@ public class TransactionHistoryGUI {
      * Check if there's a next page
      */
     private boolean hasNextPage() {
-        boolean result = (currentPage + 1) * itemsPerPage < transactions.size();
+        boolean result = hasMore;
 
         // Debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+        if (plugin.getMarketConfig().isGuiDebugging()) {
             plugin.getLogger().info("hasNextPage() - Player: " + player.getName() +
                     ", currentPage: " + currentPage + ", itemsPerPage: " + itemsPerPage +
-                    ", transactions.size(): " + transactions.size() + ", result: " + result);
+                    ", totalTransactions: " + totalTransactions + ", result: " + result);
         }
 
         return result;
@@ -345,7 +365,7 @@ public class TransactionHistoryGUI {
         boolean result = currentPage > 0;
 
         // Debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+        if (plugin.getMarketConfig().isGuiDebugging()) {
             plugin.getLogger().info("hasPreviousPage() - Player: " + player.getName() +
                     ", currentPage: " + currentPage + ", result: " + result);
         }
@@ -357,7 +377,7 @@ public class TransactionHistoryGUI {
      * Get total number of pages
      */
     private int getTotalPages() {
-        return (int) Math.ceil((double) transactions.size() / itemsPerPage);
+        return (int) Math.ceil((double) totalTransactions / itemsPerPage);
     }
 
     /**
@@ -368,17 +388,17 @@ public class TransactionHistoryGUI {
             currentPage++;
 
             // Debug logging
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("TransactionHistory nextPage() - Player: " + player.getName() +
-                        ", New page: " + currentPage + ", Total transactions: " + transactions.size());
+                        ", New page: " + currentPage + ", Total transactions: " + totalTransactions);
             }
 
-            refresh();
+            loadPage(true);
         } else {
             // Debug logging
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("TransactionHistory nextPage() - No next page available - Player: " + player.getName() +
-                        ", Current page: " + currentPage + ", Total transactions: " + transactions.size());
+                        ", Current page: " + currentPage + ", Total transactions: " + totalTransactions);
             }
         }
     }
@@ -387,7 +407,7 @@ public class TransactionHistoryGUI {
      * Go to previous page
      */
     public void previousPage() {
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+        if (plugin.getMarketConfig().isGuiDebugging()) {
             plugin.getLogger().info("previousPage() called - Player: " + player.getName() +
                     ", Current page: " + currentPage + ", Has previous: " + hasPreviousPage());
         }
@@ -402,17 +422,17 @@ public class TransactionHistoryGUI {
             }
 
             // Debug logging
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("TransactionHistory previousPage() - Player: " + player.getName() +
-                        ", Old page: " + oldPage + ", New page: " + currentPage + ", Total transactions: " + transactions.size());
+                        ", Old page: " + oldPage + ", New page: " + currentPage + ", Total transactions: " + totalTransactions);
             }
 
-            refresh();
+            loadPage(true);
         } else {
             // Debug logging
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("TransactionHistory previousPage() - No previous page available - Player: " + player.getName() +
-                        ", Current page: " + currentPage + ", Total transactions: " + transactions.size());
+                        ", Current page: " + currentPage + ", Total transactions: " + totalTransactions);
             }
         }
     }
@@ -420,62 +440,162 @@ public class TransactionHistoryGUI {
     /**
      * Refresh the GUI
      */
+    @Override
     public void refresh() {
+        loadPage(false);
+    }
+
+    /**
+     * Load the current page and the transaction count off the main thread.
+     * Page navigation reuses the prefetched page and the known count.
+     */
+    private void loadPage(boolean navigating) {
         // Debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
-            plugin.getLogger().info("TransactionHistory refresh() - Player: " + player.getName() +
-                    ", Current page: " + currentPage + ", Old transactions size: " + transactions.size());
+        if (plugin.getMarketConfig().isGuiDebugging()) {
+            plugin.getLogger().info("TransactionHistory loadPage() - Player: " + player.getName() +
+                    ", Current page: " + currentPage + ", Navigating: " + navigating);
         }
 
-        // Get fresh transaction data
-        List<Transaction> freshTransactions = plugin.getMongoManager().getTransactionsByPlayer(targetPlayer.getUniqueId());
+        int sequence = ++refreshSequence;
+        int page = currentPage;
+        MongoManager mongoManager = plugin.getMongoManager();
 
-        // Update transactions list
-        transactions.clear();
-        transactions.addAll(freshTransactions);
-
-        // Debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
-            plugin.getLogger().info("TransactionHistory refresh() - Player: " + player.getName() +
-                    ", New transactions size: " + transactions.size());
+        CompletableFuture<TransactionPage> pageFuture;
+        if (navigating && prefetchedPage != null && prefetchedPageNumber == page) {
+            pageFuture = prefetchedPage;
+        } else {
+            pageFuture = mongoManager.getTransactionPageAsync(targetPlayer.getUniqueId(), pageCursors.get(page), itemsPerPage);
         }
+        prefetchedPage = null;
 
-        // Adjust current page if necessary (only if we have transactions)
-        if (!transactions.isEmpty()) {
-            int totalPages = getTotalPages();
-            if (currentPage >= totalPages) {
-                currentPage = Math.max(0, totalPages - 1);
+        CompletableFuture<Long> countFuture = navigating ?
+            CompletableFuture.completedFuture(totalTransactions) :
+            mongoManager.countTransactionsByPlayerAsync(targetPlayer.getUniqueId());
+
+        mongoManager.thenSync(CompletableFuture.allOf(pageFuture, countFuture), ignored -> {
+            // Ignore results overtaken by a newer refresh
+            if (sequence != refreshSequence) {
+                return;
             }
-        } else {
+            applyPage(page, pageFuture.join(), countFuture.join());
+        }, error -> plugin.getLogger().warning("Error loading transactions for " + player.getName() + ": " + error.getMessage()));
+    }
+
+    /**
+     * Show a freshly loaded page, re-opening the inventory if the player is looking at it
+     */
+    private void applyPage(int page, TransactionPage transactionPage, long total) {
+        // The history changed under us, start over from the newest transactions
+        if (transactionPage.getTransactions().isEmpty() && page > 0) {
             currentPage = 0;
+            pageCursors.subList(1, pageCursors.size()).clear();
+            refresh();
+            return;
+        }
+
+        boolean viewing = player.isOnline()
+            && (player.getOpenInventory().getTopInventory() == inventory || plugin.getGUIManager().getGUI(player.getUniqueId()) == this);
+
+        // Update transactions list
+        transactions.clear();
+        transactions.addAll(transactionPage.getTransactions());
+        totalTransactions = total;
+        hasMore = transactionPage.hasMore();
+
+        // Remember where the next page starts
+        if (hasMore) {
+            if (pageCursors.size() > page + 1) {
+                pageCursors.set(page + 1, transactionPage.getLast());
+            } else {
+                pageCursors.add(transactionPage.getLast());
+            }
         }
 
         // Debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
-            plugin.getLogger().info("TransactionHistory refresh() - Player: " + player.getName() +
-                    ", Final page: " + currentPage + ", Total pages: " + getTotalPages());
+        if (plugin.getMarketConfig().isGuiDebugging()) {
+            plugin.getLogger().info("TransactionHistory applyPage() - Player: " + player.getName() +
+                    ", Page: " + page + ", Page size: " + transactions.size() + ", Total pages: " + getTotalPages());
         }
 
         // Recreate inventory with updated title
         createInventory();
 
         // Re-open the inventory for the player to see the changes
-        if (player.isOnline()) {
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                if (player.isOnline() && plugin.getGUIManager().getGUI(player.getUniqueId()) instanceof TransactionHistoryGUI) {
-                    player.openInventory(inventory);
+        if (viewing) {
+            player.openInventory(inventory);
+            plugin.getGUIManager().registerGUI(player.getUniqueId(), this);
+
+            if (plugin.getMarketConfig().isGuiDebugging()) {
+                plugin.getLogger().info("TransactionHistory - Reopened inventory for player: " + player.getName());
+            }
+        }
 
-                    if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
-                        plugin.getLogger().info("TransactionHistory - Reopened inventory for player: " + player.getName());
+        // Fetch the next page in the background so paging forward is instant
+        if (hasMore) {
+            prefetchedPageNumber = page + 1;
+            prefetchedPage = plugin.getMongoManager().getTransactionPageAsync(targetPlayer.getUniqueId(), pageCursors.get(page + 1), itemsPerPage);
+        }
+    }
+
+    /**
+     * Get the kind of GUI
+     */
+    @Override
+    public GuiType getType() {
+        return GuiType.TRANSACTION_HISTORY;
+    }
+
+    /**
+     * Handle a click, only the navigation buttons do anything
+     */
+    @Override
+    public void handleClick(InventoryClickEvent event) {
+        int slot = event.getSlot();
+
+        // Clear cursor to prevent any item duplication attempts
+        if (event.getCursor() != null && !event.getCursor().getType().isAir()) {
+            event.setCursor(null);
+        }
+        
+        // Update inventory to ensure consistency
+        player.updateInventory();
+
+        // Only allow navigation button clicks
+        String buttonType = getButtonType(slot);
+        if (buttonType != null) {
+            switch (buttonType) {
+                case "next-page":
+                    if (plugin.getMarketConfig().isGuiDebugging()) {
+                        plugin.getLogger().info("Transaction history next page clicked by " + player.getName());
                     }
-                }
-            });
+                    nextPage();
+                    break;
+                case "previous-page":
+                    if (plugin.getMarketConfig().isGuiDebugging()) {
+                        plugin.getLogger().info("Transaction history previous page clicked by " + player.getName());
+                    }
+                    previousPage();
+                    break;
+                case "close":
+                    player.closeInventory();
+                    break;
+                case "page-info":
+                    // Do nothing for page info button
+                    break;
+                default:
+                    // Unknown button type - ignore
+                    break;
+            }
         }
+        
+        // All other clicks are completely blocked for security
+        // Transaction history is purely informational and read-only
     }
 
     /**
      * Open the GUI for the player
      */
+    @Override
     public void open() {
         player.openInventory(inventory);
     }
@@ -490,6 +610,7 @@ public class TransactionHistoryGUI {
     /**
      * Get the inventory
      */
+    @Override
     public Inventory getInventory() {
         return inventory;
     }
@@ -500,7 +621,7 @@ public class TransactionHistoryGUI {
     public String getButtonType(int slot) {
         ItemStack item = inventory.getItem(slot);
         if (item == null || !item.hasItemMeta()) {
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("getButtonType() - No item or meta at slot " + slot);
             }
             return null;
@@ -508,7 +629,7 @@ public class TransactionHistoryGUI {
 
         ItemMeta meta = item.getItemMeta();
         if (meta == null) {
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("getButtonType() - No meta at slot " + slot);
             }
             return null;
@@ -520,33 +641,33 @@ public class TransactionHistoryGUI {
             ConfigurationSection guiConfig = plugin.getConfigManager().getGuiConfig().getConfigurationSection("transactions");
             if (guiConfig != null) {
                 if (slot == guiConfig.getInt("items.previous-page.slot", 45)) {
-                    if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+                    if (plugin.getMarketConfig().isGuiDebugging()) {
                         plugin.getLogger().info("getButtonType() - Fallback detected previous-page at slot " + slot);
                     }
                     return "previous-page";
                 }
                 if (slot == guiConfig.getInt("items.next-page.slot", 53)) {
-                    if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+                    if (plugin.getMarketConfig().isGuiDebugging()) {
                         plugin.getLogger().info("getButtonType() - Fallback detected next-page at slot " + slot);
                     }
                     return "next-page";
                 }
                 if (slot == guiConfig.getInt("items.close.slot", 49)) {
-                    if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+                    if (plugin.getMarketConfig().isGuiDebugging()) {
                         plugin.getLogger().info("getButtonType() - Fallback detected close at slot " + slot);
                     }
                     return "close";
                 }
             }
 
-            if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+            if (plugin.getMarketConfig().isGuiDebugging()) {
                 plugin.getLogger().info("getButtonType() - No NBT data found at slot " + slot);
             }
             return null;
         }
 
         String buttonType = meta.getPersistentDataContainer().get(key, PersistentDataType.STRING);
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
+        if (plugin.getMarketConfig().isGuiDebugging()) {
             plugin.getLogger().info("getButtonType() - Found button type '" + buttonType + "' at slot " + slot);
         }
 
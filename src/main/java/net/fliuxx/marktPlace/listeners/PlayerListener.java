@@ -0,0 +1,32 @@
+package net.fliuxx.marktPlace.listeners;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Player Listener
+ * Loads and evicts the cached data of players as they join and leave, and settles their payouts and mailbox on join
+ */
+public class PlayerListener implements Listener {
+
+    private final MarktPlace plugin;
+
+    public PlayerListener(MarktPlace plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getPlayerDataCache().load(event.getPlayer());
+        plugin.getMailboxManager().deliver(event.getPlayer());
+        plugin.getPayoutManager().settle(event.getPlayer());
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getPlayerDataCache().unload(event.getPlayer().getUniqueId());
+    }
+}
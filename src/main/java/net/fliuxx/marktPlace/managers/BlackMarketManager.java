@@ -1,16 +1,20 @@
 package net.fliuxx.marktPlace.managers;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ListingStore;
+import net.fliuxx.marktPlace.database.MongoManager;
 import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.database.models.RotationState;
 import net.fliuxx.marktPlace.database.models.TimerState;
 import org.bukkit.Bukkit;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Black Market Manager
@@ -23,8 +27,16 @@ public class BlackMarketManager {
     private long lastRefreshTime;
     private long nextRefreshTime;
     private TimerState timerState;
-    private final Object lock = new Object();
+    private final AtomicBoolean rotating = new AtomicBoolean();
+    private final RotationState rotationState;
+    private long lastProgressLog;
+    private int unmatchedListings; // Moved listings the listing store did not know, only touched by rotation steps
+    private boolean selectionLocked; // The listings left to move are locked in the listing store, only touched by rotation steps
     private static final String TIMER_ID = "blackmarket_timer";
+    private static final String ROTATION_ID = "blackmarket_rotation";
+    private static final long PROGRESS_INTERVAL = 2000; // Milliseconds between refresh progress logs
+    private static final int MAX_STEP_ATTEMPTS = 5;
+    private static final long STEP_RETRY_DELAY = 20; // Ticks before retrying a failed rotation step, doubled per attempt
 
     public BlackMarketManager(MarktPlace plugin) {
         this.plugin = plugin;
@@ -33,6 +45,7 @@ public class BlackMarketManager {
         this.timerState = plugin.getMongoManager().loadTimerState(TIMER_ID);
         this.lastRefreshTime = timerState.getLastRefreshTime();
         this.nextRefreshTime = timerState.getNextRefreshTime();
+        this.rotationState = plugin.getMongoManager().loadRotationState(ROTATION_ID);
 
         // Removed excessive logging during initialization
     }
@@ -44,12 +57,12 @@ public class BlackMarketManager {
         // Stop any existing tasks first
         stopRefreshTask();
 
-        if (!plugin.getConfig().getBoolean("blackmarket.auto-refresh", true)) {
+        if (!plugin.getMarketConfig().isBlackMarketAutoRefresh()) {
             plugin.getLogger().info("Black market auto-refresh is disabled");
             return;
         }
 
-        long refreshIntervalSeconds = plugin.getConfig().getLong("blackmarket.refresh-interval", 86400);
+        long refreshIntervalSeconds = plugin.getMarketConfig().getBlackMarketRefreshInterval();
         long refreshIntervalMs = refreshIntervalSeconds * 1000L;
         long currentTime = System.currentTimeMillis();
 
@@ -88,7 +101,7 @@ public class BlackMarketManager {
         refreshTask = new BukkitRunnable() {
             @Override
             public void run() {
-                if (!plugin.getConfig().getBoolean("blackmarket.auto-refresh", true)) {
+                if (!plugin.getMarketConfig().isBlackMarketAutoRefresh()) {
                     plugin.getLogger().info("Auto-refresh disabled, stopping timer");
                     this.cancel();
                     return;
@@ -97,17 +110,17 @@ public class BlackMarketManager {
                 long actualRefreshTime = System.currentTimeMillis();
                 plugin.getLogger().info("Black market auto-refresh triggered");
 
-                refreshBlackMarket();
-
                 // Update next refresh time and save to database
                 nextRefreshTime = actualRefreshTime + refreshIntervalMs;
                 saveTimerState();
 
-                // Broadcast refresh message if enabled
-                if (plugin.getConfig().getBoolean("blackmarket.broadcast-refresh", true)) {
-                    String message = plugin.getConfigManager().getMessage("blackmarket.auto-refresh");
-                    Bukkit.broadcastMessage(message);
-                }
+                refreshBlackMarket().thenAccept(selected -> {
+                    // Broadcast refresh message if enabled
+                    if (selected >= 0 && plugin.getMarketConfig().isBlackMarketBroadcastRefresh()) {
+                        String message = plugin.getConfigManager().getMessage("blackmarket.auto-refresh");
+                        Bukkit.broadcastMessage(message);
+                    }
+                });
             }
         }.runTaskTimer(plugin, initialDelay, intervalTicks);
 
@@ -149,90 +162,256 @@ public class BlackMarketManager {
     }
 
     /**
-     * Refresh the black market
+     * Refresh the black market off the main thread, resuming an interrupted rotation instead of starting a new one.
+     * Completes on the main thread with the number of black market listings, or -1 if a refresh was already running.
      */
-    public void refreshBlackMarket() {
-        synchronized (lock) {
-            try {
-                // Move unsold black market items back to regular market
-                plugin.getMongoManager().moveBlackMarketItemsToMarket();
+    public CompletableFuture<Long> refreshBlackMarket() {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        if (!rotating.compareAndSet(false, true)) {
+            plugin.getLogger().info("Black market refresh already running, skipped");
+            result.complete(-1L);
+            return result;
+        }
 
-                // Clear existing black market items
-                plugin.getMongoManager().clearBlackMarket();
+        if (rotationState.isIdle()) {
+            rotationState.begin(plugin.getMarketConfig().getBlackMarketDiscountPercentage());
+        } else {
+            plugin.getLogger().info("Resuming black market rotation " + rotationState.getEpoch() + " from phase " + rotationState.getPhase());
+        }
 
-                // Get all market items
-                List<MarketItem> marketItems = plugin.getMongoManager().getAllMarketItems();
+        int batchSize = plugin.getMarketConfig().getRotationBatchSize();
+        long batchDelay = plugin.getMarketConfig().getRotationBatchDelay();
+
+        unmatchedListings = 0;
+        selectionLocked = false;
+
+        CompletableFuture<Long> rotation = new CompletableFuture<>();
+        advance(batchSize, batchDelay, 0, rotation);
+
+        MongoManager mongoManager = plugin.getMongoManager();
+        mongoManager.thenSync(rotation, selected -> {
+            // Update last refresh time
+            lastRefreshTime = System.currentTimeMillis();
+            rotating.set(false);
+            refreshGUIs();
+            result.complete(selected);
+        }, error -> {
+            plugin.getLogger().severe("Error refreshing black market, rotation " + rotationState.getEpoch() +
+                " resumes from phase " + rotationState.getPhase() + " on the next refresh: " + error.getMessage());
+            // The listings in memory may be a phase behind MongoDB, listings found in both collections load into the black market only.
+            // Selected listings stay locked until the rotation resumes and moves them.
+            reloadListings(0);
+            refreshGUIs();
+            result.completeExceptionally(error);
+        });
+
+        return result;
+    }
 
-                if (marketItems.isEmpty()) {
-                    plugin.getLogger().info("No items available for black market refresh");
+    /**
+     * Load the listings again after a failed rotation, retried with backoff until MongoDB answers.
+     * No new rotation starts until the load succeeded.
+     */
+    private void reloadListings(int failures) {
+        plugin.getMongoManager().thenSync(plugin.getListingStore().reloadAsync(), ignored -> {
+            rotating.set(false);
+            refreshGUIs();
+        }, error -> {
+            plugin.getLogger().severe("Error reloading listings after a failed black market rotation, retrying: " + error.getMessage());
+            Bukkit.getScheduler().runTaskLater(plugin, () -> reloadListings(failures + 1), STEP_RETRY_DELAY << Math.min(failures, 6));
+        });
+    }
+
+    /**
+     * Resume a rotation that was interrupted by a crash or shutdown, called on startup
+     */
+    public void resumeRotation() {
+        if (!rotationState.isIdle()) {
+            refreshBlackMarket();
+        }
+    }
+
+    /**
+     * Run the rotation on the database executor, with a batch delay the moving phase runs one batch per step.
+     * A failed step is repeated with backoff, every phase can be repeated.
+     */
+    private void advance(int batchSize, long batchDelay, int failures, CompletableFuture<Long> rotation) {
+        plugin.getMongoManager().getExecutor().supply(() -> rotateStep(batchSize, batchDelay == 0)).whenComplete((finished, error) -> {
+            if (error != null) {
+                if (failures + 1 >= MAX_STEP_ATTEMPTS) {
+                    rotation.completeExceptionally(error);
                     return;
                 }
+                plugin.getLogger().warning("Black market rotation " + rotationState.getEpoch() + " failed in phase " +
+                    rotationState.getPhase() + ", retrying: " + error.getMessage());
+                Bukkit.getScheduler().runTaskLater(plugin, () -> advance(batchSize, batchDelay, failures + 1, rotation),
+                    STEP_RETRY_DELAY << failures);
+            } else if (finished) {
+                rotation.complete(rotationState.getSelected());
+            } else {
+                // Spread the remaining batches over later ticks
+                Bukkit.getScheduler().runTaskLater(plugin, () -> advance(batchSize, batchDelay, 0, rotation), batchDelay);
+            }
+        });
+    }
 
-                // Calculate the number of items to select: market items / 2, rounded up
-                int itemsToSelect = (int) Math.ceil(marketItems.size() / 2.0);
+    /**
+     * Run rotation phases until the rotation is done or a batch step ends, returns true when done.
+     * Every phase can be repeated after a crash, the state is saved before the next phase starts.
+     * The listing store follows each phase once it is written, so it never needs a full load.
+     * Each phase only locks the listings it moves, and waits for purchases of them that are already being written.
+     */
+    private boolean rotateStep(int batchSize, boolean allBatches) {
+        // Let an expiry sweep finish its batch before listings are sampled
+        plugin.getListingStore().lockBulk();
+        try {
+            boolean finished = runPhases(batchSize, allBatches);
+            if (finished && unmatchedListings > 0) {
+                // The store missed listings MongoDB moved, only a load can pick them up
+                plugin.getLogger().warning("Black market rotation " + rotationState.getEpoch() + " moved " +
+                    unmatchedListings + " listings that were not loaded, reloading listings");
+                plugin.getListingStore().load();
+            }
+            return finished;
+        } finally {
+            plugin.getListingStore().unlockBulk();
+        }
+    }
 
-                // Shuffle the list for random selection
-                Collections.shuffle(marketItems);
+    private boolean runPhases(int batchSize, boolean allBatches) {
+        MongoManager mongoManager = plugin.getMongoManager();
+        ListingStore listingStore = plugin.getListingStore();
+        RotationState state = rotationState;
+        long epoch = state.getEpoch();
 
-                // Select the first itemsToSelect items
-                List<MarketItem> selectedItems = marketItems.subList(0, Math.min(itemsToSelect, marketItems.size()));
+        if (state.getPhase() == RotationState.Phase.RETURNING) {
+            // Only the black market is moved, the market stays open
+            listingStore.lockBlackMarket();
+            try {
+                // Record the new epoch before anything moves
+                mongoManager.saveRotationState(state);
 
-                // Apply black market discount and move items
-                double discountPercentage = plugin.getConfig().getDouble("blackmarket.discount-percentage", 30.0);
+                // Move unsold black market items back to regular market
+                long returned = mongoManager.moveBlackMarketItemsToMarket(epoch);
+                listingStore.returnBlackMarketItems();
+                plugin.getLogger().info("Black market rotation " + epoch + ": returned " + returned + " listings to the market");
+
+                state.setPhase(RotationState.Phase.SELECTING);
+                mongoManager.saveRotationState(state);
+            } finally {
+                listingStore.unlockBlackMarket();
+            }
+        }
 
-                for (MarketItem item : selectedItems) {
-                    // Calculate discounted price
-                    double discountedPrice = item.getPrice() * (1 - discountPercentage / 100.0);
+        if (state.getPhase() == RotationState.Phase.SELECTING) {
+            // Any market listing may be sampled, so both markets are locked for this one step
+            listingStore.lockMarket();
+            listingStore.lockBlackMarket();
+            try {
+                // A selection cut short by a crash is dropped and made again, the originals are still in the market.
+                // The black market holds nothing else after returning, so the store puts back whatever it loaded from it.
+                listingStore.unlockListings();
+                mongoManager.clearRotationSelection(epoch);
+                listingStore.returnBlackMarketItems();
+
+                long marketSize = mongoManager.countMarketItems();
+                if (marketSize == 0) {
+                    plugin.getLogger().info("No items available for black market refresh");
+                }
 
-                    // Store original price for seller calculation
-                    item.setOriginalPrice(item.getPrice());
-                    item.setPrice(discountedPrice);
+                // Calculate the number of items to select: market items / 2, rounded up
+                int itemsToSelect = (int) Math.ceil(marketSize / 2.0);
+                long selected = mongoManager.sampleMarketItemsIntoBlackMarket(itemsToSelect, state.getDiscountPercentage(), epoch);
+                plugin.getLogger().info("Black market rotation " + epoch + ": selected " + selected + " of " + marketSize + " listings");
+
+                // From here on only the selected listings are locked, each until its batch is moved
+                listingStore.lockListings(mongoManager.getRotationSelection(epoch, null));
+                selectionLocked = true;
+
+                state.setSelected(selected);
+                state.setMoved(0);
+                state.setCursor(null);
+                state.setPhase(RotationState.Phase.MOVING);
+                mongoManager.saveRotationState(state);
+            } finally {
+                listingStore.unlockBlackMarket();
+                listingStore.unlockMarket();
+            }
+        }
 
-                    // Move to black market
-                    plugin.getMongoManager().moveItemToBlackMarket(item);
-                }
+        if (state.getPhase() == RotationState.Phase.MOVING) {
+            if (!selectionLocked) {
+                // Resumed rotation, lock the listings it still has to move
+                listingStore.lockListings(mongoManager.getRotationSelection(epoch, state.getCursor()));
+                selectionLocked = true;
+            }
 
-                // Update last refresh time
-                lastRefreshTime = System.currentTimeMillis();
+            do {
+                List<String> batch = mongoManager.moveSelectedListingsBatch(epoch, state.getCursor(), batchSize);
+                if (batch.isEmpty()) {
+                    // Every selected listing is moved, nothing stays locked
+                    listingStore.unlockListings();
+                    selectionLocked = false;
+                    state.setPhase(RotationState.Phase.IDLE);
+                    mongoManager.saveRotationState(state);
+
+                    plugin.getLogger().info("Black market refreshed with " + state.getSelected() + " items in " +
+                        (System.currentTimeMillis() - state.getStartedAt()) + "ms");
+                    return true;
+                }
 
-                plugin.getLogger().info("Black market refreshed with " + selectedItems.size() + " items");
-                
-                // Refresh all GUIs after black market refresh
-                plugin.getGUIManager().refreshBlackMarketGUIs();
+                state.setCursor(batch.get(batch.size() - 1));
+                state.setMoved(state.getMoved() + batch.size());
+                mongoManager.saveRotationState(state);
+                unmatchedListings += listingStore.moveToBlackMarket(batch, state.getDiscountPercentage());
 
-            } catch (Exception e) {
-                plugin.getLogger().severe("Error refreshing black market: " + e.getMessage());
-                e.printStackTrace();
-            }
+                long now = System.currentTimeMillis();
+                if (now - lastProgressLog >= PROGRESS_INTERVAL) {
+                    lastProgressLog = now;
+                    plugin.getLogger().info("Black market rotation " + epoch + ": moved " + state.getMoved() + "/" + state.getSelected() + " listings");
+                }
+            } while (allBatches);
+            return false;
         }
+
+        return true;
+    }
+
+    /**
+     * Refresh open GUIs after items moved between collections
+     */
+    private void refreshGUIs() {
+        plugin.getGUIManager().refreshMarketplaceGUIs();
+        plugin.getGUIManager().refreshBlackMarketGUIs();
+        plugin.getGUIManager().refreshMyItemsGUIs();
     }
 
     /**
      * Get all black market items
      */
     public List<MarketItem> getBlackMarketItems() {
-        return plugin.getMongoManager().getBlackMarketItems();
+        return plugin.getListingStore().getBlackMarketItems();
     }
 
     /**
      * Get black market item by ID
      */
     public MarketItem getBlackMarketItem(String itemId) {
-        return plugin.getMongoManager().getBlackMarketItem(itemId);
+        return plugin.getListingStore().getBlackMarketItem(itemId);
     }
 
     /**
      * Remove item from black market
      */
     public void removeBlackMarketItem(String itemId) {
-        plugin.getMongoManager().removeBlackMarketItem(itemId);
+        plugin.getListingStore().removeBlackMarketItem(itemId);
     }
 
     /**
      * Calculate seller profit for black market sale
      */
     public double calculateSellerProfit(double originalPrice) {
-        double multiplier = plugin.getConfig().getDouble("blackmarket.seller-multiplier", 2.0);
+        double multiplier = plugin.getMarketConfig().getBlackMarketSellerMultiplier();
         return originalPrice * multiplier;
     }
 
@@ -242,7 +421,7 @@ public class BlackMarketManager {
     public long getTimeUntilNextRefresh() {
         if (nextRefreshTime == 0) {
             // If no next refresh time set, calculate based on last refresh
-            long refreshInterval = plugin.getConfig().getLong("blackmarket.refresh-interval", 86400) * 1000L;
+            long refreshInterval = plugin.getMarketConfig().getBlackMarketRefreshInterval() * 1000L;
             long timeSinceLastRefresh = System.currentTimeMillis() - lastRefreshTime;
             return Math.max(0, refreshInterval - timeSinceLastRefresh);
         }
@@ -256,7 +435,7 @@ public class BlackMarketManager {
      */
     public String getFormattedTimeUntilNextRefresh() {
         // If auto-refresh is disabled, show disabled status
-        if (!plugin.getConfig().getBoolean("blackmarket.auto-refresh", true)) {
+        if (!plugin.getMarketConfig().isBlackMarketAutoRefresh()) {
             return "Disabled";
         }
 
@@ -283,21 +462,21 @@ public class BlackMarketManager {
      * Check if it's time for automatic refresh
      */
     public boolean isTimeForRefresh() {
-        long refreshInterval = plugin.getConfig().getLong("blackmarket.refresh-interval", 86400) * 1000L;
+        long refreshInterval = plugin.getMarketConfig().getBlackMarketRefreshInterval() * 1000L;
         return System.currentTimeMillis() - lastRefreshTime >= refreshInterval;
     }
 
     /**
-     * Force refresh black market and restart automatic timer
+     * Force refresh black market and restart automatic timer, completes like refreshBlackMarket
      */
-    public void forceRefresh() {
+    public CompletableFuture<Long> forceRefresh() {
         plugin.getLogger().info("Manual black market refresh triggered");
 
         // Perform the refresh
-        refreshBlackMarket();
+        CompletableFuture<Long> refresh = refreshBlackMarket();
 
         // Reset the automatic timer to start from now
-        long refreshIntervalSeconds = plugin.getConfig().getLong("blackmarket.refresh-interval", 86400);
+        long refreshIntervalSeconds = plugin.getMarketConfig().getBlackMarketRefreshInterval();
         long refreshIntervalMs = refreshIntervalSeconds * 1000L;
         long currentTime = System.currentTimeMillis();
 
@@ -309,9 +488,11 @@ public class BlackMarketManager {
         saveTimerState();
 
         // Restart the automatic refresh task with new timing
-        if (plugin.getConfig().getBoolean("blackmarket.auto-refresh", true)) {
+        if (plugin.getMarketConfig().isBlackMarketAutoRefresh()) {
             startRefreshTask();
         }
+
+        return refresh;
     }
 
     /**
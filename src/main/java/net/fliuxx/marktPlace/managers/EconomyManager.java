@@ -3,26 +3,47 @@ package net.fliuxx.marktPlace.managers;
 import net.fliuxx.marktPlace.MarktPlace;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Economy Manager
- * Handles all economy-related operations using Vault
+ * Handles all economy-related operations using Vault.
+ * Async variants run on a dedicated economy thread when enabled, so DB-backed providers keep their I/O off the main thread.
+ * Otherwise deposits run on the main thread on the next tick, so deposits to one account made in the same tick are merged.
  */
 public class EconomyManager {
 
     private final MarktPlace plugin;
     private Economy economy;
     private final DecimalFormat decimalFormat;
+    private final ExecutorService asyncExecutor; // Null when the provider is only called from the main thread
+    private final Executor executor; // The economy thread, or the next tick on the main thread
+    private final Map<UUID, DepositBatch> pendingDeposits = new ConcurrentHashMap<>();
+    private final Map<String, OperationStats> metrics = new ConcurrentHashMap<>();
 
     public EconomyManager(MarktPlace plugin) {
         this.plugin = plugin;
         
         // Initialize decimal format based on config
-        int decimalPlaces = plugin.getConfig().getInt("economy.decimal-places", 2);
+        int decimalPlaces = plugin.getMarketConfig().getDecimalPlaces();
         StringBuilder pattern = new StringBuilder("#,##0");
         if (decimalPlaces > 0) {
             pattern.append(".");
@@ -31,6 +52,42 @@ public class EconomyManager {
             }
         }
         this.decimalFormat = new DecimalFormat(pattern.toString());
+
+        // Only thread-safe providers may be called off the main thread
+        if (plugin.getConfig().getBoolean("economy.async.enabled", false)) {
+            this.asyncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MarketPlace-Economy");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = asyncExecutor;
+        } else {
+            this.asyncExecutor = null;
+            this.executor = task -> Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /**
+     * Finish queued economy operations, used on plugin shutdown
+     */
+    public void shutdown() {
+        if (asyncExecutor == null) {
+            // Tasks of the next tick are cancelled with the plugin, make the collected deposits now
+            for (UUID playerId : new ArrayList<>(pendingDeposits.keySet())) {
+                runDeposit(playerId);
+            }
+            return;
+        }
+
+        asyncExecutor.shutdown();
+        try {
+            if (!asyncExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Economy operations did not finish in time, " + asyncExecutor.shutdownNow().size() + " were dropped");
+            }
+        } catch (InterruptedException e) {
+            asyncExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -61,7 +118,7 @@ public class EconomyManager {
             plugin.getLogger().warning("Economy not initialized! Please check Vault setup.");
             return 0.0;
         }
-        return economy.getBalance(player);
+        return timed("balance", () -> economy.getBalance(player));
     }
 
     /**
@@ -71,6 +128,13 @@ public class EconomyManager {
         return getBalance(player) >= amount;
     }
 
+    /**
+     * Check if a balance lookup is needed before a withdrawal, providers that refuse to overdraw make it redundant
+     */
+    public boolean shouldCheckBalance() {
+        return !plugin.getMarketConfig().isAtomicWithdraw();
+    }
+
     /**
      * Withdraw money from player
      */
@@ -84,7 +148,7 @@ public class EconomyManager {
             return false;
         }
         
-        EconomyResponse response = economy.withdrawPlayer(player, amount);
+        EconomyResponse response = timed("withdraw", () -> economy.withdrawPlayer(player, amount));
         if (!response.transactionSuccess()) {
             plugin.getLogger().warning("Failed to withdraw " + formatMoney(amount) + " from " + player.getName() + ": " + response.errorMessage);
         }
@@ -94,7 +158,7 @@ public class EconomyManager {
     /**
      * Deposit money to player
      */
-    public boolean deposit(Player player, double amount) {
+    public boolean deposit(OfflinePlayer player, double amount) {
         if (economy == null) {
             plugin.getLogger().warning("Economy not initialized! Cannot deposit money.");
             return false;
@@ -104,18 +168,108 @@ public class EconomyManager {
             return false;
         }
         
-        EconomyResponse response = economy.depositPlayer(player, amount);
+        EconomyResponse response = timed("deposit", () -> economy.depositPlayer(player, amount));
         if (!response.transactionSuccess()) {
             plugin.getLogger().warning("Failed to deposit " + formatMoney(amount) + " to " + player.getName() + ": " + response.errorMessage);
         }
         return response.transactionSuccess();
     }
 
+    /**
+     * Withdraw money from player on the economy thread, without it right away on the main thread
+     */
+    public CompletableFuture<Boolean> withdrawAsync(Player player, double amount) {
+        if (asyncExecutor == null && Bukkit.isPrimaryThread()) {
+            // Withdrawals are not merged, so there is nothing to wait a tick for
+            try {
+                return CompletableFuture.completedFuture(withdraw(player, amount));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> withdraw(player, amount), executor);
+    }
+
+    /**
+     * Deposit money to player on the economy thread, or on the main thread on the next tick.
+     * Deposits to the same account that are still queued are merged, so a burst of them reaches the provider as one call.
+     */
+    public CompletableFuture<Boolean> depositAsync(OfflinePlayer player, double amount) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        boolean[] created = new boolean[1];
+
+        pendingDeposits.compute(player.getUniqueId(), (playerId, batch) -> {
+            if (batch == null) {
+                batch = new DepositBatch(player);
+                created[0] = true;
+            }
+            batch.amount += amount;
+            batch.waiters.add(result);
+            return batch;
+        });
+
+        if (created[0]) {
+            try {
+                executor.execute(() -> runDeposit(player.getUniqueId()));
+            } catch (RuntimeException e) {
+                // Rejected after shutdown, fail every waiter of the batch
+                DepositBatch batch = pendingDeposits.remove(player.getUniqueId());
+                if (batch != null) {
+                    batch.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+                }
+            }
+        }
+        return result;
+    }
+
+    private void runDeposit(UUID playerId) {
+        DepositBatch batch = pendingDeposits.remove(playerId);
+        if (batch == null) {
+            return;
+        }
+
+        boolean success;
+        try {
+            success = deposit(batch.player, batch.amount);
+        } catch (RuntimeException e) {
+            batch.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+            return;
+        }
+        batch.waiters.forEach(waiter -> waiter.complete(success));
+    }
+
+    /**
+     * Call the provider and record how long it took
+     */
+    private <T> T timed(String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.computeIfAbsent(economy.getName() + " " + operation, key -> new OperationStats()).record(elapsed);
+        }
+    }
+
+    /**
+     * Get call latencies by provider and operation, as "provider operation"
+     */
+    public Map<String, OperationStats> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Check if economy operations run off the main thread
+     */
+    public boolean isAsync() {
+        return asyncExecutor != null;
+    }
+
     /**
      * Format money amount
      */
     public String formatMoney(double amount) {
-        String symbol = plugin.getConfig().getString("economy.currency-symbol", "$");
+        String symbol = plugin.getMarketConfig().getCurrencySymbol();
         return symbol + decimalFormat.format(amount);
     }
 
@@ -125,7 +279,7 @@ public class EconomyManager {
     public double parseMoney(String input) {
         try {
             // Remove currency symbol if present
-            String symbol = plugin.getConfig().getString("economy.currency-symbol", "$");
+            String symbol = plugin.getMarketConfig().getCurrencySymbol();
             if (input.startsWith(symbol)) {
                 input = input.substring(symbol.length());
             }
@@ -185,7 +339,7 @@ public class EconomyManager {
             return false;
         }
         
-        if (!hasEnough(from, amount)) {
+        if (shouldCheckBalance() && !hasEnough(from, amount)) {
             return false;
         }
         
@@ -216,8 +370,7 @@ public class EconomyManager {
      * Round money to configured decimal places
      */
     public double roundMoney(double amount) {
-        int decimalPlaces = plugin.getConfig().getInt("economy.decimal-places", 2);
-        double factor = Math.pow(10, decimalPlaces);
+        double factor = plugin.getMarketConfig().getRoundingFactor();
         return Math.round(amount * factor) / factor;
     }
 
@@ -270,14 +423,14 @@ public class EconomyManager {
      * Get minimum allowed transaction amount
      */
     public double getMinimumAmount() {
-        return plugin.getConfig().getDouble("economy.minimum-amount", 0.01);
+        return plugin.getMarketConfig().getMinimumAmount();
     }
 
     /**
      * Get maximum allowed transaction amount
      */
     public double getMaximumAmount() {
-        return plugin.getConfig().getDouble("economy.maximum-amount", 1000000.0);
+        return plugin.getMarketConfig().getMaximumAmount();
     }
 
     /**
@@ -293,4 +446,47 @@ public class EconomyManager {
     public boolean isValidTransaction(double amount) {
         return isValidAmount(amount) && isAmountInRange(amount);
     }
+
+    /**
+     * Deposits to one account waiting for the economy thread
+     */
+    private static final class DepositBatch {
+
+        private final OfflinePlayer player;
+        private double amount;
+        private final List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+
+        DepositBatch(OfflinePlayer player) {
+            this.player = player;
+        }
+    }
+
+    /**
+     * Call count and latency of one provider operation
+     */
+    public static final class OperationStats {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            calls.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getAverageNanos() {
+            long count = calls.sum();
+            return count > 0 ? totalNanos.sum() / count : 0;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
 }
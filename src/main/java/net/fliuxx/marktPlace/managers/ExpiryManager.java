@@ -0,0 +1,165 @@
+package net.fliuxx.marktPlace.managers;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ListingStore;
+import net.fliuxx.marktPlace.database.MongoManager;
+import net.fliuxx.marktPlace.database.models.MarketItem;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Expiry Manager
+ * Periodically returns market listings older than the listing duration to their sellers' mailboxes.
+ * Sweeps walk the listedAt index in batches on the database executor, the main thread only refreshes GUIs afterwards.
+ */
+public class ExpiryManager {
+
+    private static final long STARTUP_DELAY = 20L * 30; // Ticks before the first sweep after startup
+
+    private final MarktPlace plugin;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private BukkitTask sweepTask;
+    private long lastSweepTime;
+    private long lastSweepExpired;
+
+    public ExpiryManager(MarktPlace plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start the periodic sweep if expired listings should be removed automatically
+     */
+    public void start() {
+        stop();
+
+        if (!plugin.getMarketConfig().isAutoRemoveExpired()) {
+            return;
+        }
+
+        long intervalTicks = plugin.getMarketConfig().getExpiryCheckInterval() * 20L;
+        sweepTask = Bukkit.getScheduler().runTaskTimer(plugin, this::sweep, STARTUP_DELAY, intervalTicks);
+    }
+
+    /**
+     * Stop the periodic sweep, a sweep already running finishes its current batch
+     */
+    public void stop() {
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+    }
+
+    /**
+     * Apply a changed interval or switch
+     */
+    public void reload() {
+        start();
+    }
+
+    /**
+     * Return expired listings off the main thread.
+     * Completes on the main thread with the number of listings returned, or -1 if a sweep was already running.
+     */
+    public CompletableFuture<Long> sweep() {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        if (!sweeping.compareAndSet(false, true)) {
+            result.complete(-1L);
+            return result;
+        }
+
+        long listingDuration = plugin.getMarketConfig().getListingDurationMillis();
+        int batchSize = plugin.getMarketConfig().getExpiryBatchSize();
+        long cutoff = System.currentTimeMillis() - listingDuration;
+
+        MongoManager mongoManager = plugin.getMongoManager();
+        mongoManager.thenSync(mongoManager.getExecutor().supply(() -> sweepBatches(cutoff, batchSize)), expired -> {
+            sweeping.set(false);
+            lastSweepTime = System.currentTimeMillis();
+            lastSweepExpired = expired.size();
+
+            if (!expired.isEmpty()) {
+                plugin.getLogger().info("Returned " + expired.size() + " expired listings to their sellers");
+                plugin.getGUIManager().refreshMarketplaceGUIs();
+                plugin.getGUIManager().refreshMyItemsGUIs();
+                deliverToOnlineSellers(expired);
+            }
+            result.complete((long) expired.size());
+        }, error -> {
+            sweeping.set(false);
+            plugin.getLogger().severe("Error returning expired listings: " + error.getMessage());
+            result.completeExceptionally(error);
+        });
+
+        return result;
+    }
+
+    /**
+     * Return expired listings batch by batch until none are left or a black market rotation needs the listings
+     */
+    private List<MarketItem> sweepBatches(long cutoff, int batchSize) {
+        ListingStore listingStore = plugin.getListingStore();
+        List<MarketItem> expired = new ArrayList<>();
+
+        while (listingStore.tryLockBulk()) {
+            try {
+                List<MarketItem> batch = plugin.getMongoManager().findExpiredMarketItems(cutoff, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                // Listings claimed by a purchase in flight are skipped, stop once a batch holds nothing but those
+                List<MarketItem> returned = listingStore.expireMarketItems(batch);
+                if (returned.isEmpty()) {
+                    break;
+                }
+                expired.addAll(returned);
+            } finally {
+                listingStore.unlockBulk();
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * Hand returned items to sellers who are online right now, everyone else receives them on join
+     */
+    private void deliverToOnlineSellers(List<MarketItem> expired) {
+        Set<UUID> sellers = new HashSet<>();
+        for (MarketItem item : expired) {
+            sellers.add(item.getSellerId());
+        }
+
+        for (UUID sellerId : sellers) {
+            Player seller = Bukkit.getPlayer(sellerId);
+            if (seller != null) {
+                plugin.getMailboxManager().deliver(seller);
+            }
+        }
+    }
+
+    /**
+     * Check if the periodic sweep is scheduled
+     */
+    public boolean isRunning() {
+        return sweepTask != null;
+    }
+
+    public long getLastSweepTime() {
+        return lastSweepTime;
+    }
+
+    public long getLastSweepExpired() {
+        return lastSweepExpired;
+    }
+}
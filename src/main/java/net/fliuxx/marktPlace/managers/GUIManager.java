@@ -2,82 +2,128 @@ package net.fliuxx.marktPlace.managers;
 
 import net.fliuxx.marktPlace.MarktPlace;
 import net.fliuxx.marktPlace.gui.BlackMarketGUI;
+import net.fliuxx.marktPlace.gui.DisplayItemCache;
+import net.fliuxx.marktPlace.gui.GuiType;
+import net.fliuxx.marktPlace.gui.MarketGui;
 import net.fliuxx.marktPlace.gui.MarketplaceGUI;
 import net.fliuxx.marktPlace.gui.MyItemsGUI;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * GUI Manager for MarketPlace Plugin
- * Manages all open GUIs and provides auto-refresh functionality
+ * Manages all open GUIs and provides auto-refresh functionality.
+ * GUIs are kept in one registry per type, so a refresh only visits the GUIs of the types marked dirty.
  */
 public class GUIManager {
 
     private final MarktPlace plugin;
-    private final Map<UUID, Object> openGuis = new HashMap<>();
+    private final Map<UUID, MarketGui> openGuis = new HashMap<>();
+    private final Map<GuiType, Map<UUID, MarketGui>> guisByType = new EnumMap<>(GuiType.class);
+    private final DisplayItemCache displayCache = new DisplayItemCache();
+
+    // Refreshes are coalesced into one flush, all access happens on the main thread
+    private final Set<GuiType> dirty = EnumSet.noneOf(GuiType.class);
+    private BukkitTask flushTask;
 
     public GUIManager(MarktPlace plugin) {
         this.plugin = plugin;
+        for (GuiType type : GuiType.values()) {
+            guisByType.put(type, new HashMap<>());
+        }
+    }
+
+    /**
+     * Get the display items shared by all open GUIs
+     */
+    public DisplayItemCache getDisplayCache() {
+        return displayCache;
     }
 
     /**
      * Register a GUI for a player
      */
-    public void registerGUI(UUID playerId, Object gui) {
-        openGuis.put(playerId, gui);
+    public void registerGUI(UUID playerId, MarketGui gui) {
+        MarketGui previous = openGuis.put(playerId, gui);
+        if (previous != null && previous.getType() != gui.getType()) {
+            guisByType.get(previous.getType()).remove(playerId);
+        }
+        guisByType.get(gui.getType()).put(playerId, gui);
     }
 
     /**
      * Unregister a GUI for a player
      */
     public void unregisterGUI(UUID playerId) {
-        openGuis.remove(playerId);
+        MarketGui gui = openGuis.remove(playerId);
+        if (gui != null) {
+            guisByType.get(gui.getType()).remove(playerId);
+        }
+    }
+
+    /**
+     * Unregister a GUI for a player only if it is still the one registered
+     */
+    public void unregisterGUI(UUID playerId, MarketGui gui) {
+        if (openGuis.remove(playerId, gui)) {
+            guisByType.get(gui.getType()).remove(playerId);
+        }
     }
 
     /**
      * Get the GUI for a player
      */
-    public Object getGUI(UUID playerId) {
+    public MarketGui getGUI(UUID playerId) {
         return openGuis.get(playerId);
     }
 
     /**
-     * Refresh all marketplace GUIs
+     * Close the player's current GUI and open another one after a delay in ticks
      */
-    public void refreshMarketplaceGUIs() {
-        for (Map.Entry<UUID, Object> entry : openGuis.entrySet()) {
-            if (entry.getValue() instanceof MarketplaceGUI) {
-                MarketplaceGUI gui = (MarketplaceGUI) entry.getValue();
-                gui.refresh();
+    public void openLater(Player player, Supplier<? extends MarketGui> factory, long delay) {
+        player.closeInventory();
+
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            MarketGui gui = factory.get();
+            registerGUI(player.getUniqueId(), gui);
+
+            if (plugin.getMarketConfig().isGuiDebugging()) {
+                plugin.getLogger().info("Opening " + gui.getType() + " GUI for player " + player.getName());
             }
-        }
+
+            gui.open();
+        }, delay);
+    }
+
+    /**
+     * Refresh all marketplace GUIs, batched with other refreshes requested before the next flush
+     */
+    public void refreshMarketplaceGUIs() {
+        refresh(GuiType.MARKETPLACE);
     }
 
     /**
-     * Refresh all black market GUIs
+     * Refresh all black market GUIs, batched with other refreshes requested before the next flush
      */
     public void refreshBlackMarketGUIs() {
-        for (Map.Entry<UUID, Object> entry : openGuis.entrySet()) {
-            if (entry.getValue() instanceof BlackMarketGUI) {
-                BlackMarketGUI gui = (BlackMarketGUI) entry.getValue();
-                gui.refresh();
-            }
-        }
+        refresh(GuiType.BLACK_MARKET);
     }
 
     /**
-     * Refresh all my items GUIs
+     * Refresh all my items GUIs, batched with other refreshes requested before the next flush
      */
     public void refreshMyItemsGUIs() {
-        for (Map.Entry<UUID, Object> entry : openGuis.entrySet()) {
-            if (entry.getValue() instanceof MyItemsGUI) {
-                MyItemsGUI gui = (MyItemsGUI) entry.getValue();
-                gui.refresh();
-            }
-        }
+        refresh(GuiType.MY_ITEMS);
     }
 
     /**
@@ -89,11 +135,56 @@ public class GUIManager {
         refreshMyItemsGUIs();
     }
 
+    /**
+     * Mark every GUI of a type dirty, they are refreshed together on the next flush
+     */
+    public void refresh(GuiType type) {
+        dirty.add(type);
+        scheduleFlush();
+    }
+
+    /**
+     * Schedule a flush unless one is already pending, so a burst of changes costs one refresh pass
+     */
+    private void scheduleFlush() {
+        if (flushTask != null) {
+            return;
+        }
+
+        long interval = plugin.getMarketConfig().getGuiRefreshInterval();
+        flushTask = Bukkit.getScheduler().runTaskLater(plugin, this::flush, interval);
+    }
+
+    /**
+     * Refresh the GUIs of every dirty type, listing snapshots are cached by the store and shared by every viewer
+     */
+    private void flush() {
+        flushTask = null;
+
+        Set<GuiType> types = EnumSet.copyOf(dirty);
+        dirty.clear();
+
+        for (GuiType type : types) {
+            Map<UUID, MarketGui> guis = guisByType.get(type);
+            if (guis.isEmpty()) {
+                continue;
+            }
+
+            // Copy, a refresh may open or close GUIs
+            for (MarketGui gui : new ArrayList<>(guis.values())) {
+                gui.refresh();
+            }
+        }
+    }
+
     /**
      * Clear all registered GUIs
      */
     public void clearAll() {
         openGuis.clear();
+        for (Map<UUID, MarketGui> guis : guisByType.values()) {
+            guis.clear();
+        }
     }
 
     /**
@@ -106,46 +197,40 @@ public class GUIManager {
     /**
      * Switch to a secondary GUI while keeping a fallback to main marketplace
      */
-    public void openSecondaryGUI(UUID playerId, Object secondaryGUI) {
+    public void openSecondaryGUI(UUID playerId, MarketGui secondaryGUI) {
         // Register the secondary GUI
         registerGUI(playerId, secondaryGUI);
         
         // Add debug logging
-        if (plugin.getConfig().getBoolean("debug.gui-debugging", false)) {
-            plugin.getLogger().info("Opening secondary GUI for player " + playerId + " - GUI type: " + secondaryGUI.getClass().getSimpleName());
+        if (plugin.getMarketConfig().isGuiDebugging()) {
+            plugin.getLogger().info("Opening secondary GUI for player " + playerId + " - GUI type: " + secondaryGUI.getType());
         }
     }
 
     /**
-     * Get the appropriate GUI type for a player based on their current state
+     * Get the player's GUI of a type, creating one if they have none or another type open
      */
-    public Object getOrCreateGUI(UUID playerId, Player player, String preferredType) {
-        Object existingGUI = getGUI(playerId);
-        
-        // If no GUI exists or wrong type, create appropriate one
-        if (existingGUI == null || !existingGUI.getClass().getSimpleName().toLowerCase().contains(preferredType.toLowerCase())) {
-            Object newGUI;
-            
-            switch (preferredType.toLowerCase()) {
-                case "marketplace":
-                    newGUI = new MarketplaceGUI(plugin, player);
-                    break;
-                case "blackmarket":
-                    newGUI = new BlackMarketGUI(plugin, player);
-                    break;
-                case "myitems":
-                    newGUI = new MyItemsGUI(plugin, player);
-                    break;
-                default:
-                    newGUI = new MarketplaceGUI(plugin, player); // Default fallback
-                    break;
-            }
-            
-            registerGUI(playerId, newGUI);
-            return newGUI;
+    public MarketGui getOrCreateGUI(UUID playerId, Player player, GuiType type) {
+        MarketGui existingGUI = getGUI(playerId);
+        if (existingGUI != null && existingGUI.getType() == type) {
+            return existingGUI;
         }
-        
-        return existingGUI;
+
+        MarketGui newGUI;
+        switch (type) {
+            case BLACK_MARKET:
+                newGUI = new BlackMarketGUI(plugin, player);
+                break;
+            case MY_ITEMS:
+                newGUI = new MyItemsGUI(plugin, player);
+                break;
+            default:
+                newGUI = new MarketplaceGUI(plugin, player); // Default fallback
+                break;
+        }
+
+        registerGUI(playerId, newGUI);
+        return newGUI;
     }
 
     /**
@@ -154,4 +239,11 @@ public class GUIManager {
     public int getOpenGUICount() {
         return openGuis.size();
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the number of open GUIs of a type
+     */
+    public int getOpenGUICount(GuiType type) {
+        return guisByType.get(type).size();
+    }
+}
@@ -0,0 +1,102 @@
+package net.fliuxx.marktPlace.managers;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.models.MailboxItem;
+import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.utils.ItemCodec;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Mailbox Manager
+ * Hands items that left the marketplace without a buyer back to their sellers, immediately when they are online
+ * and otherwise the next time they join. Items never wait in memory, the mailbox collection holds them.
+ */
+public class MailboxManager {
+
+    private static final int DELIVERY_LIMIT = 36; // One player inventory per delivery
+
+    private final MarktPlace plugin;
+
+    public MailboxManager(MarktPlace plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Store a claimed listing in its seller's mailbox
+     */
+    public CompletableFuture<Void> send(MarketItem item, MailboxItem.Reason reason) {
+        return plugin.getMongoManager().sendToMailboxAsync(Collections.singletonList(MailboxItem.fromListing(item, reason)));
+    }
+
+    /**
+     * Give a player the items waiting in their mailbox, items that do not fit stay in the mailbox
+     */
+    public void deliver(Player player) {
+        UUID playerId = player.getUniqueId();
+
+        plugin.getMongoManager().thenSync(plugin.getMongoManager().takeMailboxItemsAsync(playerId, DELIVERY_LIMIT), items -> {
+            if (items.isEmpty()) {
+                return;
+            }
+
+            // The player left while the mailbox was read
+            if (!player.isOnline()) {
+                requeue(items);
+                return;
+            }
+
+            List<MailboxItem> waiting = new ArrayList<>();
+            int delivered = 0;
+
+            for (MailboxItem mailboxItem : items) {
+                if (player.getInventory().firstEmpty() == -1) {
+                    waiting.add(mailboxItem);
+                    continue;
+                }
+
+                ItemStack itemStack;
+                try {
+                    itemStack = ItemCodec.decode(mailboxItem.getItemData());
+                } catch (Exception e) {
+                    // Keep the data so an admin can still recover it
+                    plugin.getLogger().severe("Error decoding mailbox item " + mailboxItem.getId() + " for " + player.getName() + ": " + e.getMessage());
+                    waiting.add(mailboxItem);
+                    continue;
+                }
+
+                for (ItemStack leftover : player.getInventory().addItem(itemStack).values()) {
+                    player.getWorld().dropItem(player.getLocation(), leftover);
+                }
+                delivered++;
+            }
+
+            if (delivered > 0) {
+                player.sendMessage(plugin.getConfigManager().getMessage("mailbox.delivered", "count", String.valueOf(delivered)));
+            }
+
+            if (!waiting.isEmpty()) {
+                requeue(waiting);
+                player.sendMessage(plugin.getConfigManager().getMessage("mailbox.inventory-full", "count", String.valueOf(waiting.size())));
+            }
+        }, error -> {
+            plugin.getLogger().severe("Error delivering mailbox of " + player.getName() + ": " + error.getMessage());
+        });
+    }
+
+    /**
+     * Put items taken out of the mailbox back, they keep their ids and creation times
+     */
+    private void requeue(List<MailboxItem> items) {
+        plugin.getMongoManager().sendToMailboxAsync(items).exceptionally(error -> {
+            plugin.getLogger().severe("Error returning " + items.size() + " items to the mailbox: " + error.getMessage());
+            return null;
+        });
+    }
+}
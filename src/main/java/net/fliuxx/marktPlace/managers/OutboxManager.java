@@ -0,0 +1,188 @@
+package net.fliuxx.marktPlace.managers;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.MongoManager;
+import net.fliuxx.marktPlace.database.models.OutboxEvent;
+import net.fliuxx.marktPlace.database.models.Transaction;
+import net.fliuxx.marktPlace.utils.DiscordWebhook;
+import net.fliuxx.marktPlace.utils.MarketConfig;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbox Manager
+ * Delivers purchase notifications from the outbox collection, where they are written together with their transaction.
+ * Failed deliveries are retried with exponential backoff and delivered notifications are deleted from the outbox,
+ * so notifications survive restarts and webhook outages without the purchase ever waiting on Discord.
+ */
+public class OutboxManager {
+
+    private final MarktPlace plugin;
+    private final AtomicBoolean reading = new AtomicBoolean();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet(); // Events handed to the webhook, not yet settled
+    private volatile boolean drainAgain; // The last read filled a whole batch, or a drain was asked for while busy
+    private volatile BukkitTask drainTask;
+
+    // Metrics
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+
+    public OutboxManager(MarktPlace plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start polling the outbox, notifications left by an earlier run are delivered first
+     */
+    public void start() {
+        stop();
+
+        long intervalTicks = plugin.getMarketConfig().getOutboxPollInterval() * 20L;
+        drainTask = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 20L, intervalTicks);
+    }
+
+    /**
+     * Stop polling, notifications not yet delivered stay in the outbox for the next start
+     */
+    public void stop() {
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+    }
+
+    /**
+     * Apply a changed poll interval
+     */
+    public void reload() {
+        start();
+    }
+
+    /**
+     * Get the notification to write with a transaction, or null when the webhook is not configured
+     */
+    public OutboxEvent eventFor(Transaction transaction) {
+        return plugin.getDiscordWebhook().isEnabled() ? OutboxEvent.fromTransaction(transaction) : null;
+    }
+
+    /**
+     * Deliver due notifications, safe to call from any thread.
+     * One batch is handed to the webhook at a time, the next one is read once the batch is settled.
+     */
+    public void drain() {
+        if (drainTask == null || !plugin.getDiscordWebhook().isEnabled()) {
+            return;
+        }
+        if (!inFlight.isEmpty() || !reading.compareAndSet(false, true)) {
+            drainAgain = true;
+            return;
+        }
+        drainAgain = false;
+
+        int batchSize = plugin.getMarketConfig().getOutboxBatchSize();
+        plugin.getMongoManager().findDueOutboxEventsAsync(System.currentTimeMillis(), batchSize).whenComplete((events, error) -> {
+            if (error != null) {
+                reading.set(false);
+                plugin.getLogger().severe("Error reading the notification outbox: " + error.getMessage());
+                return;
+            }
+
+            if (events.size() >= batchSize) {
+                drainAgain = true;
+            }
+            for (OutboxEvent event : events) {
+                inFlight.add(event.getId());
+            }
+            reading.set(false);
+
+            if (events.isEmpty()) {
+                // A notification written while the outbox was read is picked up right away
+                if (drainAgain) {
+                    drain();
+                }
+                return;
+            }
+            for (OutboxEvent event : events) {
+                deliver(event);
+            }
+        });
+    }
+
+    /**
+     * Hand a notification to the webhook and settle it in the outbox once the webhook answers
+     */
+    private void deliver(OutboxEvent event) {
+        DiscordWebhook webhook = plugin.getDiscordWebhook();
+        CompletableFuture<Boolean> sent = event.getType() == OutboxEvent.Type.BLACK_MARKET_PURCHASE
+            ? webhook.sendBlackMarketPurchaseNotification(event.getBuyerName(), event.getSellerName(), event.getItemName(), event.getPrice())
+            : webhook.sendPurchaseNotification(event.getBuyerName(), event.getSellerName(), event.getItemName(), event.getPrice());
+
+        sent.exceptionally(error -> false)
+            .thenCompose(delivered -> settle(event, delivered))
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    // The outbox entry is unchanged, it is retried on a later poll
+                    plugin.getLogger().severe("Error updating notification " + event.getId() + " in the outbox: " + error.getMessage());
+                }
+                inFlight.remove(event.getId());
+                if (inFlight.isEmpty() && drainAgain) {
+                    drain();
+                }
+            });
+    }
+
+    /**
+     * Delete a delivered notification, otherwise schedule its next attempt or give up on it
+     */
+    private CompletableFuture<Void> settle(OutboxEvent event, boolean sent) {
+        MongoManager mongoManager = plugin.getMongoManager();
+        if (sent) {
+            delivered.incrementAndGet();
+            return mongoManager.deleteOutboxEventAsync(event.getId());
+        }
+
+        MarketConfig config = plugin.getMarketConfig();
+        int attempts = event.getAttempts() + 1;
+        if (attempts >= config.getOutboxMaxAttempts()) {
+            abandoned.incrementAndGet();
+            plugin.getLogger().warning("Giving up on notification " + event.getId() + " after " + attempts + " attempts");
+            return mongoManager.deleteOutboxEventAsync(event.getId());
+        }
+
+        // Exponential backoff, capped so a long outage still retries regularly
+        long delay = config.getOutboxRetryDelay() << Math.min(attempts - 1, 20);
+        delay = Math.min(delay, config.getOutboxMaxRetryDelay());
+        retried.incrementAndGet();
+        return mongoManager.rescheduleOutboxEventAsync(event.getId(), attempts, System.currentTimeMillis() + delay);
+    }
+
+    /**
+     * Check if the outbox is polled
+     */
+    public boolean isRunning() {
+        return drainTask != null;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getAbandoned() {
+        return abandoned.get();
+    }
+}
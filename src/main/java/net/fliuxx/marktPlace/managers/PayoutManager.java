@@ -0,0 +1,252 @@
+package net.fliuxx.marktPlace.managers;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.MongoManager;
+import net.fliuxx.marktPlace.database.models.PendingPayout;
+import net.fliuxx.marktPlace.database.models.Transaction;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Payout Manager
+ * Pays sellers through a ledger of pending payouts in MongoDB instead of depositing each sale on the spot.
+ * Sales of an online seller are collected for a short delay and settled with one deposit and one message,
+ * sales of an offline seller wait in the ledger and are settled the same way when they join.
+ * A settlement is marked as depositing before the money moves and is never released after that,
+ * so a failed cleanup or a crash can cost a seller a payout an admin has to check, but never pays one twice.
+ */
+public class PayoutManager {
+
+    private static final String SERVER_ID_FILE = "server-id";
+
+    private final MarktPlace plugin;
+    private final String serverId; // Marks the settlements of this server, kept across restarts
+    private final Set<UUID> owed = ConcurrentHashMap.newKeySet(); // Sellers with payouts in the ledger, skips the lookup on join
+    private final Set<UUID> scheduled = ConcurrentHashMap.newKeySet(); // Sellers with a settlement waiting for the delay
+
+    public PayoutManager(MarktPlace plugin) {
+        this.plugin = plugin;
+        this.serverId = loadServerId();
+    }
+
+    /**
+     * Load the sellers that are owed money, settling online ones right away.
+     * Settlements of this server cut short before depositing are released first, other servers settle their own.
+     */
+    public void start() {
+        MongoManager mongoManager = plugin.getMongoManager();
+        long cutoff = System.currentTimeMillis() - plugin.getMarketConfig().getPayoutClaimTimeout();
+        mongoManager.thenSync(mongoManager.getExecutor().supply(() -> {
+            long released = mongoManager.releaseStalePayoutClaims(serverId, cutoff);
+            if (released > 0) {
+                plugin.getLogger().warning("Released " + released + " payouts of an interrupted settlement, they are paid on the next settlement");
+            }
+            long interrupted = mongoManager.countInterruptedPayouts(serverId, cutoff);
+            if (interrupted > 0) {
+                plugin.getLogger().warning(interrupted + " payouts were interrupted while depositing and are not paid again, " +
+                    "check the pending_payouts entries with a settlingAt field");
+            }
+            return mongoManager.getPendingPayoutSellers();
+        }), sellers -> {
+            owed.addAll(sellers);
+            for (UUID sellerId : sellers) {
+                Player seller = Bukkit.getPlayer(sellerId);
+                if (seller != null) {
+                    schedule(seller);
+                }
+            }
+        }, error -> {
+            plugin.getLogger().severe("Error loading pending payouts: " + error.getMessage());
+        });
+    }
+
+    /**
+     * Get the payout to write with a transaction, owed to its seller
+     */
+    public PendingPayout payoutFor(Transaction transaction, double sellerPayment) {
+        return PendingPayout.fromTransaction(transaction, sellerPayment);
+    }
+
+    /**
+     * Settle a payout once the write storing it with its transaction completed.
+     * If that write failed the payout is stored on its own, it is keyed by the transaction id so it is never owed twice.
+     */
+    public void track(PendingPayout payout, CompletableFuture<Void> write) {
+        MongoManager mongoManager = plugin.getMongoManager();
+        CompletableFuture<Void> stored = write.exceptionallyCompose(error -> mongoManager.addPendingPayoutAsync(payout));
+
+        mongoManager.thenSync(stored, ignored -> {
+            owed.add(payout.getSellerId());
+            Player seller = Bukkit.getPlayer(payout.getSellerId());
+            if (seller != null) {
+                schedule(seller);
+            }
+        }, error -> {
+            plugin.getLogger().severe("Error storing payout " + payout.getTransactionId() + " of " +
+                plugin.getEconomyManager().formatMoney(payout.getAmount()) + " for " + payout.getSellerName() + ": " + error.getMessage());
+        });
+    }
+
+    /**
+     * Settle a seller after the collection delay, later sales within the delay join the same settlement
+     */
+    private void schedule(Player seller) {
+        if (!scheduled.add(seller.getUniqueId())) {
+            return;
+        }
+
+        long delay = plugin.getMarketConfig().getPayoutDelay();
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            scheduled.remove(seller.getUniqueId());
+            settle(seller);
+        }, delay);
+    }
+
+    /**
+     * Pay a seller everything they are owed with one deposit
+     */
+    public void settle(Player seller) {
+        UUID sellerId = seller.getUniqueId();
+        if (!owed.remove(sellerId)) {
+            return;
+        }
+
+        MongoManager mongoManager = plugin.getMongoManager();
+        String claimId = UUID.randomUUID().toString();
+
+        mongoManager.thenSync(mongoManager.claimPendingPayoutsAsync(sellerId, claimId, serverId), payouts -> {
+            if (payouts.isEmpty()) {
+                return;
+            }
+
+            // The seller left while the ledger was read
+            if (!seller.isOnline()) {
+                release(sellerId, claimId);
+                return;
+            }
+
+            double total = 0;
+            for (PendingPayout payout : payouts) {
+                total += payout.getAmount();
+            }
+            double amount = total;
+
+            // Mark the payouts before the money moves, from here on they are never released or paid again
+            mongoManager.thenSync(mongoManager.markPendingPayoutsSettlingAsync(claimId), marked -> {
+                if (marked < payouts.size() || !seller.isOnline()) {
+                    release(sellerId, claimId);
+                    return;
+                }
+                deposit(seller, claimId, payouts, amount);
+            }, error -> {
+                plugin.getLogger().severe("Error settling payouts of " + seller.getName() + ": " + error.getMessage());
+                release(sellerId, claimId);
+            });
+        }, error -> {
+            plugin.getLogger().severe("Error settling payouts of " + seller.getName() + ": " + error.getMessage());
+            release(sellerId, claimId);
+        });
+    }
+
+    /**
+     * Deposit a marked settlement and clear it from the ledger, only a refused deposit puts the payouts back
+     */
+    private void deposit(Player seller, String claimId, List<PendingPayout> payouts, double amount) {
+        MongoManager mongoManager = plugin.getMongoManager();
+
+        mongoManager.thenSync(plugin.getEconomyManager().depositAsync(seller, amount), paid -> {
+            if (!paid) {
+                // Nothing was deposited, the payouts are settled on the next join or sale
+                release(seller.getUniqueId(), claimId);
+                return;
+            }
+
+            mongoManager.deletePendingPayoutsAsync(claimId).exceptionally(error -> {
+                // Left marked as depositing, they are never paid again
+                plugin.getLogger().severe("Error clearing settled payouts " + claimId + " of " + seller.getName() + ": " + error.getMessage());
+                return null;
+            });
+
+            if (seller.isOnline()) {
+                sendSoldMessage(seller, payouts, amount);
+            }
+        }, error -> {
+            // The deposit may have gone through, so the payouts stay marked and are not paid again
+            plugin.getLogger().severe("Error depositing payouts " + claimId + " of " + plugin.getEconomyManager().formatMoney(amount) +
+                " to " + seller.getName() + ", check the balance before paying them by hand: " + error.getMessage());
+        });
+    }
+
+    /**
+     * Put the payouts of a failed settlement back, they are paid on the next join or sale
+     */
+    private void release(UUID sellerId, String claimId) {
+        plugin.getMongoManager().releasePendingPayoutsAsync(claimId).whenComplete((released, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Error releasing payouts " + claimId + ": " + error.getMessage());
+            }
+            owed.add(sellerId);
+        });
+    }
+
+    private void sendSoldMessage(Player seller, List<PendingPayout> payouts, double total) {
+        if (payouts.size() == 1) {
+            PendingPayout payout = payouts.get(0);
+            seller.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-sold",
+                "item", payout.getItemName(),
+                "buyer", payout.getBuyerName(),
+                "price", plugin.getEconomyManager().formatMoney(total)));
+        } else {
+            seller.sendMessage(plugin.getConfigManager().getMessage("marketplace.items-sold",
+                "count", String.valueOf(payouts.size()),
+                "price", plugin.getEconomyManager().formatMoney(total)));
+        }
+    }
+
+    /**
+     * Read the id this server marks its settlements with, created on first start
+     */
+    private String loadServerId() {
+        File file = new File(plugin.getDataFolder(), SERVER_ID_FILE);
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                String line = reader.readLine();
+                if (line != null && !line.trim().isEmpty()) {
+                    return line.trim();
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not read " + SERVER_ID_FILE + ": " + e.getMessage());
+            }
+        }
+
+        String id = UUID.randomUUID().toString();
+        file.getParentFile().mkdirs();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(id);
+            writer.newLine();
+        } catch (IOException e) {
+            // Settlements of this run are then never released by a later one, they wait for an admin
+            plugin.getLogger().warning("Could not write " + SERVER_ID_FILE + ": " + e.getMessage());
+        }
+        return id;
+    }
+
+    /**
+     * Get the number of sellers with payouts in the ledger
+     */
+    public int getOwedSellers() {
+        return owed.size();
+    }
+}
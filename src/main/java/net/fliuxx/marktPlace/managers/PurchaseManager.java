@@ -0,0 +1,315 @@
+package net.fliuxx.marktPlace.managers;
+
+import net.fliuxx.marktPlace.MarktPlace;
+import net.fliuxx.marktPlace.database.ListingStore;
+import net.fliuxx.marktPlace.database.PlayerDataCache;
+import net.fliuxx.marktPlace.database.models.MailboxItem;
+import net.fliuxx.marktPlace.database.models.MarketItem;
+import net.fliuxx.marktPlace.database.models.OutboxEvent;
+import net.fliuxx.marktPlace.database.models.PendingPayout;
+import net.fliuxx.marktPlace.database.models.Transaction;
+import net.fliuxx.marktPlace.gui.ConfirmationGUI;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Purchase Manager
+ * Runs marketplace and black market purchases: the listing is claimed with one atomic delete before any money moves,
+ * so concurrent buyers never need a refund and a purchase is one claim plus one write.
+ */
+public class PurchaseManager {
+
+    private final MarktPlace plugin;
+
+    public PurchaseManager(MarktPlace plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Buy a listing clicked in a GUI, through the confirmation GUI if it is enabled
+     */
+    public void requestPurchase(Player player, MarketItem item, boolean isBlackMarket) {
+        // Check if player can buy their own items
+        if (item.getSellerId().equals(player.getUniqueId())) {
+            player.sendMessage(plugin.getConfigManager().getMessage("marketplace.cannot-buy-own"));
+            return;
+        }
+
+        // Check if confirmation GUI is enabled
+        if (plugin.getMarketConfig().isConfirmationGui()) {
+            plugin.getGUIManager().openLater(player, () -> new ConfirmationGUI(plugin, player, item, isBlackMarket), 2L);
+        } else {
+            // Direct purchase
+            purchase(player, item, isBlackMarket);
+        }
+    }
+
+    /**
+     * Buy a listing for a player
+     */
+    public void purchase(Player player, MarketItem item, boolean isBlackMarket) {
+        ListingStore listingStore = plugin.getListingStore();
+
+        // Check if item still exists
+        MarketItem currentItem = isBlackMarket ?
+            listingStore.getBlackMarketItem(item.getId()) :
+            listingStore.getMarketItem(item.getId());
+
+        if (currentItem == null) {
+            player.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-not-found"));
+            return;
+        }
+
+        // The listing is being moved by a black market refresh
+        if (listingStore.isLocked(currentItem)) {
+            player.sendMessage(plugin.getConfigManager().getMessage("blackmarket.refreshing"));
+            return;
+        }
+
+        // Check if player has enough money, unless the withdrawal itself refuses to overdraw
+        EconomyManager economyManager = plugin.getEconomyManager();
+        if (economyManager.shouldCheckBalance() && !economyManager.hasEnough(player, currentItem.getPrice())) {
+            player.sendMessage(plugin.getConfigManager().getMessage("insufficient-funds",
+                "price", plugin.getEconomyManager().formatMoney(currentItem.getPrice())));
+            return;
+        }
+
+        // Check if player has inventory space
+        if (player.getInventory().firstEmpty() == -1) {
+            player.sendMessage(plugin.getConfigManager().getMessage("marketplace.inventory-full"));
+            return;
+        }
+
+        // Decode the item while the listing is still cached, claiming it evicts the entry
+        ItemStack purchasedItem;
+        String itemName;
+        try {
+            purchasedItem = listingStore.getItemCache().getItemStack(currentItem);
+            itemName = listingStore.getItemCache().getDisplayName(currentItem);
+        } catch (Exception e) {
+            player.sendMessage(plugin.getConfigManager().getMessage("errors.invalid-item"));
+            plugin.getLogger().severe("Error decoding item " + currentItem.getId() + " for " + player.getName() + ": " + e.getMessage());
+            return;
+        }
+
+        // Claim the listing, only the buyer whose delete returns the document gets the item
+        CompletableFuture<MarketItem> claim = isBlackMarket ?
+            listingStore.claimBlackMarketItem(currentItem.getId()) :
+            listingStore.claimMarketItem(currentItem.getId());
+
+        plugin.getMongoManager().thenSync(claim, claimed -> {
+            if (claimed == null) {
+                // Someone else bought or removed it in the meantime, no money has moved yet
+                player.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-not-found"));
+                return;
+            }
+
+            if (!player.isOnline()) {
+                // Buyer left while the listing was claimed, put it back
+                restoreListing(claimed, isBlackMarket);
+                return;
+            }
+
+            // Charge the buyer only once the listing is theirs
+            plugin.getMongoManager().thenSync(economyManager.withdrawAsync(player, claimed.getPrice()), paid -> {
+                if (!paid) {
+                    restoreListing(claimed, isBlackMarket);
+                    player.sendMessage(plugin.getConfigManager().getMessage("insufficient-funds",
+                        "price", economyManager.formatMoney(claimed.getPrice())));
+                    return;
+                }
+
+                if (!player.isOnline()) {
+                    // Buyer left while the withdrawal ran, refund them and put the listing back
+                    economyManager.depositAsync(player, claimed.getPrice());
+                    restoreListing(claimed, isBlackMarket);
+                    return;
+                }
+
+                completePurchase(player, claimed, purchasedItem, itemName, isBlackMarket);
+            }, error -> {
+                // The provider failed, the buyer may or may not have been charged
+                plugin.getLogger().severe("Error charging " + player.getName() + " " + economyManager.formatMoney(claimed.getPrice()) +
+                    " for " + claimed.getId() + ", check their balance: " + error.getMessage());
+                restoreListing(claimed, isBlackMarket);
+                player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+            });
+        }, error -> {
+            player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+            plugin.getLogger().severe("Error processing purchase for " + player.getName() + ": " + error.getMessage());
+        });
+    }
+
+    /**
+     * Pay the seller and hand over an item that has already been claimed and paid for
+     */
+    private void completePurchase(Player player, MarketItem currentItem, ItemStack itemStack, String itemName, boolean isBlackMarket) {
+        try {
+            // Calculate seller payment
+            double sellerPayment = currentItem.getPrice();
+            if (isBlackMarket) {
+                sellerPayment = plugin.getBlackMarketManager().calculateSellerProfit(currentItem.getOriginalPrice());
+            }
+
+            // Give item to buyer - clean it from marketplace metadata
+            ItemStack cleanItem = cleanItemForPlayerInventory(itemStack);
+            for (ItemStack leftover : player.getInventory().addItem(cleanItem).values()) {
+                // Inventory filled up while the purchase was in flight
+                player.getWorld().dropItem(player.getLocation(), leftover);
+            }
+
+            // Auto-refresh marketplace GUIs
+            if (isBlackMarket) {
+                plugin.getGUIManager().refreshBlackMarketGUIs();
+            } else {
+                plugin.getGUIManager().refreshMarketplaceGUIs();
+            }
+
+            // Auto-refresh My Items GUIs
+            plugin.getGUIManager().refreshMyItemsGUIs();
+
+            // Create transaction record
+            Transaction transaction = new Transaction(
+                UUID.randomUUID().toString(),
+                player.getUniqueId(),
+                player.getName(),
+                currentItem.getSellerId(),
+                currentItem.getSellerName(),
+                itemName,
+                currentItem.getItemData(),
+                currentItem.getPrice(),
+                isBlackMarket ? Transaction.TransactionType.BLACK_MARKET : Transaction.TransactionType.NORMAL
+            );
+
+            // Store the purchase, the seller is paid through the payout ledger online or not
+            recordPurchase(transaction, sellerPayment);
+
+            // Send success messages
+            player.sendMessage(plugin.getConfigManager().getMessage("marketplace.item-purchased",
+                "item", itemName,
+                "seller", currentItem.getSellerName(),
+                "price", plugin.getEconomyManager().formatMoney(currentItem.getPrice())));
+
+            // Log transaction
+            if (plugin.getMarketConfig().isLogTransactions()) {
+                plugin.getLogger().info(player.getName() + " purchased " + itemName + 
+                    " from " + currentItem.getSellerName() + " for " + plugin.getEconomyManager().formatMoney(currentItem.getPrice()) +
+                    (isBlackMarket ? " (Black Market)" : ""));
+            }
+
+        } catch (Exception e) {
+            player.sendMessage(plugin.getConfigManager().getMessage("errors.database-error"));
+            plugin.getLogger().severe("Error processing purchase for " + player.getName() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Store the transaction with the seller's payout and its Discord notification and update buyer and seller statistics
+     */
+    private void recordPurchase(Transaction transaction, double sellerPayment) {
+        PlayerDataCache playerDataCache = plugin.getPlayerDataCache();
+        PendingPayout payout = plugin.getPayoutManager().payoutFor(transaction, sellerPayment);
+        OutboxEvent notification = plugin.getOutboxManager().eventFor(transaction);
+        CompletableFuture<Void> write;
+
+        if (playerDataCache.isWriteBehind()) {
+            // Statistics go out with the next batched flush, only the transaction, payout and notification are written now
+            write = plugin.getMongoManager().addTransactionAsync(transaction, payout, notification);
+            playerDataCache.record(transaction.getBuyerId(), transaction.getBuyerName(), 0, 1,
+                0, Math.round(transaction.getPrice() * 100), true); // Convert to cents
+            playerDataCache.record(transaction.getSellerId(), transaction.getSellerName(), 1, 0,
+                Math.round(sellerPayment * 100), 0, false);
+        } else {
+            // Store the transaction and payout and update both players' statistics in one write
+            write = plugin.getMongoManager().recordPurchaseAsync(transaction, payout, notification);
+        }
+
+        // Settle the payout once it is stored
+        plugin.getPayoutManager().track(payout, write);
+
+        // Deliver the notification now instead of on the next outbox poll
+        if (notification != null) {
+            write.thenRun(() -> plugin.getOutboxManager().drain());
+        }
+
+        write.exceptionally(error -> {
+            plugin.getLogger().severe("Error recording transaction " + transaction.getId() + ": " + error.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Put a claimed listing back when the purchase could not be completed, or mail it to its seller if that fails
+     */
+    private void restoreListing(MarketItem item, boolean isBlackMarket) {
+        ListingStore listingStore = plugin.getListingStore();
+        CompletableFuture<Void> restore = isBlackMarket ?
+            listingStore.addBlackMarketItem(item) :
+            listingStore.addMarketItem(item);
+
+        restore.exceptionallyCompose(error -> {
+            plugin.getLogger().warning("Error restoring listing " + item.getId() + " from " + item.getSellerName() +
+                ", returning it to their mailbox: " + error.getMessage());
+            return plugin.getMailboxManager().send(item, MailboxItem.Reason.RETURNED);
+        }).exceptionally(error -> {
+            plugin.getLogger().severe("Could not restore or mail listing " + item.getId() + " of " + item.getSellerName() + ": " + error.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Clean item from marketplace metadata for normal player inventory use
+     * This ensures the item behaves normally in the player's inventory
+     */
+    private ItemStack cleanItemForPlayerInventory(ItemStack item) {
+        if (item == null) return null;
+        
+        // Create a completely new ItemStack to avoid any lingering metadata
+        ItemStack cleanItem = new ItemStack(item.getType(), item.getAmount());
+        
+        // Copy only the essential metadata (display name, lore, enchantments, etc.)
+        if (item.hasItemMeta()) {
+            ItemMeta originalMeta = item.getItemMeta();
+            ItemMeta cleanMeta = cleanItem.getItemMeta();
+            
+            if (originalMeta != null && cleanMeta != null) {
+                // Copy display name
+                if (originalMeta.hasDisplayName()) {
+                    cleanMeta.setDisplayName(originalMeta.getDisplayName());
+                }
+                
+                // Copy lore
+                if (originalMeta.hasLore()) {
+                    cleanMeta.setLore(originalMeta.getLore());
+                }
+                
+                // Copy enchantments
+                if (originalMeta.hasEnchants()) {
+                    cleanMeta.getEnchants().forEach((enchant, level) -> {
+                        cleanMeta.addEnchant(enchant, level, true);
+                    });
+                }
+                
+                // Copy item flags
+                cleanMeta.addItemFlags(originalMeta.getItemFlags().toArray(new org.bukkit.inventory.ItemFlag[0]));
+                
+                // Copy custom model data
+                if (originalMeta.hasCustomModelData()) {
+                    cleanMeta.setCustomModelData(originalMeta.getCustomModelData());
+                }
+                
+                // Apply the clean metadata
+                cleanItem.setItemMeta(cleanMeta);
+            }
+        }
+        
+        // The item should now behave exactly like a normal item in the player's inventory
+        // with no marketplace-specific metadata or NBT data
+        return cleanItem;
+    }
+}
@@ -1,6 +1,7 @@
 package net.fliuxx.marktPlace.utils;
 
 import net.fliuxx.marktPlace.MarktPlace;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
@@ -8,8 +9,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Configuration Manager for MarketPlace Plugin
@@ -20,6 +25,10 @@ public class ConfigManager {
     private final MarktPlace plugin;
     private final Map<String, FileConfiguration> configs = new HashMap<>();
     private final Map<String, File> configFiles = new HashMap<>();
+    private volatile MarketConfig marketConfig;
+    private final Map<String, MessageTemplate> messageTemplates = new ConcurrentHashMap<>(); // messages.yml by path
+    private final Map<String, MessageTemplate> guiTemplates = new ConcurrentHashMap<>(); // guis.yml names by path
+    private final Map<String, List<MessageTemplate>> loreTemplates = new ConcurrentHashMap<>(); // guis.yml lore by path
 
     public ConfigManager(MarktPlace plugin) {
         this.plugin = plugin;
@@ -38,12 +47,36 @@ public class ConfigManager {
      */
     public void reloadConfigs() {
         plugin.reloadConfig();
+        loadMarketConfig();
         
         for (String fileName : configFiles.keySet()) {
             reloadConfig(fileName);
         }
     }
 
+    /**
+     * Drop compiled templates, they are compiled again from the reloaded files on next use
+     */
+    private void clearTemplates() {
+        messageTemplates.clear();
+        guiTemplates.clear();
+        loreTemplates.clear();
+    }
+
+    /**
+     * Build a new settings snapshot from config.yml and publish it
+     */
+    public void loadMarketConfig() {
+        marketConfig = MarketConfig.from(plugin.getConfig());
+    }
+
+    /**
+     * Get the current settings snapshot, readers keep the one they got for the whole operation
+     */
+    public MarketConfig getMarketConfig() {
+        return marketConfig;
+    }
+
     /**
      * Get a configuration file
      */
@@ -84,6 +117,7 @@ public class ConfigManager {
                 YamlConfiguration defConfig = YamlConfiguration.loadConfiguration(new InputStreamReader(defConfigStream));
                 configs.get(fileName).setDefaults(defConfig);
             }
+            clearTemplates();
         }
     }
 
@@ -122,22 +156,43 @@ public class ConfigManager {
      * Get a message from messages.yml with color codes translated
      */
     public String getMessage(String path) {
-        return translateColorCodes(getConfig("messages.yml").getString(path, "Message not found: " + path));
+        return getMessageTemplate(path).render();
     }
 
     /**
      * Get a message with placeholders replaced
      */
     public String getMessage(String path, String... placeholders) {
-        String message = getMessage(path);
-        
-        for (int i = 0; i < placeholders.length; i += 2) {
-            if (i + 1 < placeholders.length) {
-                message = message.replace("{" + placeholders[i] + "}", placeholders[i + 1]);
+        return getMessageTemplate(path).render(placeholders);
+    }
+
+    /**
+     * Get the compiled template of a message from messages.yml, color codes are translated once at compile time
+     */
+    public MessageTemplate getMessageTemplate(String path) {
+        return messageTemplates.computeIfAbsent(path, key ->
+            MessageTemplate.compile(translateColorCodes(getConfig("messages.yml").getString(key, "Message not found: " + key))));
+    }
+
+    /**
+     * Get the compiled template of a text setting in guis.yml, with color codes translated
+     */
+    public MessageTemplate getGuiTemplate(ConfigurationSection section, String key, String defaultValue) {
+        return guiTemplates.computeIfAbsent(section.getCurrentPath() + "." + key, path ->
+            MessageTemplate.compile(translateColorCodes(section.getString(key, defaultValue))));
+    }
+
+    /**
+     * Get the compiled templates of a lore list in guis.yml, with color codes translated
+     */
+    public List<MessageTemplate> getLoreTemplates(ConfigurationSection section, String key) {
+        return loreTemplates.computeIfAbsent(section.getCurrentPath() + "." + key, path -> {
+            List<MessageTemplate> lines = new ArrayList<>();
+            for (String line : section.getStringList(key)) {
+                lines.add(MessageTemplate.compile(translateColorCodes(line)));
             }
-        }
-        
-        return message;
+            return Collections.unmodifiableList(lines);
+        });
     }
 
     /**
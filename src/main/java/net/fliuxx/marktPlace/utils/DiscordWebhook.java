@@ -10,6 +10,7 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
 
@@ -21,6 +22,7 @@ public class DiscordWebhook {
 
     private final MarktPlace plugin;
     private final HttpClient httpClient;
+    private final WebhookDispatcher dispatcher;
     private String webhookUrl;
     private boolean enabled;
     private boolean embedsEnabled;
@@ -28,11 +30,17 @@ public class DiscordWebhook {
     private String embedTitle;
     private String embedFooter;
     private String embedThumbnail;
+    private MessageTemplate purchaseTemplate;
+    private MessageTemplate blackMarketPurchaseTemplate;
 
     public DiscordWebhook(MarktPlace plugin) {
         this.plugin = plugin;
-        this.httpClient = HttpClient.newHttpClient();
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
         loadConfig();
+
+        // The queue size is read once, a reload only changes the webhook
+        int queueSize = plugin.getConfig().getInt("discord.queue-size", 500);
+        this.dispatcher = new WebhookDispatcher(plugin.getLogger(), httpClient, enabled ? webhookUrl : "", queueSize);
     }
 
     /**
@@ -48,6 +56,12 @@ public class DiscordWebhook {
         this.embedTitle = config.getString("discord.embeds.title", "MarketPlace Transaction");
         this.embedFooter = config.getString("discord.embeds.footer", "MarketPlace Plugin");
         this.embedThumbnail = config.getString("discord.embeds.thumbnail", "");
+        
+        // Get messages from config.yml instead of messages.yml, parsed once per load
+        this.purchaseTemplate = MessageTemplate.compile(config.getString("discord.messages.purchase",
+            "**{player}** purchased **{item}** for **${price}** from **{seller}**"));
+        this.blackMarketPurchaseTemplate = MessageTemplate.compile(config.getString("discord.messages.blackmarket-purchase",
+            "**{player}** purchased **{item}** for **${price}** from **{seller}** on the Black Market"));
     }
 
     /**
@@ -55,44 +69,44 @@ public class DiscordWebhook {
      */
     public void reloadConfig() {
         loadConfig();
+        dispatcher.setWebhookUrl(enabled ? webhookUrl : "");
     }
 
     /**
-     * Send a purchase notification
+     * Stop the dispatcher, messages still queued are discarded
      */
-    public void sendPurchaseNotification(String buyerName, String sellerName, String itemName, double price) {
-        if (!enabled || webhookUrl.isEmpty()) return;
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
 
-        // Get message from config.yml instead of messages.yml
-        String messageTemplate = plugin.getConfig().getString("discord.messages.purchase", 
-            "**{player}** purchased **{item}** for **${price}** from **{seller}**");
-        
-        String message = messageTemplate
-                .replace("{player}", buyerName)
-                .replace("{seller}", sellerName)
-                .replace("{item}", itemName)
-                .replace("{price}", String.format("%.2f", price));
+    /**
+     * Send a purchase notification, completes with whether it was delivered
+     */
+    public CompletableFuture<Boolean> sendPurchaseNotification(String buyerName, String sellerName, String itemName, double price) {
+        if (!enabled || webhookUrl.isEmpty()) return CompletableFuture.completedFuture(false);
+
+        String message = purchaseTemplate.render(
+                "player", buyerName,
+                "seller", sellerName,
+                "item", itemName,
+                "price", String.format("%.2f", price));
 
-        sendWebhook(message, "Purchase", Color.GREEN);
+        return sendWebhook(message, "Purchase", Color.GREEN);
     }
 
     /**
-     * Send a black market purchase notification
+     * Send a black market purchase notification, completes with whether it was delivered
      */
-    public void sendBlackMarketPurchaseNotification(String buyerName, String sellerName, String itemName, double price) {
-        if (!enabled || webhookUrl.isEmpty()) return;
+    public CompletableFuture<Boolean> sendBlackMarketPurchaseNotification(String buyerName, String sellerName, String itemName, double price) {
+        if (!enabled || webhookUrl.isEmpty()) return CompletableFuture.completedFuture(false);
 
-        // Get message from config.yml instead of messages.yml
-        String messageTemplate = plugin.getConfig().getString("discord.messages.blackmarket-purchase", 
-            "**{player}** purchased **{item}** for **${price}** from **{seller}** on the Black Market");
-        
-        String message = messageTemplate
-                .replace("{player}", buyerName)
-                .replace("{seller}", sellerName)
-                .replace("{item}", itemName)
-                .replace("{price}", String.format("%.2f", price));
+        String message = blackMarketPurchaseTemplate.render(
+                "player", buyerName,
+                "seller", sellerName,
+                "item", itemName,
+                "price", String.format("%.2f", price));
 
-        sendWebhook(message, "Black Market Purchase", Color.RED);
+        return sendWebhook(message, "Black Market Purchase", Color.RED);
     }
 
     /**
@@ -104,58 +118,36 @@ public class DiscordWebhook {
     }
 
     /**
-     * Send webhook message
+     * Queue webhook message, the dispatcher sends it with other queued messages
      */
-    private void sendWebhook(String message, String title, Color color) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                JSONObject payload = new JSONObject();
-
-                if (embedsEnabled) {
-                    // Create embed
-                    JSONObject embed = new JSONObject();
-                    embed.put("title", title.isEmpty() ? embedTitle : title);
-                    embed.put("description", message);
-                    embed.put("color", color.getRGB() & 0xFFFFFF); // Remove alpha channel
-                    embed.put("timestamp", Instant.now().toString());
-
-                    // Add footer
-                    if (!embedFooter.isEmpty()) {
-                        JSONObject footer = new JSONObject();
-                        footer.put("text", embedFooter);
-                        embed.put("footer", footer);
-                    }
-
-                    // Add thumbnail
-                    if (!embedThumbnail.isEmpty()) {
-                        JSONObject thumbnail = new JSONObject();
-                        thumbnail.put("url", embedThumbnail);
-                        embed.put("thumbnail", thumbnail);
-                    }
-
-                    payload.put("embeds", new JSONObject[]{embed});
-                } else {
-                    // Simple text message
-                    payload.put("content", message);
-                }
-
-                // Send HTTP request
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(webhookUrl))
-                        .header("Content-Type", "application/json")
-                        .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() != 200 && response.statusCode() != 204) {
-                    plugin.getLogger().warning("Failed to send Discord webhook: " + response.statusCode() + " - " + response.body());
-                }
-
-            } catch (IOException | InterruptedException e) {
-                plugin.getLogger().warning("Error sending Discord webhook: " + e.getMessage());
-            }
-        });
+    private CompletableFuture<Boolean> sendWebhook(String message, String title, Color color) {
+        if (!embedsEnabled) {
+            // Simple text message
+            return dispatcher.sendContent(message);
+        }
+
+        // Create embed
+        JSONObject embed = new JSONObject();
+        embed.put("title", title.isEmpty() ? embedTitle : title);
+        embed.put("description", message);
+        embed.put("color", color.getRGB() & 0xFFFFFF); // Remove alpha channel
+        embed.put("timestamp", Instant.now().toString());
+
+        // Add footer
+        if (!embedFooter.isEmpty()) {
+            JSONObject footer = new JSONObject();
+            footer.put("text", embedFooter);
+            embed.put("footer", footer);
+        }
+
+        // Add thumbnail
+        if (!embedThumbnail.isEmpty()) {
+            JSONObject thumbnail = new JSONObject();
+            thumbnail.put("url", embedThumbnail);
+            embed.put("thumbnail", thumbnail);
+        }
+
+        return dispatcher.sendEmbed(embed);
     }
 
     /**
@@ -202,4 +194,11 @@ public class DiscordWebhook {
         }
         return "***MASKED***";
     }
+
+    /**
+     * Get the dispatcher for its queue and delivery metrics
+     */
+    public WebhookDispatcher getDispatcher() {
+        return dispatcher;
+    }
 }
@@ -0,0 +1,369 @@
+package net.fliuxx.marktPlace.utils;
+
+import org.bson.types.Binary;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+import org.yaml.snakeyaml.external.biz.base64Coder.Base64Coder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Item Codec
+ * Encodes ItemStacks into a compact, versioned binary form stored as BSON Binary.
+ *
+ * Layout: magic 'M' 'I', format version, flags, then the tagged ItemStack.serialize() tree,
+ * deflated when that makes it smaller. Legacy Java serialization streams, raw or Base64, are still read.
+ */
+public final class ItemCodec {
+
+    public static final int VERSION = 1;
+
+    private static final byte MAGIC_0 = 'M';
+    private static final byte MAGIC_1 = 'I';
+    private static final int HEADER_SIZE = 4;
+
+    private static final int FLAG_DEFLATED = 1;
+    private static final int FLAG_LEGACY_BODY = 2;
+
+    // Bodies below this size rarely shrink when deflated
+    private static final int DEFLATE_THRESHOLD = 128;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_INT = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_DOUBLE = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_SHORT = 6;
+    private static final int TAG_BYTE = 7;
+    private static final int TAG_TRUE = 8;
+    private static final int TAG_FALSE = 9;
+    private static final int TAG_LIST = 10;
+    private static final int TAG_MAP = 11;
+    private static final int TAG_OBJECT = 12;
+
+    private ItemCodec() {
+    }
+
+    /**
+     * Encode an ItemStack to the current binary format
+     */
+    public static byte[] encode(ItemStack item) {
+        if (item == null) {
+            return null;
+        }
+
+        int flags = 0;
+        byte[] body;
+        try {
+            body = writeTagged(item.serialize());
+        } catch (IllegalArgumentException e) {
+            // Meta holding values the tag encoding does not know, keep them in a Java stream
+            body = writeLegacy(item);
+            flags |= FLAG_LEGACY_BODY;
+        }
+
+        if (body.length >= DEFLATE_THRESHOLD) {
+            byte[] deflated = deflate(body);
+            if (deflated.length < body.length) {
+                body = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+
+        byte[] data = new byte[HEADER_SIZE + body.length];
+        data[0] = MAGIC_0;
+        data[1] = MAGIC_1;
+        data[2] = (byte) VERSION;
+        data[3] = (byte) flags;
+        System.arraycopy(body, 0, data, HEADER_SIZE, body.length);
+        return data;
+    }
+
+    /**
+     * Decode an ItemStack from the current binary format or a legacy Java serialization stream
+     */
+    public static ItemStack decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+
+        if (isLegacy(data)) {
+            return readLegacy(new ByteArrayInputStream(data));
+        }
+
+        if (data.length < HEADER_SIZE || data[0] != MAGIC_0 || data[1] != MAGIC_1) {
+            throw new RuntimeException("Error deserializing ItemStack: unknown item data format");
+        }
+
+        int version = data[2] & 0xFF;
+        if (version > VERSION) {
+            throw new RuntimeException("Error deserializing ItemStack: item data version " + version + " is newer than supported " + VERSION);
+        }
+
+        int flags = data[3] & 0xFF;
+        InputStream body = new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            body = new InflaterInputStream(body);
+        }
+
+        if ((flags & FLAG_LEGACY_BODY) != 0) {
+            return readLegacy(body);
+        }
+
+        try (DataInputStream input = new DataInputStream(body)) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> serialized = (Map<String, Object>) readValue(input);
+            return ItemStack.deserialize(serialized);
+        } catch (IOException | ClassCastException e) {
+            throw new RuntimeException("Error deserializing ItemStack", e);
+        }
+    }
+
+    /**
+     * Check if the data is a legacy Java serialization stream rather than the current format
+     */
+    public static boolean isLegacy(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == (byte) 0xAC && data[1] == (byte) 0xED;
+    }
+
+    /**
+     * Read the itemData field of a MongoDB document, either BSON Binary or a legacy Base64 string
+     */
+    public static byte[] fromStoredValue(Object value) {
+        if (value instanceof Binary) {
+            return ((Binary) value).getData();
+        }
+        if (value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        if (value instanceof String) {
+            // Both the line-wrapped and the plain Base64 variants decode the same way
+            return Base64Coder.decodeLines((String) value);
+        }
+        return null;
+    }
+
+    /**
+     * Wrap item data for storage in a MongoDB document
+     */
+    public static Binary toStoredValue(byte[] data) {
+        return data != null ? new Binary(data) : null;
+    }
+
+    /**
+     * Encode an ItemStack with the legacy Java serialization stream, for meta the tag encoding cannot hold
+     */
+    private static byte[] writeLegacy(ItemStack item) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
+
+            dataOutput.writeObject(item);
+            dataOutput.close();
+
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error serializing ItemStack", e);
+        }
+    }
+
+    private static ItemStack readLegacy(InputStream inputStream) {
+        try (BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream)) {
+            return (ItemStack) dataInput.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Error deserializing ItemStack", e);
+        }
+    }
+
+    private static byte[] writeTagged(Map<String, Object> serialized) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+            DataOutputStream output = new DataOutputStream(outputStream);
+            writeValue(output, serialized);
+            output.flush();
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error serializing ItemStack", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+            try (DeflaterOutputStream output = new DeflaterOutputStream(outputStream)) {
+                output.write(data);
+            }
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error compressing ItemStack", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream output, Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(TAG_NULL);
+        } else if (value instanceof String) {
+            output.writeByte(TAG_STRING);
+            writeString(output, (String) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TAG_INT);
+            writeVarInt(output, zigZag((Integer) value));
+        } else if (value instanceof Long) {
+            output.writeByte(TAG_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TAG_DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            output.writeByte(TAG_FLOAT);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            output.writeByte(TAG_SHORT);
+            output.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            output.writeByte(TAG_BYTE);
+            output.writeByte((Byte) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Collection) {
+            Collection<?> list = (Collection<?>) value;
+            output.writeByte(TAG_LIST);
+            writeVarInt(output, list.size());
+            for (Object element : list) {
+                writeValue(output, element);
+            }
+        } else if (value instanceof Map) {
+            output.writeByte(TAG_MAP);
+            writeEntries(output, (Map<?, ?>) value);
+        } else if (value instanceof ConfigurationSerializable) {
+            ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+            output.writeByte(TAG_OBJECT);
+            writeString(output, ConfigurationSerialization.getAlias(serializable.getClass()));
+            writeEntries(output, serializable.serialize());
+        } else {
+            throw new IllegalArgumentException("Unsupported item value " + value.getClass().getName());
+        }
+    }
+
+    private static void writeEntries(DataOutputStream output, Map<?, ?> map) throws IOException {
+        writeVarInt(output, map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String)) {
+                throw new IllegalArgumentException("Unsupported item map key " + entry.getKey());
+            }
+            writeString(output, (String) entry.getKey());
+            writeValue(output, entry.getValue());
+        }
+    }
+
+    private static Object readValue(DataInputStream input) throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(input);
+            case TAG_INT:
+                return unZigZag(readVarInt(input));
+            case TAG_LONG:
+                return input.readLong();
+            case TAG_DOUBLE:
+                return input.readDouble();
+            case TAG_FLOAT:
+                return input.readFloat();
+            case TAG_SHORT:
+                return input.readShort();
+            case TAG_BYTE:
+                return input.readByte();
+            case TAG_TRUE:
+                return true;
+            case TAG_FALSE:
+                return false;
+            case TAG_LIST: {
+                int size = readVarInt(input);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(input));
+                }
+                return list;
+            }
+            case TAG_MAP:
+                return readEntries(input, new LinkedHashMap<>());
+            case TAG_OBJECT: {
+                // Bukkit resolves the class from the alias stored under the type key
+                Map<String, Object> map = new LinkedHashMap<>();
+                map.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, readString(input));
+                return ConfigurationSerialization.deserializeObject(readEntries(input, map));
+            }
+            default:
+                throw new IOException("Unknown item data tag " + tag);
+        }
+    }
+
+    private static Map<String, Object> readEntries(DataInputStream input, Map<String, Object> map) throws IOException {
+        int size = readVarInt(input);
+        for (int i = 0; i < size; i++) {
+            String key = readString(input);
+            map.put(key, readValue(input));
+        }
+        return map;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        // Length prefixed UTF-8, writeUTF caps out at 64KB which item NBT can exceed
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[readVarInt(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed item data length");
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
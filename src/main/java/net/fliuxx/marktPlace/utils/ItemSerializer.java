@@ -2,39 +2,19 @@ package net.fliuxx.marktPlace.utils;
 
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.io.BukkitObjectInputStream;
-import org.bukkit.util.io.BukkitObjectOutputStream;
 import org.yaml.snakeyaml.external.biz.base64Coder.Base64Coder;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Base64;
 
 /**
  * Item Serializer Utility
- * Handles serialization and deserialization of ItemStacks
+ * Reads legacy item data and formats ItemStacks for display
  */
 public class ItemSerializer {
 
     /**
-     * Serialize ItemStack to Base64 string
-     */
-    public static String serializeItemStack(ItemStack item) {
-        try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
-
-            dataOutput.writeObject(item);
-            dataOutput.close();
-
-            return Base64Coder.encodeLines(outputStream.toByteArray());
-        } catch (IOException e) {
-            throw new RuntimeException("Error serializing ItemStack", e);
-        }
-    }
-
-    /**
-     * Deserialize Base64 string to ItemStack
+     * Deserialize a legacy Base64 string to ItemStack, as listings were stored before ItemCodec
      */
     public static ItemStack deserializeItemStack(String data) {
         try {
@@ -50,48 +30,6 @@ public class ItemSerializer {
         }
     }
 
-    /**
-     * Serialize ItemStack array to Base64 string
-     */
-    public static String serializeItemStackArray(ItemStack[] items) {
-        try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
-
-            dataOutput.writeInt(items.length);
-            for (ItemStack item : items) {
-                dataOutput.writeObject(item);
-            }
-            dataOutput.close();
-
-            return Base64Coder.encodeLines(outputStream.toByteArray());
-        } catch (IOException e) {
-            throw new RuntimeException("Error serializing ItemStack array", e);
-        }
-    }
-
-    /**
-     * Deserialize Base64 string to ItemStack array
-     */
-    public static ItemStack[] deserializeItemStackArray(String data) {
-        try {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64Coder.decodeLines(data));
-            BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
-
-            int length = dataInput.readInt();
-            ItemStack[] items = new ItemStack[length];
-
-            for (int i = 0; i < length; i++) {
-                items[i] = (ItemStack) dataInput.readObject();
-            }
-            dataInput.close();
-
-            return items;
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException("Error deserializing ItemStack array", e);
-        }
-    }
-
     /**
      * Get display name of ItemStack
      */
@@ -154,44 +92,4 @@ public class ItemSerializer {
 
         return item1.isSimilar(item2) && item1.getAmount() == item2.getAmount();
     }
-
-    /**
-     * Serialize an ItemStack to a string
-     */
-    public static String serialize(ItemStack item) {
-        if (item == null) {
-            return null;
-        }
-
-        try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            BukkitObjectOutputStream dataOutput = new BukkitObjectOutputStream(outputStream);
-            dataOutput.writeObject(item);
-            dataOutput.close();
-            return Base64.getEncoder().encodeToString(outputStream.toByteArray());
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
-    /**
-     * Deserialize a string to an ItemStack
-     */
-    public static ItemStack deserialize(String data) {
-        if (data == null || data.isEmpty()) {
-            return null;
-        }
-
-        try {
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(Base64.getDecoder().decode(data));
-            BukkitObjectInputStream dataInput = new BukkitObjectInputStream(inputStream);
-            ItemStack item = (ItemStack) dataInput.readObject();
-            dataInput.close();
-            return item;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,247 @@
+package net.fliuxx.marktPlace.utils;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Market Config
+ * Immutable snapshot of the config.yml settings read on hot paths, built once per load or reload.
+ * Readers get plain fields instead of walking YAML sections, a reload publishes a new snapshot.
+ */
+public final class MarketConfig {
+
+    // Economy
+    private final String currencySymbol;
+    private final int decimalPlaces;
+    private final double roundingFactor;
+    private final double minimumAmount;
+    private final double maximumAmount;
+    private final boolean atomicWithdraw;
+    private final long payoutDelay;
+    private final long payoutClaimTimeout;
+
+    // Black market
+    private final boolean blackMarketAutoRefresh;
+    private final boolean blackMarketBroadcastRefresh;
+    private final long blackMarketRefreshInterval;
+    private final int blackMarketMaxItems;
+    private final double blackMarketDiscountPercentage;
+    private final double blackMarketSellerMultiplier;
+    private final int rotationBatchSize;
+    private final long rotationBatchDelay;
+
+    // General
+    private final int maxListingsPerPlayer;
+    private final long listingDurationMillis;
+    private final boolean autoRemoveExpired;
+    private final long expiryCheckInterval;
+    private final int expiryBatchSize;
+    private final boolean confirmationGui;
+    private final long guiRefreshInterval;
+
+    // Discord outbox
+    private final long outboxPollInterval;
+    private final int outboxBatchSize;
+    private final int outboxMaxAttempts;
+    private final long outboxRetryDelay;
+    private final long outboxMaxRetryDelay;
+
+    // Debug
+    private final boolean debugEnabled;
+    private final boolean logDatabaseQueries;
+    private final boolean logTransactions;
+    private final boolean guiDebugging;
+
+    private MarketConfig(FileConfiguration config) {
+        this.currencySymbol = config.getString("economy.currency-symbol", "$");
+        this.decimalPlaces = config.getInt("economy.decimal-places", 2);
+        this.roundingFactor = Math.pow(10, decimalPlaces);
+        this.minimumAmount = config.getDouble("economy.minimum-amount", 0.01);
+        this.maximumAmount = config.getDouble("economy.maximum-amount", 1000000.0);
+        this.atomicWithdraw = config.getBoolean("economy.atomic-withdraw", true);
+        this.payoutDelay = Math.max(0, config.getLong("economy.payout-delay", 100));
+        this.payoutClaimTimeout = Math.max(1, config.getLong("economy.payout-claim-timeout", 300)) * 1000;
+
+        this.blackMarketAutoRefresh = config.getBoolean("blackmarket.auto-refresh", true);
+        this.blackMarketBroadcastRefresh = config.getBoolean("blackmarket.broadcast-refresh", true);
+        this.blackMarketRefreshInterval = config.getLong("blackmarket.refresh-interval", 86400);
+        this.blackMarketMaxItems = config.getInt("blackmarket.max-items", 27);
+        this.blackMarketDiscountPercentage = config.getDouble("blackmarket.discount-percentage", 30.0);
+        this.blackMarketSellerMultiplier = config.getDouble("blackmarket.seller-multiplier", 2.0);
+        this.rotationBatchSize = Math.max(1, config.getInt("blackmarket.rotation-batch-size", 1000));
+        this.rotationBatchDelay = Math.max(0, config.getLong("blackmarket.rotation-batch-delay", 0));
+
+        this.maxListingsPerPlayer = config.getInt("general.max-listings-per-player", 10);
+        this.listingDurationMillis = config.getLong("general.listing-duration", 604800) * 1000;
+        this.autoRemoveExpired = config.getBoolean("general.auto-remove-expired", true);
+        this.expiryCheckInterval = Math.max(1, config.getLong("general.expiry-check-interval", 300));
+        this.expiryBatchSize = Math.max(1, config.getInt("general.expiry-batch-size", 200));
+        this.confirmationGui = config.getBoolean("general.confirmation-gui", true);
+        this.guiRefreshInterval = Math.max(1, config.getLong("general.gui-refresh-interval", 1));
+
+        this.outboxPollInterval = Math.max(1, config.getLong("discord.outbox.poll-interval", 5));
+        this.outboxBatchSize = Math.max(1, config.getInt("discord.outbox.batch-size", 50));
+        this.outboxMaxAttempts = Math.max(1, config.getInt("discord.outbox.max-attempts", 20));
+        this.outboxRetryDelay = Math.max(1, config.getLong("discord.outbox.retry-delay", 10)) * 1000;
+        this.outboxMaxRetryDelay = Math.max(outboxRetryDelay, config.getLong("discord.outbox.max-retry-delay", 3600) * 1000);
+
+        this.debugEnabled = config.getBoolean("debug.enabled", false);
+        this.logDatabaseQueries = config.getBoolean("debug.log-database-queries", false);
+        this.logTransactions = config.getBoolean("debug.log-transactions", true);
+        this.guiDebugging = config.getBoolean("debug.gui-debugging", false);
+    }
+
+    /**
+     * Build a snapshot of the current configuration
+     */
+    public static MarketConfig from(FileConfiguration config) {
+        return new MarketConfig(config);
+    }
+
+    // Economy
+    public String getCurrencySymbol() {
+        return currencySymbol;
+    }
+
+    public int getDecimalPlaces() {
+        return decimalPlaces;
+    }
+
+    /**
+     * Get 10 to the power of the decimal places, used to round money
+     */
+    public double getRoundingFactor() {
+        return roundingFactor;
+    }
+
+    public double getMinimumAmount() {
+        return minimumAmount;
+    }
+
+    public double getMaximumAmount() {
+        return maximumAmount;
+    }
+
+    public boolean isAtomicWithdraw() {
+        return atomicWithdraw;
+    }
+
+    public long getPayoutDelay() {
+        return payoutDelay;
+    }
+
+    public long getPayoutClaimTimeout() {
+        return payoutClaimTimeout;
+    }
+
+    // Black market
+    public boolean isBlackMarketAutoRefresh() {
+        return blackMarketAutoRefresh;
+    }
+
+    public boolean isBlackMarketBroadcastRefresh() {
+        return blackMarketBroadcastRefresh;
+    }
+
+    /**
+     * Get the black market refresh interval in seconds
+     */
+    public long getBlackMarketRefreshInterval() {
+        return blackMarketRefreshInterval;
+    }
+
+    public int getBlackMarketMaxItems() {
+        return blackMarketMaxItems;
+    }
+
+    public double getBlackMarketDiscountPercentage() {
+        return blackMarketDiscountPercentage;
+    }
+
+    public double getBlackMarketSellerMultiplier() {
+        return blackMarketSellerMultiplier;
+    }
+
+    public int getRotationBatchSize() {
+        return rotationBatchSize;
+    }
+
+    public long getRotationBatchDelay() {
+        return rotationBatchDelay;
+    }
+
+    // General
+    public int getMaxListingsPerPlayer() {
+        return maxListingsPerPlayer;
+    }
+
+    public long getListingDurationMillis() {
+        return listingDurationMillis;
+    }
+
+    public boolean isAutoRemoveExpired() {
+        return autoRemoveExpired;
+    }
+
+    /**
+     * Get the seconds between expiry sweeps
+     */
+    public long getExpiryCheckInterval() {
+        return expiryCheckInterval;
+    }
+
+    public int getExpiryBatchSize() {
+        return expiryBatchSize;
+    }
+
+    public boolean isConfirmationGui() {
+        return confirmationGui;
+    }
+
+    public long getGuiRefreshInterval() {
+        return guiRefreshInterval;
+    }
+
+    // Discord outbox
+    /**
+     * Get the seconds between outbox polls
+     */
+    public long getOutboxPollInterval() {
+        return outboxPollInterval;
+    }
+
+    public int getOutboxBatchSize() {
+        return outboxBatchSize;
+    }
+
+    public int getOutboxMaxAttempts() {
+        return outboxMaxAttempts;
+    }
+
+    /**
+     * Get the milliseconds before the first retry of a failed notification, doubled per attempt
+     */
+    public long getOutboxRetryDelay() {
+        return outboxRetryDelay;
+    }
+
+    public long getOutboxMaxRetryDelay() {
+        return outboxMaxRetryDelay;
+    }
+
+    // Debug
+    public boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    public boolean isLogDatabaseQueries() {
+        return logDatabaseQueries;
+    }
+
+    public boolean isLogTransactions() {
+        return logTransactions;
+    }
+
+    public boolean isGuiDebugging() {
+        return guiDebugging;
+    }
+}
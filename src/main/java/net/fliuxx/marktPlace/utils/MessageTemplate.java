@@ -0,0 +1,109 @@
+package net.fliuxx.marktPlace.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message Template
+ * A message parsed once into literal and {placeholder} segments, rendered into a reused per-thread StringBuilder
+ * instead of one full-string replace per placeholder. Placeholders without a value are kept as written.
+ */
+public final class MessageTemplate {
+
+    private static final int MAX_BUFFER = 8192; // Larger buffers are dropped instead of kept per thread
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final String text;
+    private final String[] segments; // Literal text at even indexes, placeholder names at odd indexes
+
+    private MessageTemplate(String text, String[] segments) {
+        this.text = text;
+        this.segments = segments;
+    }
+
+    /**
+     * Parse a message into segments
+     */
+    public static MessageTemplate compile(String text) {
+        List<String> segments = new ArrayList<>();
+        int literalStart = 0;
+        int open = text.indexOf('{');
+
+        while (open >= 0) {
+            int close = text.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+
+            // A brace inside the name starts over at the inner one, like "{a{b}"
+            int inner = text.lastIndexOf('{', close);
+            if (inner > open) {
+                open = inner;
+            }
+
+            if (close > open + 1) {
+                segments.add(text.substring(literalStart, open));
+                segments.add(text.substring(open + 1, close));
+                literalStart = close + 1;
+            }
+            open = text.indexOf('{', close + 1);
+        }
+        segments.add(text.substring(literalStart));
+
+        return new MessageTemplate(text, segments.toArray(new String[0]));
+    }
+
+    /**
+     * Render with placeholder values given as name, value pairs
+     */
+    public String render(String... placeholders) {
+        if (segments.length == 1) {
+            return text;
+        }
+
+        StringBuilder builder = BUFFER.get();
+        builder.setLength(0);
+
+        for (int i = 0; i < segments.length; i++) {
+            if ((i & 1) == 0) {
+                builder.append(segments[i]);
+            } else {
+                String value = lookup(segments[i], placeholders);
+                if (value != null) {
+                    builder.append(value);
+                } else {
+                    builder.append('{').append(segments[i]).append('}');
+                }
+            }
+        }
+
+        String rendered = builder.toString();
+        if (builder.capacity() > MAX_BUFFER) {
+            BUFFER.remove();
+        }
+        return rendered;
+    }
+
+    private static String lookup(String name, String[] placeholders) {
+        for (int i = 0; i + 1 < placeholders.length; i += 2) {
+            if (name.equals(placeholders[i])) {
+                return placeholders[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if the message contains any placeholder
+     */
+    public boolean hasPlaceholders() {
+        return segments.length > 1;
+    }
+
+    /**
+     * Get the message as written
+     */
+    public String getText() {
+        return text;
+    }
+}
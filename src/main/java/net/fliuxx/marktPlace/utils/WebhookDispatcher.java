@@ -0,0 +1,379 @@
+package net.fliuxx.marktPlace.utils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Webhook Dispatcher
+ * Sends Discord webhook messages from a bounded queue on its own thread, one request at a time.
+ * Queued embeds are packed up to 10 per request, rate limit headers and 429 responses delay the next request
+ * instead of losing it. Messages that do not fit in the queue are dropped and counted.
+ * Each message completes a future with whether it was delivered, so callers can retry on their own terms.
+ */
+public class WebhookDispatcher {
+
+    private static final int MAX_EMBEDS = 10; // Discord accepts at most 10 embeds per message
+    private static final int MAX_CONTENT = 2000; // Discord content length limit
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY = 1000; // Milliseconds before retrying a failed request, doubled per attempt
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Logger logger;
+    private final HttpClient httpClient;
+    private final BlockingQueue<Message> queue;
+    private final ScheduledExecutorService scheduler;
+    private volatile String webhookUrl;
+
+    // Only touched on the dispatcher thread
+    private List<Message> retryBatch;
+    private int retryAttempts;
+    private long nextRequestAt;
+    private boolean flushing;
+
+    // Metrics
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    public WebhookDispatcher(Logger logger, HttpClient httpClient, String webhookUrl, int capacity) {
+        this.logger = logger;
+        this.httpClient = httpClient;
+        this.webhookUrl = webhookUrl;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MarketPlace-Webhook");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Change the webhook messages are sent to, queued messages go to the new one
+     */
+    public void setWebhookUrl(String webhookUrl) {
+        this.webhookUrl = webhookUrl;
+    }
+
+    /**
+     * Queue an embed, completes with false if it was dropped or could not be delivered
+     */
+    public CompletableFuture<Boolean> sendEmbed(JSONObject embed) {
+        return enqueue(new Message(embed, false));
+    }
+
+    /**
+     * Queue a plain text message, completes with false if it was dropped or could not be delivered
+     */
+    public CompletableFuture<Boolean> sendContent(String content) {
+        return enqueue(new Message(new JSONObject().put("content", content), true));
+    }
+
+    private CompletableFuture<Boolean> enqueue(Message message) {
+        if (!queue.offer(message)) {
+            dropped.incrementAndGet();
+            message.result.complete(false);
+            return message.result;
+        }
+
+        try {
+            scheduler.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Shut down, the message stays queued and is reported as discarded
+        }
+        return message.result;
+    }
+
+    /**
+     * Send the next batch if no request is in flight and the rate limit allows it
+     */
+    private void flush() {
+        if (flushing) {
+            return;
+        }
+
+        long wait = nextRequestAt - System.currentTimeMillis();
+        if (wait > 0) {
+            flushing = true;
+            schedule(wait);
+            return;
+        }
+
+        List<Message> batch = retryBatch != null ? retryBatch : takeBatch();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        String url = webhookUrl;
+        if (url == null || url.isEmpty()) {
+            // Disabled while messages were queued
+            retryBatch = null;
+            retryAttempts = 0;
+            List<Message> rest = new ArrayList<>(batch);
+            queue.drainTo(rest);
+            dropped.addAndGet(rest.size());
+            for (Message message : rest) {
+                message.result.complete(false);
+            }
+            return;
+        }
+
+        flushing = true;
+        retryBatch = batch;
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                    .uri(URI.create(url))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(toPayload(batch).toString()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid Discord webhook URL: " + e.getMessage());
+            finishBatch(batch, false);
+            flushing = false;
+            return;
+        }
+
+        requests.incrementAndGet();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenCompleteAsync((response, error) -> handleResponse(batch, response, error), scheduler);
+    }
+
+    /**
+     * Take queued messages of the same kind as the first one, up to one request worth
+     */
+    private List<Message> takeBatch() {
+        List<Message> batch = new ArrayList<>();
+        Message first = queue.poll();
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        if (first.content) {
+            int length = first.contentLength();
+            Message next;
+            while ((next = queue.peek()) != null && next.content && length + 1 + next.contentLength() <= MAX_CONTENT) {
+                length += 1 + next.contentLength();
+                batch.add(queue.poll());
+            }
+        } else {
+            Message next;
+            while (batch.size() < MAX_EMBEDS && (next = queue.peek()) != null && !next.content) {
+                batch.add(queue.poll());
+            }
+        }
+        return batch;
+    }
+
+    private static JSONObject toPayload(List<Message> batch) {
+        JSONObject payload = new JSONObject();
+        if (batch.get(0).content) {
+            StringBuilder content = new StringBuilder();
+            for (Message message : batch) {
+                if (content.length() > 0) {
+                    content.append('\n');
+                }
+                content.append(message.body.getString("content"));
+            }
+            payload.put("content", content.toString());
+        } else {
+            JSONArray embeds = new JSONArray();
+            for (Message message : batch) {
+                embeds.put(message.body);
+            }
+            payload.put("embeds", embeds);
+        }
+        return payload;
+    }
+
+    /**
+     * Record the rate limit of a response and retry, drop or finish its batch
+     */
+    private void handleResponse(List<Message> batch, HttpResponse<String> response, Throwable error) {
+        flushing = false;
+
+        if (error != null) {
+            logger.warning("Error sending Discord webhook: " + error.getMessage());
+            retryLater(batch, RETRY_DELAY << retryAttempts);
+        } else {
+            int status = response.statusCode();
+            readRateLimit(response);
+
+            if (status == 429) {
+                rateLimited.incrementAndGet();
+                long retryAfter = parseRetryAfter(response);
+                nextRequestAt = Math.max(nextRequestAt, System.currentTimeMillis() + retryAfter);
+                // Rate limited requests are not the webhook's fault, they do not count as attempts
+                retryBatch = batch;
+            } else if (status >= 500) {
+                logger.warning("Discord webhook returned " + status + ", retrying");
+                retryLater(batch, RETRY_DELAY << retryAttempts);
+            } else if (status >= 200 && status < 300) {
+                finishBatch(batch, true);
+            } else {
+                logger.warning("Failed to send Discord webhook: " + status + " - " + response.body());
+                finishBatch(batch, false);
+            }
+        }
+
+        if (retryBatch != null || !queue.isEmpty()) {
+            flush();
+        }
+    }
+
+    private void retryLater(List<Message> batch, long delay) {
+        if (++retryAttempts >= MAX_ATTEMPTS) {
+            logger.warning("Giving up on " + batch.size() + " Discord webhook messages after " + MAX_ATTEMPTS + " attempts");
+            finishBatch(batch, false);
+            return;
+        }
+        retryBatch = batch;
+        nextRequestAt = Math.max(nextRequestAt, System.currentTimeMillis() + delay);
+    }
+
+    private void finishBatch(List<Message> batch, boolean success) {
+        retryBatch = null;
+        retryAttempts = 0;
+        (success ? sent : failed).addAndGet(batch.size());
+        for (Message message : batch) {
+            message.result.complete(success);
+        }
+    }
+
+    /**
+     * Wait for the bucket to refill once a response reports no requests remaining
+     */
+    private void readRateLimit(HttpResponse<String> response) {
+        Optional<String> remaining = response.headers().firstValue("X-RateLimit-Remaining");
+        Optional<String> resetAfter = response.headers().firstValue("X-RateLimit-Reset-After");
+        if (remaining.isEmpty() || resetAfter.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (Integer.parseInt(remaining.get().trim()) <= 0) {
+                long delay = (long) Math.ceil(Double.parseDouble(resetAfter.get().trim()) * 1000);
+                nextRequestAt = Math.max(nextRequestAt, System.currentTimeMillis() + delay);
+            }
+        } catch (NumberFormatException ignored) {
+            // Malformed headers, the next 429 tells us how long to wait
+        }
+    }
+
+    /**
+     * Get the milliseconds to wait from a 429 response, the header is in seconds and so is the body's retry_after
+     */
+    private long parseRetryAfter(HttpResponse<String> response) {
+        try {
+            Optional<String> header = response.headers().firstValue("Retry-After");
+            if (header.isPresent()) {
+                return (long) Math.ceil(Double.parseDouble(header.get().trim()) * 1000);
+            }
+            JSONObject body = new JSONObject(response.body());
+            if (body.has("retry_after")) {
+                return (long) Math.ceil(body.getDouble("retry_after") * 1000);
+            }
+        } catch (RuntimeException ignored) {
+            // Fall through to the default delay
+        }
+        return RETRY_DELAY;
+    }
+
+    private void schedule(long delay) {
+        scheduler.schedule(() -> {
+            flushing = false;
+            flush();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop sending, waiting briefly for a request in flight. Messages still queued are discarded.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Message> discarded = new ArrayList<>();
+        if (retryBatch != null) {
+            discarded.addAll(retryBatch);
+        }
+        queue.drainTo(discarded);
+        for (Message message : discarded) {
+            message.result.complete(false);
+        }
+        if (!discarded.isEmpty()) {
+            logger.warning("Discarded " + discarded.size() + " queued Discord webhook messages on shutdown");
+        }
+    }
+
+    /**
+     * Get the number of messages waiting to be sent
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.get();
+    }
+
+    /**
+     * A queued embed or text message and the future told whether it was delivered
+     */
+    private static final class Message {
+        private final JSONObject body;
+        private final boolean content;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private Message(JSONObject body, boolean content) {
+            this.body = body;
+            this.content = content;
+        }
+
+        private int contentLength() {
+            return body.getString("content").length();
+        }
+    }
+}